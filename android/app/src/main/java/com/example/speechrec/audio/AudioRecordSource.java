@@ -0,0 +1,161 @@
+package com.example.speechrec.audio;
+
+import android.media.AudioDeviceInfo;
+import android.media.AudioFormat;
+import android.media.AudioRecord;
+import android.os.Build;
+import android.util.Log;
+
+import androidx.annotation.RequiresApi;
+
+import java.io.IOException;
+
+/**
+ * 基于 android.media.AudioRecord 的音频源（16-bit 单声道）
+ * AudioRecord 由本对象负责释放
+ */
+public class AudioRecordSource implements AudioSource {
+    private static final String TAG = "AudioRecordSource";
+
+    private final AudioRecord audioRecord;
+    private final int sampleRate;
+    private short[] shortBuffer = new short[0];
+
+    public AudioRecordSource(AudioRecord audioRecord, int sampleRate) {
+        this.audioRecord = audioRecord;
+        this.sampleRate = sampleRate;
+    }
+
+    /**
+     * 依次尝试各个音频源创建 AudioRecord，并把首选设备设置为 device
+     * @param device 目标输入设备，null 表示使用系统默认路由
+     * @param audioSources 按优先级排列的 MediaRecorder.AudioSource
+     * @return 首选设备设置成功的音频源，全部失败时返回 null
+     */
+    @RequiresApi(api = Build.VERSION_CODES.M)
+    public static AudioRecordSource openRouted(AudioDeviceInfo device, int sampleRate, int[] audioSources) {
+        int channelConfig = AudioFormat.CHANNEL_IN_MONO;
+        int audioFormat = AudioFormat.ENCODING_PCM_16BIT;
+        int bufferSize = AudioRecord.getMinBufferSize(sampleRate, channelConfig, audioFormat);
+        if (bufferSize == AudioRecord.ERROR_BAD_VALUE || bufferSize == AudioRecord.ERROR) {
+            Log.e(TAG, "Invalid buffer size");
+            return null;
+        }
+
+        for (int audioSource : audioSources) {
+            AudioRecord recorder = null;
+            try {
+                recorder = new AudioRecord.Builder()
+                    .setAudioSource(audioSource)
+                    .setAudioFormat(new AudioFormat.Builder()
+                        .setEncoding(audioFormat)
+                        .setSampleRate(sampleRate)
+                        .setChannelMask(channelConfig)
+                        .build())
+                    .setBufferSizeInBytes(bufferSize * 2)
+                    .build();
+
+                if (recorder.getState() != AudioRecord.STATE_INITIALIZED) {
+                    recorder.release();
+                    continue;
+                }
+                if (device == null) {
+                    Log.i(TAG, "AudioRecord created (source=" + audioSource + ", default routing)");
+                    return new AudioRecordSource(recorder, sampleRate);
+                }
+
+                // 设置首选设备并确认已生效
+                if (recorder.setPreferredDevice(device)) {
+                    AudioDeviceInfo preferred = recorder.getPreferredDevice();
+                    if (preferred != null && preferred.getId() == device.getId()) {
+                        Log.i(TAG, "Routing AudioRecord created (source=" + audioSource +
+                            ", device=" + device.getProductName() + ")");
+                        AudioDeviceInfo routed = recorder.getRoutedDevice();
+                        if (routed != null) {
+                            Log.i(TAG, "Current routing device: " + routed.getProductName() +
+                                " (type=" + routed.getType() + ")");
+                        }
+                        return new AudioRecordSource(recorder, sampleRate);
+                    }
+                }
+                // 设置失败，释放并尝试下一个音频源
+                recorder.release();
+            } catch (Exception e) {
+                Log.w(TAG, "Failed with audio source " + audioSource + ": " + e.getMessage());
+                if (recorder != null) {
+                    try {
+                        recorder.release();
+                    } catch (Exception ignored) {}
+                }
+            }
+        }
+        Log.e(TAG, "Failed to create routing AudioRecord with any audio source");
+        return null;
+    }
+
+    /**
+     * 底层 AudioRecord，用于设置/查询设备路由
+     */
+    public AudioRecord getAudioRecord() {
+        return audioRecord;
+    }
+
+    @Override
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    @Override
+    public void start() throws IOException {
+        try {
+            audioRecord.startRecording();
+        } catch (IllegalStateException e) {
+            throw new IOException("Failed to start AudioRecord", e);
+        }
+    }
+
+    public boolean isRecording() {
+        return audioRecord.getRecordingState() == AudioRecord.RECORDSTATE_RECORDING;
+    }
+
+    @RequiresApi(api = Build.VERSION_CODES.M)
+    public AudioDeviceInfo getRoutedDevice() {
+        return audioRecord.getRoutedDevice();
+    }
+
+    @Override
+    public int read(float[] dst, int offset, int length) throws IOException {
+        if (shortBuffer.length < length) {
+            shortBuffer = new short[length];
+        }
+        int n = audioRecord.read(shortBuffer, 0, length);
+        if (n < 0) {
+            throw new IOException("AudioRecord read failed: " + n);
+        }
+        for (int i = 0; i < n; i++) {
+            dst[offset + i] = shortBuffer[i] / 32768.0f;
+        }
+        return n;
+    }
+
+    @Override
+    public void stop() {
+        try {
+            if (isRecording()) {
+                audioRecord.stop();
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Error stopping AudioRecord", e);
+        }
+    }
+
+    @Override
+    public void close() {
+        stop();
+        try {
+            audioRecord.release();
+        } catch (Exception e) {
+            Log.w(TAG, "Error releasing AudioRecord: " + e.getMessage());
+        }
+    }
+}
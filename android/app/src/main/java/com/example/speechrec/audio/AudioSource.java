@@ -0,0 +1,47 @@
+package com.example.speechrec.audio;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * 音频采集源（拉取式）
+ * 识别流程只通过这个接口读取单声道 float 样本（[-1, 1]），不直接依赖 AudioRecord，
+ * 因此可以换成其他采集方式、音频文件或合成信号，在设备外测试和测量性能
+ *
+ * 实现：
+ * - AudioRecordSource: android.media.AudioRecord
+ * - FileAudioSource: WAV / 裸 PCM 文件
+ * - SyntheticAudioSource: 静音、正弦波、白噪声等合成信号
+ *
+ * read() 只应在一个线程中调用；stop()/start() 可以在其他线程调用（暂停/恢复）
+ */
+public interface AudioSource extends Closeable {
+
+    /**
+     * 实际采样率（可能与请求的不同）
+     */
+    int getSampleRate();
+
+    /**
+     * 开始（或暂停后重新开始）采集
+     */
+    void start() throws IOException;
+
+    /**
+     * 读取最多 length 个样本，实时音频源阻塞到有数据为止
+     * @return 读取的样本数；音频源结束（文件读完）时返回 -1
+     * @throws IOException 采集出错（设备断开等）
+     */
+    int read(float[] dst, int offset, int length) throws IOException;
+
+    /**
+     * 停止采集，之后可以再次 start()
+     */
+    void stop();
+
+    /**
+     * 释放资源，之后不能再使用
+     */
+    @Override
+    void close();
+}
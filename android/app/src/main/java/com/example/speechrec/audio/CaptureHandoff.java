@@ -0,0 +1,59 @@
+package com.example.speechrec.audio;
+
+import android.os.SystemClock;
+
+/**
+ * 关键词检测到下一个识别引擎之间的音频交接
+ * 关键词识别在检测到关键词时放入一个从关键词结束处开始的历史音频流，
+ * 随后启动的识别引擎（例如百度 ASR 的 IN_FILE 输入）取走它作为输入，
+ * 唤醒词和指令之间不会因为重新打开麦克风而丢失音频
+ *
+ * 同一时间只保留最新的一个，新放入的流会关闭尚未被取走的旧流
+ */
+public final class CaptureHandoff {
+
+    private static PcmRingBuffer.PcmInputStream pending;
+    private static long offeredAtMs;
+
+    private CaptureHandoff() {
+    }
+
+    /**
+     * 放入交接音频流，替换（并关闭）尚未被取走的旧流
+     */
+    public static synchronized void offer(PcmRingBuffer.PcmInputStream stream) {
+        if (pending != null && pending != stream) {
+            pending.close();
+        }
+        pending = stream;
+        offeredAtMs = SystemClock.elapsedRealtime();
+    }
+
+    /**
+     * 取走交接音频流
+     * @param maxAgeMs 放入后超过此时长的流视为过期（与之后的识别无关），关闭并返回 null
+     * @return 音频流，没有、已过期或采集已结束时返回 null
+     */
+    public static synchronized PcmRingBuffer.PcmInputStream take(long maxAgeMs) {
+        PcmRingBuffer.PcmInputStream stream = pending;
+        pending = null;
+        if (stream == null) {
+            return null;
+        }
+        if (SystemClock.elapsedRealtime() - offeredAtMs > maxAgeMs || stream.getBuffer().isClosed()) {
+            stream.close();
+            return null;
+        }
+        return stream;
+    }
+
+    /**
+     * 关闭并丢弃尚未被取走的交接音频流
+     */
+    public static synchronized void clear() {
+        if (pending != null) {
+            pending.close();
+            pending = null;
+        }
+    }
+}
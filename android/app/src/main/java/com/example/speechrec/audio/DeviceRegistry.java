@@ -0,0 +1,330 @@
+package com.example.speechrec.audio;
+
+import android.content.Context;
+import android.hardware.usb.UsbDevice;
+import android.hardware.usb.UsbManager;
+import android.media.AudioDeviceCallback;
+import android.media.AudioDeviceInfo;
+import android.media.AudioManager;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.RequiresApi;
+
+import com.getcapacitor.JSArray;
+import com.getcapacitor.JSObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 进程内共享的音频输入设备表
+ * 创建时读取一次设备列表，之后由 AudioDeviceCallback 的增删通知保持最新，
+ * listInputs 直接从内存返回，不再切换音频模式、等待系统重新扫描
+ *
+ * 设备变化通过 Listener 通知（插件转为 onDevicesChanged 事件）
+ *
+ * stableId 不含 hashCode / 设备 id，拔插后保持不变：
+ *   - USB 设备：type + vendorId:productId（来自 UsbManager，按产品名匹配）
+ *   - 有地址的设备：type + address
+ *   - 其他：type + productName
+ * 同一 stableId 出现多次时（两个相同型号的设备），后出现的加 "#2"、"#3" 后缀：
+ *   - 仍连接的设备保持已分配的 stableId，拔掉其中一个不会让另一个的后缀变化
+ *   - 新连接的设备取最小的空闲序号（无后缀视为 1）
+ * 限制：相同型号的设备本身无法区分，哪个物理设备得到哪个后缀取决于连接顺序；
+ * 两个都拔掉后重新插入、或应用重启后，后缀可能互换
+ */
+public final class DeviceRegistry {
+    private static final String TAG = "DeviceRegistry";
+
+    public interface Listener {
+        /**
+         * 在主线程调用
+         * @param added 新增的输入设备
+         * @param removed 移除的输入设备
+         */
+        void onDevicesChanged(List<AudioDeviceInfo> added, List<AudioDeviceInfo> removed);
+    }
+
+    private static DeviceRegistry instance;
+
+    /**
+     * 设备表快照：列表和 stableId 索引一起整体替换，读取时不加锁
+     */
+    private static final class Snapshot {
+        final List<AudioDeviceInfo> inputs;
+        final Map<String, AudioDeviceInfo> byStableId;
+        final Map<Integer, String> stableIdById;
+        final long updatedAtMs;
+
+        Snapshot(List<AudioDeviceInfo> inputs, Map<String, AudioDeviceInfo> byStableId,
+                 Map<Integer, String> stableIdById, long updatedAtMs) {
+            this.inputs = inputs;
+            this.byStableId = byStableId;
+            this.stableIdById = stableIdById;
+            this.updatedAtMs = updatedAtMs;
+        }
+    }
+
+    private final AudioManager audioManager;
+    private final UsbManager usbManager;
+    private final CopyOnWriteArrayList<Listener> listeners = new CopyOnWriteArrayList<>();
+    // 已移除设备的 stableId（系统不会复用设备 id）
+    private final Map<Integer, String> retiredStableIds = new ConcurrentHashMap<>();
+    private volatile Snapshot snapshot = new Snapshot(Collections.emptyList(),
+        Collections.emptyMap(), Collections.emptyMap(), 0);
+
+    private DeviceRegistry(Context context) {
+        audioManager = (AudioManager) context.getSystemService(Context.AUDIO_SERVICE);
+        usbManager = (UsbManager) context.getSystemService(Context.USB_SERVICE);
+        if (audioManager == null || Build.VERSION.SDK_INT < Build.VERSION_CODES.M) {
+            Log.w(TAG, "Device enumeration not available (API < 23 or no AudioManager)");
+            return;
+        }
+        refresh();
+        audioManager.registerAudioDeviceCallback(new Callback(), new Handler(Looper.getMainLooper()));
+        Log.i(TAG, "Device registry started with " + snapshot.inputs.size() + " inputs");
+    }
+
+    public static synchronized DeviceRegistry get(Context context) {
+        if (instance == null) {
+            instance = new DeviceRegistry(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * 设备的 stableId（见类注释）；已移除的设备返回移除前的 stableId
+     * 相同型号设备的 "#N" 后缀只在设备保持连接期间稳定，见类注释中的限制
+     */
+    public String stableIdOf(AudioDeviceInfo device) {
+        String sid = snapshot.stableIdById.get(device.getId());
+        if (sid == null) {
+            sid = retiredStableIds.get(device.getId());
+        }
+        return sid != null ? sid : baseIdentity(device, usbIdentities());
+    }
+
+    /**
+     * 按规则计算的身份（不含重复序号）
+     * USB 设备的 address（card=N;device=M）在重新插入后会变，所以 USB 优先用 vendorId:productId
+     */
+    private static String baseIdentity(AudioDeviceInfo device, Map<String, String> usbIds) {
+        CharSequence pn = device.getProductName();
+        String productName = pn != null ? pn.toString() : "";
+        if (isUsb(device)) {
+            String usbId = usbIds.get(productName);
+            if (usbId != null) {
+                return device.getType() + "_usb_" + usbId;
+            }
+        } else if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.P) {
+            String address = device.getAddress();
+            if (address != null && !address.isEmpty()) {
+                return device.getType() + "_" + address;
+            }
+        }
+        return device.getType() + "_" + productName;
+    }
+
+    /**
+     * 已连接 USB 设备的 产品名 -> "vendorId:productId"（十六进制），读取设备列表不需要 USB 权限
+     */
+    private Map<String, String> usbIdentities() {
+        Map<String, String> ids = new HashMap<>();
+        if (usbManager == null) {
+            return ids;
+        }
+        try {
+            for (UsbDevice usb : usbManager.getDeviceList().values()) {
+                String name = usb.getProductName();
+                if (name != null) {
+                    ids.put(name, String.format(Locale.US, "%04x:%04x", usb.getVendorId(), usb.getProductId()));
+                }
+            }
+        } catch (Exception e) {
+            Log.w(TAG, "Failed to read USB device list", e);
+        }
+        return ids;
+    }
+
+    public static boolean isUsb(AudioDeviceInfo device) {
+        int type = device.getType();
+        return type == AudioDeviceInfo.TYPE_USB_DEVICE || type == AudioDeviceInfo.TYPE_USB_HEADSET;
+    }
+
+    public void addListener(Listener listener) {
+        listeners.addIfAbsent(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * 当前的输入设备列表（不可修改）
+     */
+    public List<AudioDeviceInfo> getInputs() {
+        return snapshot.inputs;
+    }
+
+    public long getUpdatedAtMs() {
+        return snapshot.updatedAtMs;
+    }
+
+    /**
+     * 按 stableId 查找当前连接的设备（哈希索引）；设备重新插入后返回新的设备对象
+     */
+    public AudioDeviceInfo findByStableId(String stableId) {
+        return stableId != null ? snapshot.byStableId.get(stableId) : null;
+    }
+
+    public AudioDeviceInfo findById(int id) {
+        Snapshot current = snapshot;
+        String sid = current.stableIdById.get(id);
+        return sid != null ? current.byStableId.get(sid) : null;
+    }
+
+    /**
+     * 重新读取设备列表（不切换音频模式）；正常情况下由回调保持最新，不需要调用
+     */
+    public void refresh() {
+        if (audioManager == null || Build.VERSION.SDK_INT < Build.VERSION_CODES.M) {
+            return;
+        }
+        AudioDeviceInfo[] devices = audioManager.getDevices(AudioManager.GET_DEVICES_INPUTS);
+        List<AudioDeviceInfo> list = new ArrayList<>(devices.length);
+        Collections.addAll(list, devices);
+        publish(list);
+    }
+
+    /**
+     * 为新的设备列表建立 stableId 索引并整体替换快照
+     * 先保留仍连接设备已有的 stableId，再为新设备分配最小的空闲序号，后缀不受枚举顺序影响
+     */
+    private void publish(List<AudioDeviceInfo> list) {
+        Map<String, String> usbIds = usbIdentities();
+        Map<Integer, String> previous = snapshot.stableIdById;
+        Map<String, AudioDeviceInfo> byStableId = new HashMap<>();
+        Map<Integer, String> stableIdById = new HashMap<>();
+        List<AudioDeviceInfo> fresh = new ArrayList<>();
+        for (AudioDeviceInfo device : list) {
+            String base = baseIdentity(device, usbIds);
+            String sid = previous.get(device.getId());
+            if (sid != null && (sid.equals(base) || sid.startsWith(base + "#")) && !byStableId.containsKey(sid)) {
+                byStableId.put(sid, device);
+                stableIdById.put(device.getId(), sid);
+            } else {
+                fresh.add(device);
+            }
+        }
+        for (AudioDeviceInfo device : fresh) {
+            String base = baseIdentity(device, usbIds);
+            String sid = base;
+            for (int n = 2; byStableId.containsKey(sid); n++) {
+                sid = base + "#" + n;
+            }
+            byStableId.put(sid, device);
+            stableIdById.put(device.getId(), sid);
+        }
+        snapshot = new Snapshot(Collections.unmodifiableList(list), byStableId, stableIdById,
+            System.currentTimeMillis());
+    }
+
+    /**
+     * 设备列表转为 listInputs 返回的格式
+     */
+    public JSArray toJSArray(List<AudioDeviceInfo> devices) {
+        JSArray arr = new JSArray();
+        for (AudioDeviceInfo device : devices) {
+            arr.put(toJSObject(device));
+        }
+        return arr;
+    }
+
+    public JSObject toJSObject(AudioDeviceInfo d) {
+        JSObject o = new JSObject();
+        CharSequence pn = d.getProductName();
+        o.put("type", d.getType());
+        o.put("label", pn != null ? pn.toString() : "Unknown");
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.P) {
+            o.put("address", d.getAddress());
+        }
+        o.put("stableId", stableIdOf(d));
+        o.put("id", d.getId());
+        o.put("isSource", d.isSource());
+        return o;
+    }
+
+    @RequiresApi(api = Build.VERSION_CODES.M)
+    private final class Callback extends AudioDeviceCallback {
+        @Override
+        public void onAudioDevicesAdded(AudioDeviceInfo[] addedDevices) {
+            update(addedDevices, true);
+        }
+
+        @Override
+        public void onAudioDevicesRemoved(AudioDeviceInfo[] removedDevices) {
+            update(removedDevices, false);
+        }
+
+        private void update(AudioDeviceInfo[] changed, boolean added) {
+            Snapshot before = snapshot;
+            List<AudioDeviceInfo> changedInputs = new ArrayList<>();
+            List<AudioDeviceInfo> next = new ArrayList<>(before.inputs);
+            for (AudioDeviceInfo device : changed) {
+                if (!device.isSource()) {
+                    continue;
+                }
+                int index = indexOf(next, device.getId());
+                if (added && index < 0) {
+                    next.add(device);
+                    changedInputs.add(device);
+                } else if (added) {
+                    next.set(index, device); // 更新为最新的设备对象
+                } else if (index >= 0) {
+                    next.remove(index);
+                    changedInputs.add(device);
+                }
+            }
+            if (changedInputs.isEmpty()) {
+                // 注册回调时系统会把已有设备作为“新增”通知一次
+                return;
+            }
+            if (!added) {
+                // 移除后设备不在快照中，保留其 stableId 以便通知和选择逻辑按原 id 识别
+                for (AudioDeviceInfo device : changedInputs) {
+                    String sid = before.stableIdById.get(device.getId());
+                    if (sid != null) {
+                        retiredStableIds.put(device.getId(), sid);
+                    }
+                }
+            }
+            publish(next);
+            for (AudioDeviceInfo device : changedInputs) {
+                Log.i(TAG, (added ? "Input added: " : "Input removed: ") + device.getProductName() +
+                    " (type=" + device.getType() + ", id=" + device.getId() + ")");
+            }
+            List<AudioDeviceInfo> none = Collections.emptyList();
+            for (Listener listener : listeners) {
+                listener.onDevicesChanged(added ? changedInputs : none, added ? none : changedInputs);
+            }
+        }
+
+        private int indexOf(List<AudioDeviceInfo> list, int id) {
+            for (int i = 0; i < list.size(); i++) {
+                if (list.get(i).getId() == id) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+}
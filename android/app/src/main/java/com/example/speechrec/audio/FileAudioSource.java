@@ -0,0 +1,62 @@
+package com.example.speechrec.audio;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * 从 WAV / 裸 PCM 文件读取的音频源，读完后 read() 返回 -1
+ * 不按实时节奏读取；需要实时节奏时由调用方控制（见 KwsReplay）
+ */
+public class FileAudioSource implements AudioSource {
+
+    private final WavReader reader;
+    private short[] shortBuffer = new short[0];
+
+    public FileAudioSource(WavReader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * @param rawSampleRate 裸 PCM 文件的采样率；WAV 文件忽略此参数
+     */
+    public static FileAudioSource open(File file, int rawSampleRate) throws IOException {
+        return new FileAudioSource(WavReader.open(file, rawSampleRate));
+    }
+
+    public int getChannels() {
+        return reader.getChannels();
+    }
+
+    @Override
+    public int getSampleRate() {
+        return reader.getSampleRate();
+    }
+
+    @Override
+    public void start() {
+    }
+
+    @Override
+    public int read(float[] dst, int offset, int length) throws IOException {
+        if (shortBuffer.length < length) {
+            shortBuffer = new short[length];
+        }
+        int n = reader.read(shortBuffer, length);
+        for (int i = 0; i < n; i++) {
+            dst[offset + i] = shortBuffer[i] / 32768.0f;
+        }
+        return n;
+    }
+
+    @Override
+    public void stop() {
+    }
+
+    @Override
+    public void close() {
+        try {
+            reader.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
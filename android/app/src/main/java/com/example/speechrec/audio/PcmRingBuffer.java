@@ -0,0 +1,213 @@
+package com.example.speechrec.audio;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * 有界的 16-bit PCM 环形缓冲区，保存最近一段采集音频
+ * 样本用绝对序号（从开始录音起累计）寻址，与识别线程的采样计数一致，
+ * 因此关键词检测结果中的 startSample / endSample 可以直接用来导出或接续音频
+ *
+ * - exportWav(): 把一段历史音频写成 WAV 文件
+ * - openStream(): 从某个样本开始读取，先读历史音频，再阻塞等待新采集的音频，
+ *   可以直接作为下一个识别引擎的输入流，唤醒词和指令之间没有采集空档
+ *
+ * 写入只在识别线程中进行；读取可以在任意线程
+ */
+public class PcmRingBuffer {
+
+    private final short[] ring;
+    private final int sampleRate;
+    private long written = 0; // 已写入的样本总数
+    private boolean closed = false;
+
+    public PcmRingBuffer(int sampleRate, int capacityMs) {
+        this.sampleRate = sampleRate;
+        this.ring = new short[Math.max(1, (int) ((long) sampleRate * capacityMs / 1000))];
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    public synchronized void write(short[] samples, int length) {
+        for (int i = 0; i < length; i++) {
+            ring[(int) ((written + i) % ring.length)] = samples[i];
+        }
+        written += length;
+        notifyAll();
+    }
+
+    /**
+     * 写入 [-1, 1] 范围的 float 样本，按 16-bit 保存
+     */
+    public synchronized void write(float[] samples, int length) {
+        for (int i = 0; i < length; i++) {
+            int v = Math.round(samples[i] * 32768.0f);
+            ring[(int) ((written + i) % ring.length)] = (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, v));
+        }
+        written += length;
+        notifyAll();
+    }
+
+    /**
+     * 已写入的样本总数（下一个样本的序号）
+     */
+    public synchronized long getWrittenSamples() {
+        return written;
+    }
+
+    /**
+     * 仍在缓冲区中的最早样本序号
+     */
+    public synchronized long getOldestSample() {
+        return Math.max(0, written - ring.length);
+    }
+
+    /**
+     * 关闭缓冲区，唤醒并结束所有阻塞中的读取
+     */
+    public synchronized void close() {
+        closed = true;
+        notifyAll();
+    }
+
+    public synchronized boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * 复制 [fromSample, toSample) 区间中仍在缓冲区内的样本
+     * @return 实际复制的样本，超出缓冲区范围的部分被截掉
+     */
+    public synchronized short[] copy(long fromSample, long toSample) {
+        long from = Math.max(fromSample, Math.max(0, written - ring.length));
+        long to = Math.min(toSample, written);
+        if (to <= from) {
+            return new short[0];
+        }
+        short[] out = new short[(int) (to - from)];
+        for (int i = 0; i < out.length; i++) {
+            out[i] = ring[(int) ((from + i) % ring.length)];
+        }
+        return out;
+    }
+
+    /**
+     * 把 [fromSample, toSample) 区间导出为 16-bit 单声道 WAV 文件
+     * @return 写入的样本数
+     */
+    public int exportWav(long fromSample, long toSample, File file) throws IOException {
+        short[] samples = copy(fromSample, toSample);
+        ByteBuffer data = ByteBuffer.allocate(44 + samples.length * 2).order(ByteOrder.LITTLE_ENDIAN);
+        data.put(new byte[]{'R', 'I', 'F', 'F'});
+        data.putInt(36 + samples.length * 2);
+        data.put(new byte[]{'W', 'A', 'V', 'E', 'f', 'm', 't', ' '});
+        data.putInt(16);
+        data.putShort((short) 1); // PCM
+        data.putShort((short) 1); // 单声道
+        data.putInt(sampleRate);
+        data.putInt(sampleRate * 2);
+        data.putShort((short) 2);
+        data.putShort((short) 16);
+        data.put(new byte[]{'d', 'a', 't', 'a'});
+        data.putInt(samples.length * 2);
+        for (short s : samples) {
+            data.putShort(s);
+        }
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(data.array());
+        }
+        return samples.length;
+    }
+
+    /**
+     * 从 fromSample 开始的实时 PCM 流（16-bit 小端字节）
+     * 先读出缓冲区中的历史音频，之后阻塞等待新音频；缓冲区关闭或流关闭后返回 -1
+     * 读取落后超过缓冲区容量时跳到仍可用的最早样本
+     */
+    public PcmInputStream openStream(long fromSample) {
+        return new PcmInputStream(fromSample);
+    }
+
+    /**
+     * openStream() 返回的流，可以查询读取位置（下一个要读的样本序号）
+     */
+    public final class PcmInputStream extends InputStream {
+        private long position;
+        private boolean streamClosed = false;
+
+        private PcmInputStream(long fromSample) {
+            this.position = fromSample;
+        }
+
+        public long getPosition() {
+            synchronized (PcmRingBuffer.this) {
+                return position;
+            }
+        }
+
+        /**
+         * 该流所读取的缓冲区
+         */
+        public PcmRingBuffer getBuffer() {
+            return PcmRingBuffer.this;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) == -1 ? -1 : one[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            // 按整样本读取，避免把一个样本拆成两次返回
+            int maxSamples = len / 2;
+            if (maxSamples == 0) {
+                return len == 0 ? 0 : -1;
+            }
+            synchronized (PcmRingBuffer.this) {
+                while (!streamClosed && !closed && position >= written) {
+                    try {
+                        PcmRingBuffer.this.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IOException("Interrupted while waiting for audio", e);
+                    }
+                }
+                if (streamClosed || position >= written) {
+                    return -1;
+                }
+                position = Math.max(position, Math.max(0, written - ring.length));
+                int count = (int) Math.min(maxSamples, written - position);
+                for (int i = 0; i < count; i++) {
+                    short s = ring[(int) ((position + i) % ring.length)];
+                    b[off + i * 2] = (byte) s;
+                    b[off + i * 2 + 1] = (byte) (s >> 8);
+                }
+                position += count;
+                return count * 2;
+            }
+        }
+
+        @Override
+        public int available() {
+            synchronized (PcmRingBuffer.this) {
+                return (int) Math.min(Integer.MAX_VALUE, Math.max(0, written - position) * 2);
+            }
+        }
+
+        @Override
+        public void close() {
+            synchronized (PcmRingBuffer.this) {
+                streamClosed = true;
+                PcmRingBuffer.this.notifyAll();
+            }
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.example.speechrec.audio;
+
+import android.os.Process;
+import android.util.Log;
+
+import java.io.IOException;
+
+/**
+ * 进程内共享的采集流
+ * 由一个采集线程从 AudioSource 读取音频写入 PcmRingBuffer，多个使用者各自从缓冲区读取：
+ * - 百度 ASR 通过 IN_FILE 读取 PCM 字节流（见 BaiduAudioInput）
+ * - 关键词识别通过 newReader() 得到的 AudioSource 读取
+ * 这样所有使用者看到的是同一个设备上的同一段音频，不需要多个 AudioRecord 争用设备
+ *
+ * 同一时间只有一个共享采集流（current()）
+ */
+public final class SharedCapture {
+    private static final String TAG = "SharedCapture";
+
+    private static volatile SharedCapture current;
+
+    private final AudioSource source;
+    private final PcmRingBuffer buffer;
+    private final Thread captureThread;
+    private volatile boolean running = true;
+
+    private SharedCapture(AudioSource source, int historyMs) {
+        this.source = source;
+        this.buffer = new PcmRingBuffer(source.getSampleRate(), historyMs);
+        this.captureThread = new Thread(this::captureLoop, "SharedCapture");
+    }
+
+    /**
+     * 开始共享采集，替换之前的共享采集流；音频源由本对象负责释放
+     * @param historyMs 缓冲区保留的音频时长，读取落后超过此时长会丢失音频
+     */
+    public static synchronized SharedCapture start(AudioSource source, int historyMs) throws IOException {
+        SharedCapture previous = current;
+        if (previous != null) {
+            previous.stop();
+        }
+        SharedCapture capture = new SharedCapture(source, historyMs);
+        source.start();
+        capture.captureThread.start();
+        current = capture;
+        Log.i(TAG, "Shared capture started (" + source.getSampleRate() + "Hz, history " + historyMs + "ms)");
+        return capture;
+    }
+
+    /**
+     * 当前的共享采集流，没有时返回 null
+     */
+    public static SharedCapture current() {
+        return current;
+    }
+
+    public int getSampleRate() {
+        return source.getSampleRate();
+    }
+
+    public PcmRingBuffer getBuffer() {
+        return buffer;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * 停止采集并关闭缓冲区，所有读取者随后读到流结束
+     */
+    public void stop() {
+        synchronized (SharedCapture.class) {
+            if (current == this) {
+                current = null;
+            }
+        }
+        if (!running) {
+            return;
+        }
+        running = false;
+        source.stop();
+        try {
+            captureThread.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        source.close();
+        buffer.close();
+        Log.i(TAG, "Shared capture stopped");
+    }
+
+    /**
+     * 从当前位置开始读取共享音频的 AudioSource
+     * stop() 只停止这个读取者；之后 start() 从最新位置继续，跳过停止期间的音频
+     */
+    public AudioSource newReader() {
+        return new Reader();
+    }
+
+    private void captureLoop() {
+        try {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_URGENT_AUDIO);
+        } catch (Exception e) {
+            Log.w(TAG, "Failed to set URGENT_AUDIO thread priority: " + e.getMessage());
+        }
+        float[] chunk = new float[Math.max(1, source.getSampleRate() / 50)]; // 20ms
+        while (running) {
+            try {
+                int n = source.read(chunk, 0, chunk.length);
+                if (n < 0) {
+                    break;
+                }
+                if (n > 0) {
+                    buffer.write(chunk, n);
+                }
+            } catch (IOException e) {
+                if (running) {
+                    Log.e(TAG, "Capture failed", e);
+                }
+                break;
+            }
+        }
+        // 采集结束（设备断开、文件读完或 stop()）时让读取者退出
+        running = false;
+        buffer.close();
+    }
+
+    private final class Reader implements AudioSource {
+        private PcmRingBuffer.PcmInputStream stream = buffer.openStream(buffer.getWrittenSamples());
+        private byte[] bytes = new byte[0];
+        private boolean stopped = false;
+
+        @Override
+        public int getSampleRate() {
+            return source.getSampleRate();
+        }
+
+        @Override
+        public synchronized void start() {
+            if (stopped) {
+                stream.close();
+                stream = buffer.openStream(buffer.getWrittenSamples());
+                stopped = false;
+            }
+        }
+
+        @Override
+        public int read(float[] dst, int offset, int length) throws IOException {
+            PcmRingBuffer.PcmInputStream in;
+            synchronized (this) {
+                in = stream;
+            }
+            if (bytes.length < length * 2) {
+                bytes = new byte[length * 2];
+            }
+            int n = in.read(bytes, 0, length * 2);
+            if (n < 0) {
+                return in == stream ? -1 : 0; // 暂停/恢复时流被替换，不算结束
+            }
+            int samples = n / 2;
+            for (int i = 0; i < samples; i++) {
+                short s = (short) ((bytes[i * 2] & 0xff) | (bytes[i * 2 + 1] << 8));
+                dst[offset + i] = s / 32768.0f;
+            }
+            return samples;
+        }
+
+        @Override
+        public synchronized void stop() {
+            stopped = true;
+        }
+
+        @Override
+        public synchronized void close() {
+            stream.close();
+        }
+    }
+}
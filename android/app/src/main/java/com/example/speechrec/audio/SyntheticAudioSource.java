@@ -0,0 +1,92 @@
+package com.example.speechrec.audio;
+
+import java.util.Random;
+
+/**
+ * 合成信号音频源，用于测试和在设备外测量识别流程的性能
+ * 不按实时节奏生成；达到指定时长后 read() 返回 -1（时长为 0 时无限生成）
+ */
+public class SyntheticAudioSource implements AudioSource {
+
+    public enum Waveform {
+        SILENCE,
+        SINE,
+        WHITE_NOISE
+    }
+
+    private final int sampleRate;
+    private final Waveform waveform;
+    private final float frequencyHz;
+    private final float amplitude;
+    private final long totalSamples;
+    private final Random random = new Random(0);
+    private long position = 0;
+
+    /**
+     * @param frequencyHz 正弦波频率，其他波形忽略
+     * @param amplitude 幅度（0 - 1）
+     * @param durationMs 总时长，0 表示无限
+     */
+    public SyntheticAudioSource(int sampleRate, Waveform waveform, float frequencyHz, float amplitude,
+                                long durationMs) {
+        this.sampleRate = sampleRate;
+        this.waveform = waveform;
+        this.frequencyHz = frequencyHz;
+        this.amplitude = amplitude;
+        this.totalSamples = durationMs > 0 ? sampleRate * durationMs / 1000 : Long.MAX_VALUE;
+    }
+
+    public static SyntheticAudioSource silence(int sampleRate, long durationMs) {
+        return new SyntheticAudioSource(sampleRate, Waveform.SILENCE, 0, 0, durationMs);
+    }
+
+    public static SyntheticAudioSource sine(int sampleRate, float frequencyHz, float amplitude, long durationMs) {
+        return new SyntheticAudioSource(sampleRate, Waveform.SINE, frequencyHz, amplitude, durationMs);
+    }
+
+    public static SyntheticAudioSource whiteNoise(int sampleRate, float amplitude, long durationMs) {
+        return new SyntheticAudioSource(sampleRate, Waveform.WHITE_NOISE, 0, amplitude, durationMs);
+    }
+
+    @Override
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    @Override
+    public void start() {
+    }
+
+    @Override
+    public int read(float[] dst, int offset, int length) {
+        long remaining = totalSamples - position;
+        if (remaining <= 0) {
+            return -1;
+        }
+        int n = (int) Math.min(length, remaining);
+        for (int i = 0; i < n; i++) {
+            long t = position + i;
+            switch (waveform) {
+                case SINE:
+                    dst[offset + i] = (float) (amplitude * Math.sin(2 * Math.PI * frequencyHz * t / sampleRate));
+                    break;
+                case WHITE_NOISE:
+                    dst[offset + i] = amplitude * (random.nextFloat() * 2 - 1);
+                    break;
+                default:
+                    dst[offset + i] = 0f;
+                    break;
+            }
+        }
+        position += n;
+        return n;
+    }
+
+    @Override
+    public void stop() {
+    }
+
+    @Override
+    public void close() {
+    }
+}
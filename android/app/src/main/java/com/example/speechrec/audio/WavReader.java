@@ -0,0 +1,188 @@
+package com.example.speechrec.audio;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 读取 16-bit PCM 音频文件，输出单声道样本
+ * - WAV：解析 RIFF 头，支持 PCM 16-bit，多声道取平均
+ * - 其他扩展名（.pcm / .raw）：按 16-bit 小端单声道裸数据读取，采样率由调用方指定
+ */
+public class WavReader implements Closeable {
+
+    private final InputStream in;
+    private final int sampleRate;
+    private final int channels;
+    private long remainingBytes; // data 块剩余字节数，裸 PCM 为 Long.MAX_VALUE
+    private byte[] frameBuffer = new byte[0];
+
+    private WavReader(InputStream in, int sampleRate, int channels, long dataBytes) {
+        this.in = in;
+        this.sampleRate = sampleRate;
+        this.channels = channels;
+        this.remainingBytes = dataBytes;
+    }
+
+    /**
+     * @param rawSampleRate 裸 PCM 文件的采样率；WAV 文件忽略此参数
+     */
+    public static WavReader open(File file, int rawSampleRate) throws IOException {
+        InputStream in = new BufferedInputStream(new FileInputStream(file), 64 * 1024);
+        try {
+            String name = file.getName().toLowerCase();
+            if (!name.endsWith(".wav")) {
+                if (rawSampleRate <= 0) {
+                    throw new IOException("Sample rate is required for raw PCM: " + file);
+                }
+                return new WavReader(in, rawSampleRate, 1, Long.MAX_VALUE);
+            }
+            return parseHeader(in);
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    private static WavReader parseHeader(InputStream in) throws IOException {
+        byte[] riff = readFully(in, 12);
+        if (!tag(riff, 0, "RIFF") || !tag(riff, 8, "WAVE")) {
+            throw new IOException("Not a RIFF/WAVE file");
+        }
+        int sampleRate = 0;
+        int channels = 0;
+        int bits = 0;
+        int format = 0;
+        while (true) {
+            byte[] chunk = readFully(in, 8);
+            long size = le32(chunk, 4) & 0xffffffffL;
+            if (tag(chunk, 0, "fmt ")) {
+                byte[] fmt = readFully(in, (int) size);
+                format = le16(fmt, 0);
+                channels = le16(fmt, 2);
+                sampleRate = le32(fmt, 4);
+                bits = le16(fmt, 14);
+                skip(in, size & 1);
+            } else if (tag(chunk, 0, "data")) {
+                if (sampleRate <= 0) {
+                    throw new IOException("Missing fmt chunk before data");
+                }
+                // 1 = PCM，0xFFFE = WAVE_FORMAT_EXTENSIBLE（这里只接受 16-bit 整数样本）
+                if ((format != 1 && format != 0xFFFE) || bits != 16 || channels <= 0) {
+                    throw new IOException("Unsupported WAV format: format=" + format +
+                        ", bits=" + bits + ", channels=" + channels);
+                }
+                // 录音中断时 data 长度可能为 0 或 0xFFFFFFFF，按读到文件末尾处理
+                long dataBytes = size == 0 || size == 0xffffffffL ? Long.MAX_VALUE : size;
+                return new WavReader(in, sampleRate, channels, dataBytes);
+            } else {
+                skip(in, size + (size & 1));
+            }
+        }
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    public int getChannels() {
+        return channels;
+    }
+
+    /**
+     * 读取最多 maxSamples 个单声道样本
+     * @return 实际读取的样本数，文件结束时返回 -1
+     */
+    public int read(short[] dst, int maxSamples) throws IOException {
+        int frameBytes = channels * 2;
+        long wanted = Math.min((long) maxSamples * frameBytes, remainingBytes);
+        wanted -= wanted % frameBytes;
+        if (wanted <= 0) {
+            return -1;
+        }
+        if (frameBuffer.length < wanted) {
+            frameBuffer = new byte[(int) wanted];
+        }
+        int got = 0;
+        while (got < wanted) {
+            int n = in.read(frameBuffer, got, (int) wanted - got);
+            if (n < 0) {
+                break;
+            }
+            got += n;
+        }
+        int frames = got / frameBytes;
+        if (frames == 0) {
+            remainingBytes = 0;
+            return -1;
+        }
+        if (remainingBytes != Long.MAX_VALUE) {
+            remainingBytes -= (long) frames * frameBytes;
+        }
+        for (int f = 0; f < frames; f++) {
+            int base = f * frameBytes;
+            if (channels == 1) {
+                dst[f] = (short) le16(frameBuffer, base);
+            } else {
+                int sum = 0;
+                for (int c = 0; c < channels; c++) {
+                    sum += (short) le16(frameBuffer, base + c * 2);
+                }
+                dst[f] = (short) (sum / channels);
+            }
+        }
+        return frames;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private static byte[] readFully(InputStream in, int length) throws IOException {
+        byte[] out = new byte[length];
+        int got = 0;
+        while (got < length) {
+            int n = in.read(out, got, length - got);
+            if (n < 0) {
+                throw new EOFException("Truncated WAV header");
+            }
+            got += n;
+        }
+        return out;
+    }
+
+    private static void skip(InputStream in, long count) throws IOException {
+        while (count > 0) {
+            long n = in.skip(count);
+            if (n <= 0) {
+                if (in.read() < 0) {
+                    throw new EOFException("Truncated WAV file");
+                }
+                n = 1;
+            }
+            count -= n;
+        }
+    }
+
+    private static boolean tag(byte[] b, int off, String tag) {
+        for (int i = 0; i < 4; i++) {
+            if (b[off + i] != tag.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int le16(byte[] b, int off) {
+        return (b[off] & 0xff) | ((b[off + 1] & 0xff) << 8);
+    }
+
+    private static int le32(byte[] b, int off) {
+        return (b[off] & 0xff) | ((b[off + 1] & 0xff) << 8) | ((b[off + 2] & 0xff) << 16) | ((b[off + 3] & 0xff) << 24);
+    }
+}
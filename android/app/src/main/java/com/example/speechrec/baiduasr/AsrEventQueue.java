@@ -0,0 +1,240 @@
+package com.example.speechrec.baiduasr;
+
+import android.util.Log;
+
+import com.getcapacitor.JSObject;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.PriorityQueue;
+
+/**
+ * Single worker thread for turning Baidu ASR callbacks into plugin events.
+ *
+ * JSON parsing, keyword matching and JSObject building run here instead of on the
+ * SDK callback (main) thread. The queue is bounded for partial results only:
+ * a partial replaces a partial still waiting at the tail, and when the queue is full
+ * the oldest waiting partial is dropped. Final results, errors and other events are
+ * never dropped.
+ */
+final class AsrEventQueue {
+    private static final String TAG = "AsrEventQueue";
+
+    private static final class Entry {
+        Runnable task;
+        final boolean partial;
+        final long enqueuedNs;
+
+        Entry(Runnable task, boolean partial) {
+            this.task = task;
+            this.partial = partial;
+            this.enqueuedNs = System.nanoTime();
+        }
+    }
+
+    private static final class Delayed implements Comparable<Delayed> {
+        final Runnable task;
+        final long dueNs;
+
+        Delayed(Runnable task, long dueNs) {
+            this.task = task;
+            this.dueNs = dueNs;
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(dueNs, other.dueNs);
+        }
+    }
+
+    private final int capacity;
+    private final ArrayDeque<Entry> queue = new ArrayDeque<>();
+    private final PriorityQueue<Delayed> delayed = new PriorityQueue<>();
+    private Thread worker;
+    private boolean running = false;
+
+    // Stats (guarded by this)
+    private long processed = 0;
+    private long coalesced = 0;
+    private long dropped = 0;
+    private int maxDepth = 0;
+    private double latencySumMs = 0;
+    private double lastLatencyMs = 0;
+    private double maxLatencyMs = 0;
+
+    AsrEventQueue(int capacity) {
+        this.capacity = Math.max(1, capacity);
+    }
+
+    synchronized void start() {
+        if (worker != null) {
+            return;
+        }
+        running = true;
+        worker = new Thread(this::loop, "BaiduAsr-Events");
+        worker.start();
+    }
+
+    /**
+     * Stop the worker; events still waiting are discarded
+     */
+    void shutdown() {
+        Thread t;
+        synchronized (this) {
+            running = false;
+            queue.clear();
+            delayed.clear();
+            notifyAll();
+            t = worker;
+            worker = null;
+        }
+        if (t != null && t != Thread.currentThread()) {
+            try {
+                t.join(500);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Queue an event that must be delivered (final result, error, restart stats)
+     */
+    synchronized void post(Runnable task) {
+        if (!running) {
+            return;
+        }
+        if (queue.size() >= capacity) {
+            dropOldestPartial();
+        }
+        enqueue(new Entry(task, false));
+    }
+
+    /**
+     * Queue a partial result; superseded by a newer partial if it hasn't been processed yet
+     */
+    synchronized void postPartial(Runnable task) {
+        if (!running) {
+            return;
+        }
+        Entry tail = queue.peekLast();
+        if (tail != null && tail.partial) {
+            // Keep the original enqueue time so the reported latency covers the wait
+            tail.task = task;
+            coalesced++;
+            return;
+        }
+        if (queue.size() >= capacity && !dropOldestPartial()) {
+            // Full of events that must be delivered; this partial will be superseded anyway
+            dropped++;
+            return;
+        }
+        enqueue(new Entry(task, true));
+    }
+
+    /**
+     * Run a task on the worker after delayMs (not counted in the queue stats)
+     */
+    synchronized void postDelayed(Runnable task, long delayMs) {
+        if (!running) {
+            return;
+        }
+        delayed.add(new Delayed(task, System.nanoTime() + Math.max(0, delayMs) * 1_000_000L));
+        notifyAll();
+    }
+
+    synchronized JSObject getStats() {
+        JSObject stats = new JSObject();
+        stats.put("depth", queue.size());
+        stats.put("maxDepth", maxDepth);
+        stats.put("capacity", capacity);
+        stats.put("processed", processed);
+        stats.put("coalesced", coalesced);
+        stats.put("dropped", dropped);
+        stats.put("lastLatencyMs", lastLatencyMs);
+        stats.put("avgLatencyMs", processed > 0 ? latencySumMs / processed : 0);
+        stats.put("maxLatencyMs", maxLatencyMs);
+        return stats;
+    }
+
+    synchronized void resetStats() {
+        processed = 0;
+        coalesced = 0;
+        dropped = 0;
+        maxDepth = queue.size();
+        latencySumMs = 0;
+        lastLatencyMs = 0;
+        maxLatencyMs = 0;
+    }
+
+    private void enqueue(Entry entry) {
+        queue.addLast(entry);
+        maxDepth = Math.max(maxDepth, queue.size());
+        notifyAll();
+    }
+
+    private boolean dropOldestPartial() {
+        Iterator<Entry> it = queue.iterator();
+        while (it.hasNext()) {
+            if (it.next().partial) {
+                it.remove();
+                dropped++;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void loop() {
+        while (true) {
+            Entry entry = null;
+            Runnable timed = null;
+            synchronized (this) {
+                while (running) {
+                    Delayed next = delayed.peek();
+                    long waitNs = next != null ? next.dueNs - System.nanoTime() : Long.MAX_VALUE;
+                    if (waitNs <= 0) {
+                        timed = delayed.poll().task;
+                        break;
+                    }
+                    if (!queue.isEmpty()) {
+                        entry = queue.pollFirst();
+                        break;
+                    }
+                    try {
+                        if (next != null) {
+                            wait(Math.max(1, waitNs / 1_000_000L));
+                        } else {
+                            wait();
+                        }
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (!running) {
+                    return;
+                }
+            }
+            if (timed != null) {
+                try {
+                    timed.run();
+                } catch (Exception e) {
+                    Log.e(TAG, "Delayed task failed", e);
+                }
+                continue;
+            }
+            try {
+                entry.task.run();
+            } catch (Exception e) {
+                Log.e(TAG, "Event task failed", e);
+            }
+            double latencyMs = (System.nanoTime() - entry.enqueuedNs) / 1_000_000.0;
+            synchronized (this) {
+                processed++;
+                latencySumMs += latencyMs;
+                lastLatencyMs = latencyMs;
+                maxLatencyMs = Math.max(maxLatencyMs, latencyMs);
+            }
+        }
+    }
+}
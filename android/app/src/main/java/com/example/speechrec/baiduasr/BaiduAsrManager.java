@@ -4,15 +4,20 @@ import android.content.Context;
 import android.media.MediaRecorder;
 import android.os.Handler;
 import android.os.Looper;
+import android.os.SystemClock;
 import com.getcapacitor.JSObject;
 import com.baidu.speech.EventListener;
 import com.baidu.speech.EventManager;
 import com.baidu.speech.EventManagerFactory;
 import com.baidu.speech.asr.SpeechConstant;
 import com.example.speechrec.BuildConfig;
+import com.example.speechrec.commands.Command;
+import com.example.speechrec.commands.CommandRegistry;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
+import java.util.HashSet;
+import java.util.Set;
 
 public class BaiduAsrManager {
     private final Context appContext;
@@ -26,7 +31,32 @@ public class BaiduAsrManager {
     private boolean vadEnabled = true;
     private boolean continuousMode = false; // Whether to auto-restart after each sentence
     private final KeywordMatcher keywordMatcher; // 关键词匹配器
-    private boolean keywordFilterEnabled = false; // 是否启用关键词过滤（只返回匹配的结果）
+    private volatile boolean keywordFilterEnabled = false; // 是否启用关键词过滤（只返回匹配的结果）
+
+    // Pipelined continuous mode: restart the moment asr.finish arrives instead of after a fixed delay,
+    // reusing the EventManager unless the session hit a "Broken pipe" error
+    private boolean pipelinedRestart = false;
+    // Prepared on the SDK callback thread while the current session is finishing,
+    // taken or discarded on the main thread; guarded by the synchronized standby helpers
+    private EventManager standbyAsr;
+    private boolean brokenPipeSeen = false;
+    // Restart gap: from asr.finish to asr.ready of the next session
+    private long restartRequestedAtMs = 0;
+    private boolean restartReused = false;
+    private int restartCount = 0;
+    private long restartGapSumMs = 0;
+    private long maxRestartGapMs = 0;
+    // Feed the SDK from our own capture stream (SharedCapture) via IN_FILE instead of its internal AudioRecord
+    private boolean externalInput = false;
+
+    // Result parsing and event building run on this worker, off the SDK callback (main) thread
+    private static final int EVENT_QUEUE_CAPACITY = 16;
+    private final AsrEventQueue eventQueue = new AsrEventQueue(EVENT_QUEUE_CAPACITY);
+    // At most one onPartial per interval across the WebView bridge (0 = every partial)
+    private final PartialThrottle partialThrottle;
+    // Commands already dispatched for the current sentence (event worker only): partials repeat
+    // the text, so each command fires once per sentence
+    private final Set<String> sentenceCommands = new HashSet<>();
 
     public interface EventEmitter {
         void emit(String event, JSObject data);
@@ -36,6 +66,7 @@ public class BaiduAsrManager {
         this.appContext = appContext;
         this.eventEmitter = eventEmitter;
         this.keywordMatcher = new KeywordMatcher();
+        this.partialThrottle = new PartialThrottle(eventQueue, data -> eventEmitter.emit("onPartial", data));
     }
 
     public void initialize(boolean enableVad, String language) {
@@ -48,6 +79,8 @@ public class BaiduAsrManager {
             }
         };
         asr.registerListener(asrListener);
+        partialThrottle.reset();
+        eventQueue.start();
         // Save preferences for later start
         this.vadEnabled = enableVad;
         this.languagePreference = language != null ? language : "zh";
@@ -65,16 +98,93 @@ public class BaiduAsrManager {
         ensureInit();
         if (isListening) return;
         
+        // A user-initiated start is not a restart; don't report its gap
+        restartRequestedAtMs = 0;
+        eventQueue.post(sentenceCommands::clear);
+        beginSession(continuous);
+    }
+
+    private void beginSession(boolean continuous) {
         this.continuousMode = continuous;
         
-        // Always recreate EventManager for each new session to ensure clean state
-        // This prevents "Broken pipe" errors from stale connections
+        // Always use a fresh EventManager for each new session to ensure clean state
+        // This prevents "Broken pipe" errors from stale connections; a standby manager
+        // prepared on asr.end is unused so far and is taken instead of left registered
         cleanupAsr();
-        asr = EventManagerFactory.create(appContext, "asr");
+        EventManager standby = takeStandbyAsr();
+        asr = standby != null ? standby : createAsr();
+        sendStart();
+    }
+
+    /**
+     * Enable pipelined restarts in continuous mode
+     */
+    public void setPipelinedRestart(boolean enabled) {
+        this.pipelinedRestart = enabled;
+    }
+
+    /**
+     * Read audio from BaiduAudioInput instead of letting the SDK open the microphone.
+     * A SharedCapture must be running before startListening().
+     */
+    public void setExternalInput(boolean enabled) {
+        this.externalInput = enabled;
+        if (!enabled) {
+            BaiduAudioInput.reset();
+        }
+    }
+
+    /**
+     * Limit onPartial events to one per intervalMs; the latest text is always delivered
+     * when the interval ends, onFinal and onKeywordDetected are never throttled
+     */
+    public void setPartialIntervalMs(long intervalMs) {
+        partialThrottle.setIntervalMs(intervalMs);
+    }
+
+    public boolean isExternalInput() {
+        return externalInput;
+    }
+
+    private EventManager createAsr() {
+        EventManager manager = EventManagerFactory.create(appContext, "asr");
         if (asrListener != null) {
-            asr.registerListener(asrListener);
+            manager.registerListener(asrListener);
+        }
+        return manager;
+    }
+
+    private synchronized void prepareStandbyAsr() {
+        if (standbyAsr == null) {
+            standbyAsr = createAsr();
+        }
+    }
+
+    private synchronized EventManager takeStandbyAsr() {
+        EventManager standby = standbyAsr;
+        standbyAsr = null;
+        return standby;
+    }
+
+    /**
+     * Unregister and drop a standby manager that will not be used
+     */
+    private void discardStandbyAsr() {
+        EventManager standby = takeStandbyAsr();
+        if (standby != null && asrListener != null) {
+            try {
+                standby.unregisterListener(asrListener);
+            } catch (Throwable ignored) {}
         }
+    }
 
+    private void sendStart() {
+        brokenPipeSeen = false;
+        asr.send(SpeechConstant.ASR_START, buildStartParams(), null, 0, 0);
+        isListening = true;
+    }
+
+    private String buildStartParams() {
         JSONObject params = new JSONObject();
         try {
             // Basic
@@ -105,7 +215,12 @@ public class BaiduAsrManager {
             // Explicitly enforce 16k sample rate to match actual capture pipeline
             params.put(SpeechConstant.SAMPLE_RATE, 16000);
 
-            params.put(SpeechConstant.AUDIO_SOURCE, MediaRecorder.AudioSource.VOICE_RECOGNITION);
+            if (externalInput) {
+                // 16k 16-bit mono PCM from our capture stream; the SDK opens no AudioRecord
+                params.put(SpeechConstant.IN_FILE, BaiduAudioInput.IN_FILE_PARAM);
+            } else {
+                params.put(SpeechConstant.AUDIO_SOURCE, MediaRecorder.AudioSource.VOICE_RECOGNITION);
+            }
 
             // Endpoint timeout (ms) - time of silence before considering speech ended
             // In continuous mode, use shorter timeout for better responsiveness
@@ -117,14 +232,80 @@ public class BaiduAsrManager {
             err.put("message", "ASR params error: " + e.getMessage());
             eventEmitter.emit("onError", err);
         }
+        return params.toString();
+    }
 
-        asr.send(SpeechConstant.ASR_START, params.toString(), null, 0, 0);
-        isListening = true;
+    /**
+     * Start the next sentence in continuous mode (called on asr.finish)
+     */
+    private void scheduleRestart() {
+        restartRequestedAtMs = SystemClock.elapsedRealtime();
+        if (!pipelinedRestart) {
+            // Small delay to allow cleanup, then restart with a fresh instance
+            mainHandler.postDelayed(new Runnable() {
+                @Override
+                public void run() {
+                    if (continuousMode && !isListening && initialized) {
+                        restartReused = false;
+                        beginSession(true);
+                    }
+                }
+            }, 300); // 300ms delay for smooth transition
+            return;
+        }
+
+        // Post without delay: sending ASR_START from inside the SDK callback is not safe
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (!continuousMode || isListening || !initialized) {
+                    return;
+                }
+                restartReused = asr != null && !brokenPipeSeen;
+                if (!restartReused) {
+                    // The old connection is broken; switch to the standby manager
+                    cleanupAsr();
+                    EventManager standby = takeStandbyAsr();
+                    asr = standby != null ? standby : createAsr();
+                }
+                sendStart();
+            }
+        });
+    }
+
+    private void onSessionReady() {
+        if (restartRequestedAtMs == 0) {
+            return;
+        }
+        long gapMs = SystemClock.elapsedRealtime() - restartRequestedAtMs;
+        restartRequestedAtMs = 0;
+        restartCount++;
+        restartGapSumMs += gapMs;
+        maxRestartGapMs = Math.max(maxRestartGapMs, gapMs);
+
+        // Queued behind the previous sentence's onFinal so the events stay in order
+        final boolean reused = restartReused;
+        final boolean pipelined = pipelinedRestart;
+        final int restarts = restartCount;
+        final long avgGapMs = restartGapSumMs / restartCount;
+        final long maxGapMs = maxRestartGapMs;
+        eventQueue.post(() -> {
+            JSObject d = new JSObject();
+            d.put("gapMs", gapMs);
+            d.put("reused", reused);
+            d.put("pipelined", pipelined);
+            d.put("restarts", restarts);
+            d.put("avgGapMs", avgGapMs);
+            d.put("maxGapMs", maxGapMs);
+            eventEmitter.emit("onRestart", d);
+        });
     }
 
     public void stopListening() {
         if (!isListening) return;
         continuousMode = false; // Stop auto-restart
+        restartRequestedAtMs = 0;
+        discardStandbyAsr();
         asr.send(SpeechConstant.ASR_STOP, null, null, 0, 0);
         // Safety: if no finish event arrives, cancel to ensure mic thread stops and sockets close
         mainHandler.postDelayed(new Runnable() {
@@ -141,6 +322,8 @@ public class BaiduAsrManager {
     public void cancel() {
         if (!isListening) return;
         continuousMode = false; // Stop auto-restart
+        restartRequestedAtMs = 0;
+        discardStandbyAsr();
         asr.send(SpeechConstant.ASR_CANCEL, "{}", null, 0, 0);
         isListening = false;
     }
@@ -152,7 +335,9 @@ public class BaiduAsrManager {
             isListening = false;
         }
         cleanupAsr();
+        discardStandbyAsr();
         asrListener = null;
+        eventQueue.shutdown();
         initialized = false;
     }
     
@@ -173,103 +358,167 @@ public class BaiduAsrManager {
         }
     }
 
+    /**
+     * Called on the SDK callback thread: only session state changes happen here,
+     * result parsing and event emission are queued to the event worker
+     */
     private void handleAsrEvent(String name, String params) {
         try {
-            if ("asr.partial".equals(name)) {
-                String text = extractBestResult(params);
-                if (text != null) {
-                    // 关键词匹配
-                    KeywordMatcher.MatchResult matchResult = keywordMatcher.match(text);
-                    
-                    JSObject d = new JSObject();
-                    d.put("text", text);
-                    d.put("keywordMatch", matchResult.toJSObject());
-                    
-                    // 如果启用了关键词过滤，只发送匹配的结果
-                    if (!keywordFilterEnabled || matchResult.matched) {
-                        eventEmitter.emit("onPartial", d);
-                    }
-                    
-                    // 如果匹配到关键词，发送专门的关键词事件
-                    if (matchResult.matched) {
-                        eventEmitter.emit("onKeywordDetected", matchResult.toJSObject());
-                    }
+            handleSessionEvent(name, params);
+        } catch (Exception e) {
+            eventQueue.post(() -> {
+                JSObject d = new JSObject();
+                d.put("message", "ASR event error: " + e.getMessage());
+                eventEmitter.emit("onError", d);
+            });
+        }
+    }
+
+    private void handleSessionEvent(String name, String params) {
+        if (params != null && params.contains("Broken pipe")) {
+            // The current connection can't be reused for the next sentence
+            brokenPipeSeen = true;
+        }
+        if (SpeechConstant.CALLBACK_EVENT_ASR_READY.equals(name)) {
+            onSessionReady();
+        } else if (SpeechConstant.CALLBACK_EVENT_ASR_END.equals(name)) {
+            // Speech ended, the session is finishing: prepare a standby manager in case
+            // the current one can't be reused
+            if (continuousMode && pipelinedRestart) {
+                prepareStandbyAsr();
+            }
+        } else if ("asr.partial".equals(name)) {
+            eventQueue.postPartial(() -> emitResult("onPartial", params));
+        } else if ("asr.finish".equals(name) || "asr.final".equals(name)) {
+            eventQueue.post(() -> emitResult("onFinal", params));
+            isListening = false;
+            
+            // In continuous mode, automatically restart recognition for next sentence
+            if (continuousMode) {
+                scheduleRestart();
+            }
+        } else if ("asr.finish.error".equals(name) || "asr.error".equals(name)) {
+            eventQueue.post(() -> {
+                sentenceCommands.clear();
+                JSObject d = new JSObject();
+                d.put("message", params != null ? params : "ASR error");
+                eventEmitter.emit("onError", d);
+            });
+            isListening = false;
+            // Cancel on error to stop any ongoing operations
+            if (asr != null) {
+                asr.send(SpeechConstant.ASR_CANCEL, "{}", null, 0, 0);
+            }
+        }
+    }
+
+    /**
+     * Runs on the event worker: parse the result, match keywords and emit
+     */
+    private void emitResult(String event, String params) {
+        if ("onFinal".equals(event)) {
+            // The final result supersedes a partial still waiting for its interval
+            partialThrottle.discardPending();
+        }
+        boolean isFinal = "onFinal".equals(event);
+        try {
+            String text = BaiduResultParser.extractBestResult(params);
+            if (text != null) {
+                // 关键词匹配
+                KeywordMatcher.MatchResult matchResult = keywordMatcher.match(text);
+                boolean keywordEvent = matchResult.matched;
+                if (dispatchCommand(matchResult, text, isFinal) && CommandRegistry.getInstance().isSuppressKeywordEvents()) {
+                    keywordEvent = false;
                 }
-            } else if ("asr.finish".equals(name) || "asr.final".equals(name)) {
-                String text = extractBestResult(params);
-                if (text != null) {
-                    // 关键词匹配
-                    KeywordMatcher.MatchResult matchResult = keywordMatcher.match(text);
-                    
-                    JSObject d = new JSObject();
-                    d.put("text", text);
-                    d.put("keywordMatch", matchResult.toJSObject());
-                    
-                    // 如果启用了关键词过滤，只发送匹配的结果
-                    if (!keywordFilterEnabled || matchResult.matched) {
-                        eventEmitter.emit("onFinal", d);
-                    }
-                    
-                    // 如果匹配到关键词，发送专门的关键词事件
-                    if (matchResult.matched) {
-                        eventEmitter.emit("onKeywordDetected", matchResult.toJSObject());
+                
+                JSObject d = new JSObject();
+                d.put("text", text);
+                d.put("keywordMatch", matchResult.toJSObject());
+                
+                // 如果启用了关键词过滤，只发送匹配的结果
+                if (!keywordFilterEnabled || matchResult.matched) {
+                    if ("onPartial".equals(event)) {
+                        partialThrottle.offer(d);
+                    } else {
+                        eventEmitter.emit(event, d);
                     }
                 }
-                isListening = false;
                 
-                // In continuous mode, automatically restart recognition for next sentence
-                if (continuousMode) {
-                    // Small delay to allow cleanup, then restart
-                    mainHandler.postDelayed(new Runnable() {
-                        @Override
-                        public void run() {
-                            if (continuousMode && !isListening) {
-                                // Cleanup old instance
-                                cleanupAsr();
-                                // Restart new recognition session
-                                startListening(true);
-                            }
-                        }
-                    }, 300); // 300ms delay for smooth transition
-                }
-            } else if ("asr.finish.error".equals(name) || "asr.error".equals(name)) {
-                JSObject d = new JSObject();
-                d.put("message", params != null ? params : "ASR error");
-                eventEmitter.emit("onError", d);
-                isListening = false;
-                // Cancel on error to stop any ongoing operations
-                if (asr != null) {
-                    asr.send(SpeechConstant.ASR_CANCEL, "{}", null, 0, 0);
+                // 如果匹配到关键词（且不是已作为命令发送的关键词），发送专门的关键词事件
+                if (keywordEvent) {
+                    eventEmitter.emit("onKeywordDetected", matchResult.toJSObject());
                 }
             }
         } catch (Exception e) {
             JSObject d = new JSObject();
             d.put("message", "ASR event parse error: " + e.getMessage());
             eventEmitter.emit("onError", d);
+        } finally {
+            if (isFinal) {
+                sentenceCommands.clear();
+            }
         }
     }
 
-    private String extractBestResult(String json) throws JSONException {
-        if (json == null || json.isEmpty()) return null;
-        JSONObject obj = new JSONObject(json);
-        if (obj.has("best_result")) {
-            return obj.optString("best_result", null);
+    /**
+     * Resolve the recognized text against the native command registry: the matched keyword
+     * first, otherwise the longest command keyword contained in the text. Runs the native
+     * action and emits onCommand once per command per sentence.
+     * @return whether the text maps to a command
+     */
+    private boolean dispatchCommand(KeywordMatcher.MatchResult matchResult, String text, boolean isFinal) {
+        CommandRegistry commands = CommandRegistry.getInstance();
+        if (commands.isEmpty()) {
+            return false;
         }
-        if (obj.has("results_recognition")) {
-            JSONArray arr = obj.optJSONArray("results_recognition");
-            if (arr != null && arr.length() > 0) {
-                return arr.optString(0, null);
-            }
+        String keyword = matchResult.matched ? matchResult.matchedKeyword : null;
+        Command command = commands.resolve(keyword);
+        if (command == null) {
+            keyword = commands.findKeyword(text);
+            command = commands.resolve(keyword);
         }
-        if (obj.has("result")) {
-            JSONArray arr = obj.optJSONArray("result");
-            if (arr != null && arr.length() > 0) {
-                return arr.optString(0, null);
-            }
+        if (command == null) {
+            return false;
         }
-        return null;
+        if (sentenceCommands.add(command.id)) {
+            JSObject d = commands.dispatch(command, keyword, "asr");
+            d.put("final", isFinal);
+            d.put("text", text);
+            d.put("timestamp", System.currentTimeMillis());
+            eventEmitter.emit("onCommand", d);
+        }
+        return true;
     }
-    
+
+    /**
+     * Session state, restart stats and event worker stats
+     */
+    public JSObject getStatus() {
+        JSObject status = new JSObject();
+        status.put("initialized", initialized);
+        status.put("isListening", isListening);
+        status.put("continuous", continuousMode);
+        status.put("pipelined", pipelinedRestart);
+        status.put("externalInput", externalInput);
+        JSObject restarts = new JSObject();
+        restarts.put("count", restartCount);
+        restarts.put("avgGapMs", restartCount > 0 ? restartGapSumMs / restartCount : 0);
+        restarts.put("maxGapMs", maxRestartGapMs);
+        status.put("restarts", restarts);
+        status.put("eventQueue", eventQueue.getStats());
+        JSObject partials = new JSObject();
+        partials.put("intervalMs", partialThrottle.getIntervalMs());
+        partials.put("emitted", partialThrottle.getEmitted());
+        partials.put("coalesced", partialThrottle.getCoalesced());
+        status.put("partials", partials);
+        return status;
+    }
+
+    public void resetEventStats() {
+        eventQueue.resetStats();
+        partialThrottle.resetStats();
+    }
+
     /**
      * 设置关键词列表
      */
@@ -8,14 +8,18 @@ import android.content.IntentFilter;
 import android.hardware.usb.UsbDevice;
 import android.hardware.usb.UsbManager;
 import android.media.AudioDeviceInfo;
-import android.media.AudioFormat;
 import android.media.AudioManager;
-import android.media.AudioRecord;
 import android.media.MediaRecorder;
 import android.os.Build;
 import android.os.Handler;
 import android.os.Looper;
 import androidx.annotation.RequiresApi;
+import com.example.speechrec.audio.AudioRecordSource;
+import com.example.speechrec.audio.DeviceRegistry;
+import com.example.speechrec.audio.SharedCapture;
+import com.example.speechrec.commands.CommandRegistry;
+import com.example.speechrec.commands.MediaKeyAction;
+import com.getcapacitor.JSArray;
 import com.getcapacitor.JSObject;
 import com.getcapacitor.Plugin;
 import com.getcapacitor.PluginCall;
@@ -24,6 +28,10 @@ import com.getcapacitor.annotation.CapacitorPlugin;
 import com.getcapacitor.annotation.Permission;
 import com.getcapacitor.annotation.PermissionCallback;
 import com.getcapacitor.PermissionState;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 @CapacitorPlugin(
     name = "BaiduAsr",
@@ -40,10 +48,28 @@ public class BaiduAsrPlugin extends Plugin {
     private BaiduAsrManager manager;
     private AudioManager audioManager;
     private AudioDeviceInfo selectedInputDevice;
-    private AudioRecord routingAudioRecord; // 用于保持设备路由的 AudioRecord
+    // 选择按 stableId 记录，设备拔出后保留，重新插入时自动恢复
+    private volatile String selectedStableId;
+    private DeviceRegistry deviceRegistry;
+    // 输入设备增删时通知 JS（onDevicesChanged），代替轮询 listInputs
+    private final DeviceRegistry.Listener deviceListener = (added, removed) -> {
+        JSObject data = new JSObject();
+        data.put("added", deviceRegistry.toJSArray(added));
+        data.put("removed", deviceRegistry.toJSArray(removed));
+        data.put("inputs", deviceRegistry.toJSArray(deviceRegistry.getInputs()));
+        if (selectedStableId != null) {
+            data.put("selectedStableId", selectedStableId);
+            data.put("selectedAvailable", deviceRegistry.findByStableId(selectedStableId) != null);
+        }
+        notifyListeners("onDevicesChanged", data);
+        // 设备回调在主线程，重建路由/采集流放到插件方法所在的线程执行，避免与 start/stop 竞争
+        getBridge().execute(() -> onSelectedDeviceReattached(added));
+    };
+    private AudioRecordSource routingSource; // 用于保持设备路由的 AudioRecord
+    private SharedCapture sharedCapture; // inputMode=stream 时由本插件打开的共享采集流
+    private static final int DEFAULT_SHARED_HISTORY_MS = 5000;
+    private int sharedHistoryMs = DEFAULT_SHARED_HISTORY_MS; // 设备重新接入时按同样的配置重开共享采集流
     private Handler mainHandler; // 用于设备回调的 Handler
-    // 设备变化监听器（Android 6.0+）
-    private Object deviceChangeCallback; // 存储为 Object 以避免 API 级别问题
     private static final String ACTION_USB_PERMISSION = "com.example.speechrec.USB_PERMISSION";
     private PluginCall pendingUsbPermissionCall; // 用于存储等待权限回调的 PluginCall
 
@@ -59,15 +85,13 @@ public class BaiduAsrPlugin extends Plugin {
         // AudioManager audioManager = (AudioManager) getApplicationContext().getSystemService(Context.AUDIO_SERVICE); // 可能有问题
         audioManager = (AudioManager) getActivity().getSystemService(Context.AUDIO_SERVICE);
         manager = new BaiduAsrManager(getContext(), this::emitEvent);
+        MediaKeyAction.registerAll(CommandRegistry.getInstance(), getContext());
         mainHandler = new Handler(Looper.getMainLooper());
         
-        // 注册音频设备变化监听器（Android 6.0+）
-        // 注意：由于编译器问题，暂时禁用自动设备监听功能
-        // 用户可以通过手动刷新设备列表来更新
-        // if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M && audioManager != null) {
-        //     registerDeviceChangeCallback();
-        // }
-        android.util.Log.i("BaiduAsrPlugin", "Plugin loaded. Auto device change detection is disabled. Use manual refresh.");
+        // 设备变化由共享的 DeviceRegistry 监听（AudioDeviceCallback），通过 onDevicesChanged 通知
+        deviceRegistry = DeviceRegistry.get(getContext());
+        deviceRegistry.addListener(deviceListener);
+        android.util.Log.i("BaiduAsrPlugin", "Plugin loaded");
         
         // 注册 USB 权限广播接收器
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
@@ -135,15 +159,15 @@ public class BaiduAsrPlugin extends Plugin {
     @Override
     protected void handleOnDestroy() {
         // 取消注册设备变化监听器
-        // 注意：由于编译器问题，暂时禁用自动设备监听功能
-        // if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
-        //     unregisterDeviceChangeCallback();
-        // }
+        if (deviceRegistry != null) {
+            deviceRegistry.removeListener(deviceListener);
+        }
         
         if (manager != null) {
             manager.release();
         }
         releaseRoutingAudioRecord();
+        stopSharedCapture();
         
         // 取消注册 USB 权限广播接收器
         try {
@@ -156,8 +180,12 @@ public class BaiduAsrPlugin extends Plugin {
     }
     
 
+    // 没有监听者时保留、等 JS 注册监听后补发的事件；中间结果、重启统计等过时即无用，不保留
+    private static final Set<String> RETAINED_EVENTS = new HashSet<>(Arrays.asList(
+        "onFinal", "onKeywordDetected", "onCommand", "onError"));
+
     private void emitEvent(String event, JSObject data) {
-        notifyListeners(event, data, true);
+        notifyListeners(event, data, RETAINED_EVENTS.contains(event));
     }
 
     @PluginMethod
@@ -208,9 +236,28 @@ public class BaiduAsrPlugin extends Plugin {
         // 每次开始录音前再次确保路由正确
         // 先释放之前的路由 AudioRecord（如果有）
         releaseRoutingAudioRecord();
+
+        // inputMode: "sdk"（默认，百度 SDK 自己创建 AudioRecord）或 "stream"（由我们在选中设备上采集，
+        // 通过 IN_FILE 把 PCM 交给 SDK；不需要路由 AudioRecord 和等待，关键词识别可同时读取同一采集流）
+        String inputMode = call.getString("inputMode", "sdk");
+        boolean streamInput = "stream".equals(inputMode);
+        if (streamInput) {
+            Integer historyMs = call.getInt("historyMs", DEFAULT_SHARED_HISTORY_MS);
+            String error = startSharedCapture(historyMs != null ? historyMs : DEFAULT_SHARED_HISTORY_MS);
+            if (error != null) {
+                call.reject(error);
+                return;
+            }
+        } else {
+            stopSharedCapture();
+        }
+        manager.setExternalInput(streamInput);
         
         // 在录音开始前设置首选设备，可能会影响百度 SDK 内部创建的 AudioRecord
-        if (selectedInputDevice != null && Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+        if (streamInput) {
+            android.util.Log.i("BaiduAsrPlugin", "Start: stream input from " +
+                (selectedInputDevice != null ? selectedInputDevice.getProductName() : "system default"));
+        } else if (selectedInputDevice != null && Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
             int deviceType = selectedInputDevice.getType();
             android.util.Log.i("BaiduAsrPlugin", "Start: Selected device is " + 
                 selectedInputDevice.getProductName() + " (type=" + deviceType + 
@@ -242,15 +289,15 @@ public class BaiduAsrPlugin extends Plugin {
                             selectedInputDevice.getProductName());
                         
                         // 3. 启动录音以真正占用设备
-                        if (routingAudioRecord != null) {
+                        if (routingSource != null) {
                             try {
-                                routingAudioRecord.startRecording();
+                                routingSource.start();
                                 android.util.Log.i("BaiduAsrPlugin", 
                                     "Routing AudioRecord STARTED to occupy USB microphone");
                                 
                                 // 验证实际路由的设备
-                                if (routingAudioRecord.getRecordingState() == AudioRecord.RECORDSTATE_RECORDING) {
-                                    AudioDeviceInfo actualDevice = routingAudioRecord.getRoutedDevice();
+                                if (routingSource.isRecording()) {
+                                    AudioDeviceInfo actualDevice = routingSource.getRoutedDevice();
                                     if (actualDevice != null) {
                                         android.util.Log.i("BaiduAsrPlugin", 
                                             "Actually recording from: " + actualDevice.getProductName() + 
@@ -276,8 +323,8 @@ public class BaiduAsrPlugin extends Plugin {
                                 }
                                 
                                 // 5. 停止我们的录音，让百度 SDK 接管
-                                if (routingAudioRecord.getRecordingState() == AudioRecord.RECORDSTATE_RECORDING) {
-                                    routingAudioRecord.stop();
+                                if (routingSource.isRecording()) {
+                                    routingSource.stop();
                                     android.util.Log.i("BaiduAsrPlugin", 
                                         "Routing AudioRecord stopped, ready for Baidu SDK");
                                 }
@@ -312,6 +359,12 @@ public class BaiduAsrPlugin extends Plugin {
             }
         }
         
+        // pipelined: 连续模式下每句结束后立即开始下一句（复用 EventManager），重启间隔通过 onRestart 上报
+        Boolean pipelined = call.getBoolean("pipelined", false);
+        manager.setPipelinedRestart(pipelined != null && pipelined);
+        // partialIntervalMs: onPartial 的最小间隔（默认0，每个中间结果都发送）；间隔内只保留最新文本，间隔结束时发送
+        Integer partialIntervalMs = call.getInt("partialIntervalMs", 0);
+        manager.setPartialIntervalMs(partialIntervalMs != null ? partialIntervalMs : 0);
         manager.startListening();
         JSObject ret = new JSObject();
         ret.put("ok", true);
@@ -322,6 +375,7 @@ public class BaiduAsrPlugin extends Plugin {
     public void stop(PluginCall call) {
         manager.stopListening();
         releaseRoutingAudioRecord(); // 释放路由 AudioRecord
+        stopSharedCapture();
         JSObject ret = new JSObject();
         ret.put("ok", true);
         call.resolve(ret);
@@ -331,111 +385,41 @@ public class BaiduAsrPlugin extends Plugin {
     public void cancel(PluginCall call) {
         manager.cancel();
         releaseRoutingAudioRecord(); // 释放路由 AudioRecord
+        stopSharedCapture();
         JSObject ret = new JSObject();
         ret.put("ok", true);
         call.resolve(ret);
     }
 
+    /**
+     * 获取识别状态：会话状态、连续模式重启间隔、事件处理队列（深度、合并/丢弃的中间结果、处理延迟）
+     * 参数:
+     *   - reset: 读取后清空事件队列统计（默认false）
+     */
+    @PluginMethod
+    public void getStatus(PluginCall call) {
+        JSObject status = manager.getStatus();
+        Boolean reset = call.getBoolean("reset", false);
+        if (reset != null && reset) {
+            manager.resetEventStats();
+        }
+        call.resolve(status);
+    }
+
     /**
      * 枚举原生音频输入设备，提供稳定的信息（type、productName、id/hash）。
      */
     @PluginMethod
     public void listInputs(PluginCall call) {
-        try {
-            JSObject ret = new JSObject();
-            com.getcapacitor.JSArray arr = new com.getcapacitor.JSArray();
-            if (audioManager != null) {
-                AudioDeviceInfo[] inputs;
-                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
-                    // 方法1: 切换音频模式来触发重新扫描
-                    int originalMode = audioManager.getMode();
-                    audioManager.setMode(AudioManager.MODE_IN_COMMUNICATION);
-                    try {
-                        Thread.sleep(500);
-                    } catch (InterruptedException e) {}
-                    audioManager.setMode(originalMode);
-
-// 延迟后再查询
-                    new Handler().postDelayed(() -> {
-                        AudioDeviceInfo[] devices = audioManager.getDevices(AudioManager.GET_DEVICES_INPUTS);
-                        for (AudioDeviceInfo device : devices) {
-                            android.util.Log.d("AudioTest", "Device: " + device.getProductName() + ", Type: " + device.getType());
-                        }
-                    }, 1000);
-
-
-                    inputs = audioManager.getDevices(AudioManager.GET_DEVICES_INPUTS);
-                    
-                    // 添加详细日志用于诊断 USB 麦克风扫描问题
-                    android.util.Log.i("BaiduAsrPlugin", 
-                        "Enumerating audio input devices: found " + inputs.length + " devices");
-                    
-                    // 检查权限状态
-                    boolean hasPermission = isAudioGranted();
-                    android.util.Log.i("BaiduAsrPlugin", 
-                        "RECORD_AUDIO permission granted: " + hasPermission);
-
-
-                    for ( AudioDeviceInfo ad :inputs){
-                        createAndHoldRoutingAudioRecord(ad);
-                    }
-                    
-                } else {
-                    inputs = new AudioDeviceInfo[0];
-                    android.util.Log.w("BaiduAsrPlugin", 
-                        "API level < 23, cannot enumerate audio devices");
-                }
-                
-                for (AudioDeviceInfo d : inputs) {
-                    String productName = d.getProductName() != null ? 
-                        d.getProductName().toString() : "Unknown";
-                    int type = d.getType();
-                    int id = d.getId();
-                    boolean isSource = d.isSource();
-                    String address = Build.VERSION.SDK_INT >= Build.VERSION_CODES.P ? 
-                        d.getAddress() : "N/A";
-                    
-                    // 详细日志：记录每个设备的完整信息
-                    android.util.Log.i("BaiduAsrPlugin", 
-                        String.format("Device: name='%s', type=%d, id=%d, address='%s', isSource=%s",
-                            productName, type, id, address, isSource));
-                    
-                    // 特别标记 USB 设备
-                    boolean isUsbDevice = (type == AudioDeviceInfo.TYPE_USB_DEVICE || 
-                                         type == AudioDeviceInfo.TYPE_USB_HEADSET);
-                    if (isUsbDevice) {
-                        android.util.Log.i("BaiduAsrPlugin", 
-                            "✓ USB device detected: " + productName + " (type=" + type + ")");
-                    }
-                    
-                    JSObject o = new JSObject();
-                    o.put("type", type);
-                    o.put("label", productName);
-                    // 构造稳定ID：type + productName + address/hashCode
-                    String stableId = d.getType() + "_" + productName + "_" + d.hashCode();
-                    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.P) {
-                        if (address != null && !address.isEmpty()) {
-                            stableId = d.getType() + "_" + address;
-                        }
-                        o.put("address", address);
-                    }
-                    o.put("stableId", stableId);
-                    o.put("id", id);
-                    o.put("isSource", isSource);
-                    arr.put(o);
-                }
-                
-                android.util.Log.i("BaiduAsrPlugin", 
-                    "Device enumeration complete: " + arr.length() + " devices returned to frontend");
-            } else {
-                android.util.Log.e("BaiduAsrPlugin", "AudioManager is null, cannot enumerate devices");
-            }
-            ret.put("inputs", arr);
-            call.resolve(ret);
-        } catch (Exception e) {
-            android.util.Log.e("BaiduAsrPlugin", "Failed to list inputs", e);
-            call.reject("Failed to list inputs: " + e.getMessage());
+        // 从设备表返回（由 AudioDeviceCallback 保持最新）；refresh: true 时重新读取一次
+        Boolean refresh = call.getBoolean("refresh", false);
+        if (refresh != null && refresh) {
+            deviceRegistry.refresh();
         }
+        JSObject ret = new JSObject();
+        ret.put("inputs", deviceRegistry.toJSArray(deviceRegistry.getInputs()));
+        ret.put("updatedAt", deviceRegistry.getUpdatedAtMs());
+        call.resolve(ret);
     }
 
     /**
@@ -456,21 +440,10 @@ public class BaiduAsrPlugin extends Plugin {
                 call.resolve(ret);
                 return;
             }
-            AudioDeviceInfo[] inputs = audioManager.getDevices(AudioManager.GET_DEVICES_INPUTS);
-            AudioDeviceInfo match = null;
-            for (AudioDeviceInfo d : inputs) {
-                CharSequence pn = d.getProductName();
-                String sid = d.getType() + "_" + (pn != null ? pn.toString() : "") + "_" + d.hashCode();
-                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.P) {
-                    String addr = d.getAddress();
-                    if (addr != null && !addr.isEmpty()) sid = d.getType() + "_" + addr;
-                }
-                if (stableId.equals(sid)) {
-                    match = d; break;
-                }
-            }
+            AudioDeviceInfo match = deviceRegistry.findByStableId(stableId);
             if (match != null) {
                 this.selectedInputDevice = match;
+                this.selectedStableId = stableId;
                 android.util.Log.i("BaiduAsrPlugin", "Device selected: " + 
                     match.getProductName() + " (type=" + match.getType() + 
                     ", id=" + match.getId() + ")");
@@ -499,30 +472,47 @@ public class BaiduAsrPlugin extends Plugin {
 
     /**
      * 验证并更新选中的设备引用（确保设备仍然可用）
+     * 按 stableId 从设备表取当前的设备对象：设备拔插后 id 会变，但 stableId 不变
      * @return 设备是否仍然可用
      */
     private boolean validateSelectedDevice() {
-        if (selectedInputDevice == null || audioManager == null) return false;
-        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.M) return false;
-        
-        try {
-            // 验证设备是否仍然可用
-            AudioDeviceInfo[] currentDevices = audioManager.getDevices(AudioManager.GET_DEVICES_INPUTS);
-            for (AudioDeviceInfo dev : currentDevices) {
-                if (dev.getId() == selectedInputDevice.getId()) {
-                    // 更新设备引用（避免使用过期的设备对象）
-                    selectedInputDevice = dev;
-                    android.util.Log.d("BaiduAsrPlugin", "Device validated: " + 
-                        dev.getProductName() + " (id=" + dev.getId() + ")");
-                    return true;
-                }
-            }
-            
+        if (selectedStableId == null) return false;
+        AudioDeviceInfo dev = deviceRegistry.findByStableId(selectedStableId);
+        if (dev == null) {
             android.util.Log.w("BaiduAsrPlugin", "Selected device no longer available, device may have been disconnected");
             return false;
-        } catch (Exception e) {
-            android.util.Log.e("BaiduAsrPlugin", "validateSelectedDevice failed", e);
-            return false;
+        }
+        // 更新设备引用（避免使用过期的设备对象）
+        selectedInputDevice = dev;
+        android.util.Log.d("BaiduAsrPlugin", "Device validated: " + 
+            dev.getProductName() + " (id=" + dev.getId() + ")");
+        return true;
+    }
+
+    /**
+     * 选中的设备重新插入：更新设备引用；持有路由 AudioRecord 时在新设备上重建，
+     * inputMode=stream 时在新设备上重开共享采集流，使连续识别的下一句由该设备录音（不需要重新 start）
+     * 在插件方法线程中执行
+     */
+    private void onSelectedDeviceReattached(List<AudioDeviceInfo> added) {
+        String stableId = selectedStableId;
+        if (stableId == null || added.isEmpty()) return;
+        for (AudioDeviceInfo dev : added) {
+            if (!stableId.equals(deviceRegistry.stableIdOf(dev))) continue;
+            selectedInputDevice = dev;
+            android.util.Log.i("BaiduAsrPlugin", "Selected device re-attached: " + 
+                dev.getProductName() + " (id=" + dev.getId() + ")");
+            if (routingSource != null && Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+                boolean rerouted = createAndHoldRoutingAudioRecord(dev);
+                android.util.Log.i("BaiduAsrPlugin", "Routing AudioRecord re-created on re-attached device: " + rerouted);
+            }
+            if (sharedCapture != null) {
+                // inputMode=stream：旧的采集流还停在已断开设备的 AudioRecord 上
+                String error = startSharedCapture(sharedHistoryMs);
+                android.util.Log.i("BaiduAsrPlugin", "Shared capture restarted on re-attached device: " +
+                    (error == null ? "ok" : error));
+            }
+            return;
         }
     }
     
@@ -541,105 +531,16 @@ public class BaiduAsrPlugin extends Plugin {
                 return false;
             }
             
-            // 判断是否为 USB 设备
-            int deviceType = device.getType();
-            boolean isUsbDevice = (deviceType == AudioDeviceInfo.TYPE_USB_DEVICE || 
-                                  deviceType == AudioDeviceInfo.TYPE_USB_HEADSET);
-            
-            // 根据设备类型选择音频源优先级
-            // USB 设备优先使用 MIC (source=1)，与百度 SDK 保持一致
-            // 其他设备也优先使用 MIC，因为百度 SDK 使用 MIC
-            int[] audioSources;
-            if (isUsbDevice) {
-                android.util.Log.i("BaiduAsrPlugin", "USB device detected, prioritizing MIC (source=1) to match Baidu SDK");
-                audioSources = new int[]{
-                    MediaRecorder.AudioSource.VOICE_RECOGNITION,  // 专为语音识别优化
-                        MediaRecorder.AudioSource.UNPROCESSED,        // 无处理原始音频（如果支持）
-                    MediaRecorder.AudioSource.MIC,                // 标准麦克风（百度 SDK 使用）
-                    MediaRecorder.AudioSource.DEFAULT             // 系统默认
-                };
-            } else {
-                // 非 USB 设备也优先使用 MIC，保持一致性
-                audioSources = new int[]{
-                    MediaRecorder.AudioSource.MIC,                // 标准麦克风（百度 SDK 使用）
-                        MediaRecorder.AudioSource.UNPROCESSED,        // 无处理原始音频（如果支持）
-                        MediaRecorder.AudioSource.VOICE_RECOGNITION,  // 专为语音识别优化
-                    MediaRecorder.AudioSource.DEFAULT             // 系统默认
-                };
-            }
-            
-            int sampleRate = 16000; // 使用百度 SDK 常用的采样率，强制固定为16k
-            int channelConfig = AudioFormat.CHANNEL_IN_MONO;
-            int audioFormat = AudioFormat.ENCODING_PCM_16BIT;
+            int[] audioSources = audioSourcesFor(device);
             
+            // 使用百度 SDK 常用的采样率，强制固定为16k；
             // 不再跟随设备首选采样率，避免与 SDK/服务端不一致导致无效语音
-            
-            // 计算缓冲区大小
-            int bufferSize = AudioRecord.getMinBufferSize(sampleRate, channelConfig, audioFormat);
-            if (bufferSize == AudioRecord.ERROR_BAD_VALUE || bufferSize == AudioRecord.ERROR) {
-                android.util.Log.e("BaiduAsrPlugin", "Invalid buffer size");
-                return false;
-            }
-            
-            // 尝试不同的音频源创建 AudioRecord
-            for (int audioSource : audioSources) {
-                try {
-                    AudioRecord.Builder builder = new AudioRecord.Builder()
-                        .setAudioSource(audioSource)
-                        .setAudioFormat(new AudioFormat.Builder()
-                            .setEncoding(audioFormat)
-                            .setSampleRate(sampleRate)
-                            .setChannelMask(channelConfig)
-                            .build())
-                        .setBufferSizeInBytes(bufferSize * 2);
-                    
-                    routingAudioRecord = builder.build();
-                    
-                    if (routingAudioRecord.getState() != AudioRecord.STATE_INITIALIZED) {
-                        routingAudioRecord.release();
-                        routingAudioRecord = null;
-                        continue;
-                    }
-                    
-                    // 设置首选设备
-                    boolean success = routingAudioRecord.setPreferredDevice(device);
-                    if (success) {
-                        // 验证设备是否已设置
-                        AudioDeviceInfo preferred = routingAudioRecord.getPreferredDevice();
-                        if (preferred != null && preferred.getId() == device.getId()) {
-                            // 注意：我们只保持 AudioRecord 实例，不启动录音
-                            // 这样可以影响音频路由，但不会与百度 SDK 的 AudioRecord 冲突
-                            android.util.Log.i("BaiduAsrPlugin", 
-                                "Routing AudioRecord created (source=" + audioSource + 
-                                ", device=" + device.getProductName() + ")");
-                            
-                            // 获取实际的路由设备（可能与首选设备不同）
-                            AudioDeviceInfo routingDevice = routingAudioRecord.getRoutedDevice();
-                            if (routingDevice != null) {
-                                android.util.Log.i("BaiduAsrPlugin", 
-                                    "Current routing device: " + routingDevice.getProductName() + 
-                                    " (type=" + routingDevice.getType() + ")");
-                            }
-                            return true;
-                        }
-                    }
-                    
-                    // 如果设置失败，释放并尝试下一个音频源
-                    routingAudioRecord.release();
-                    routingAudioRecord = null;
-                } catch (Exception e) {
-                    android.util.Log.w("BaiduAsrPlugin", "Failed with audio source " + audioSource + ": " + e.getMessage());
-                    if (routingAudioRecord != null) {
-                        try {
-                            routingAudioRecord.release();
-                        } catch (Exception ignored) {}
-                        routingAudioRecord = null;
-                    }
-                }
-            }
-            
-            android.util.Log.e("BaiduAsrPlugin", "Failed to create routing AudioRecord with any audio source");
-            return false;
+            int sampleRate = 16000;
+
+            // 只保持 AudioRecord 实例，不启动录音：可以影响音频路由，但不会与百度 SDK 的 AudioRecord 冲突
+            releaseRoutingAudioRecord();
+            routingSource = AudioRecordSource.openRouted(device, sampleRate, audioSources);
+            return routingSource != null;
         } catch (Exception e) {
             android.util.Log.e("BaiduAsrPlugin", "Failed to create routing AudioRecord", e);
             releaseRoutingAudioRecord();
@@ -647,24 +548,91 @@ public class BaiduAsrPlugin extends Plugin {
         }
     }
     
+    /**
+     * 根据设备类型选择音频源优先级
+     * USB 设备优先使用 VOICE_RECOGNITION，其他设备优先使用 MIC（百度 SDK 使用 MIC）
+     */
+    private int[] audioSourcesFor(AudioDeviceInfo device) {
+        // 判断是否为 USB 设备
+        int deviceType = device != null ? device.getType() : AudioDeviceInfo.TYPE_BUILTIN_MIC;
+        boolean isUsbDevice = (deviceType == AudioDeviceInfo.TYPE_USB_DEVICE || 
+                              deviceType == AudioDeviceInfo.TYPE_USB_HEADSET);
+        if (isUsbDevice) {
+            android.util.Log.i("BaiduAsrPlugin", "USB device detected, prioritizing MIC (source=1) to match Baidu SDK");
+            return new int[]{
+                MediaRecorder.AudioSource.VOICE_RECOGNITION,  // 专为语音识别优化
+                MediaRecorder.AudioSource.UNPROCESSED,        // 无处理原始音频（如果支持）
+                MediaRecorder.AudioSource.MIC,                // 标准麦克风（百度 SDK 使用）
+                MediaRecorder.AudioSource.DEFAULT             // 系统默认
+            };
+        }
+        // 非 USB 设备也优先使用 MIC，保持一致性
+        return new int[]{
+            MediaRecorder.AudioSource.MIC,                // 标准麦克风（百度 SDK 使用）
+            MediaRecorder.AudioSource.UNPROCESSED,        // 无处理原始音频（如果支持）
+            MediaRecorder.AudioSource.VOICE_RECOGNITION,  // 专为语音识别优化
+            MediaRecorder.AudioSource.DEFAULT             // 系统默认
+        };
+    }
+
+    /**
+     * 在选中设备（没有选中时使用系统默认路由）上打开 16k 采集流并作为共享采集流启动
+     * @return 失败时返回错误信息
+     */
+    private String startSharedCapture(int historyMs) {
+        stopSharedCapture();
+        sharedHistoryMs = historyMs;
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.M) {
+            return "Stream input requires Android 6.0+";
+        }
+        AudioDeviceInfo device = null;
+        if (selectedInputDevice != null) {
+            if (validateSelectedDevice()) {
+                device = selectedInputDevice;
+            } else {
+                android.util.Log.w("BaiduAsrPlugin", "Selected device validation failed, using system default");
+            }
+        }
+        AudioRecordSource source = AudioRecordSource.openRouted(device, BaiduAudioInput.SAMPLE_RATE,
+            audioSourcesFor(device));
+        if (source == null) {
+            return "Failed to open audio input";
+        }
+        try {
+            sharedCapture = SharedCapture.start(source, historyMs);
+        } catch (Exception e) {
+            source.close();
+            android.util.Log.e("BaiduAsrPlugin", "Failed to start shared capture", e);
+            return "Failed to start audio input: " + e.getMessage();
+        }
+        AudioDeviceInfo routed = source.getRoutedDevice();
+        if (routed != null) {
+            android.util.Log.i("BaiduAsrPlugin", "Stream input recording from: " + routed.getProductName() +
+                " (type=" + routed.getType() + ", id=" + routed.getId() + ")");
+        }
+        return null;
+    }
+
+    /**
+     * 停止本插件打开的共享采集流
+     */
+    private void stopSharedCapture() {
+        if (sharedCapture != null) {
+            sharedCapture.stop();
+            sharedCapture = null;
+            BaiduAudioInput.reset();
+            android.util.Log.i("BaiduAsrPlugin", "Shared capture released");
+        }
+    }
+
     /**
      * 释放路由 AudioRecord
      */
     private void releaseRoutingAudioRecord() {
-        if (routingAudioRecord != null) {
-            try {
-                // 检查并停止录音（如果正在录音）
-                if (routingAudioRecord.getRecordingState() == AudioRecord.RECORDSTATE_RECORDING) {
-                    routingAudioRecord.stop();
-                    android.util.Log.i("BaiduAsrPlugin", "Routing AudioRecord stopped before release");
-                }
-                routingAudioRecord.release();
-                android.util.Log.i("BaiduAsrPlugin", "Routing AudioRecord released");
-            } catch (Exception e) {
-                android.util.Log.w("BaiduAsrPlugin", "Error releasing routing AudioRecord: " + e.getMessage());
-            } finally {
-                routingAudioRecord = null;
-            }
+        if (routingSource != null) {
+            routingSource.close();
+            routingSource = null;
+            android.util.Log.i("BaiduAsrPlugin", "Routing AudioRecord released");
         }
     }
     
@@ -741,7 +709,7 @@ public class BaiduAsrPlugin extends Plugin {
 
     /**
      * 获取当前实际路由的录音设备（不使用通信设备 API）
-     * 优先使用 routingAudioRecord.getRoutedDevice()，否则回落到 selectedInputDevice
+     * 优先使用 routingSource.getRoutedDevice()，否则回落到 selectedInputDevice
      */
     @PluginMethod
     public void getRoutedInput(PluginCall call) {
@@ -749,9 +717,9 @@ public class BaiduAsrPlugin extends Plugin {
             JSObject ret = new JSObject();
             if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
                 AudioDeviceInfo routed = null;
-                if (routingAudioRecord != null) {
+                if (routingSource != null) {
                     try {
-                        routed = routingAudioRecord.getRoutedDevice();
+                        routed = routingSource.getRoutedDevice();
                     } catch (Throwable ignored) {}
                 }
                 if (routed != null) {
@@ -808,6 +776,35 @@ public class BaiduAsrPlugin extends Plugin {
         }
     }
 
+    /**
+     * 配置原生命令表（与 SherpaOnnx.setCommands 共用同一张表）
+     * 关键词到命令的映射和原生动作（如 media.playPause）在原生层完成，命中时只发送一个 onCommand 事件
+     * 参数:
+     *   - commands: [{ id, name?, action?, keywords: [] }]，空数组清空命令表
+     *   - suppressKeywordEvents: 命中命令的关键词不再发送 onKeywordDetected（默认true）
+     */
+    @PluginMethod
+    public void setCommands(PluginCall call) {
+        try {
+            JSArray commands = call.getArray("commands");
+            if (commands == null) {
+                call.reject("commands is required");
+                return;
+            }
+            CommandRegistry registry = CommandRegistry.getInstance();
+            registry.setCommands(commands);
+            Boolean suppress = call.getBoolean("suppressKeywordEvents", true);
+            registry.setSuppressKeywordEvents(suppress == null || suppress);
+            JSObject ret = new JSObject();
+            ret.put("ok", true);
+            ret.put("commands", registry.size());
+            call.resolve(ret);
+        } catch (Exception e) {
+            android.util.Log.e("BaiduAsrPlugin", "Set commands error", e);
+            call.reject("Set commands failed: " + e.getMessage());
+        }
+    }
+
     /**
      * 启用/禁用关键词过滤
      * 如果启用，只有匹配到关键词的识别结果才会返回
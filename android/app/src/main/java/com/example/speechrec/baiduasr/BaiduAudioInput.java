@@ -0,0 +1,100 @@
+package com.example.speechrec.baiduasr;
+
+import android.util.Log;
+
+import com.example.speechrec.audio.CaptureHandoff;
+import com.example.speechrec.audio.PcmRingBuffer;
+import com.example.speechrec.audio.SharedCapture;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+
+/**
+ * 百度 ASR 的外部音频输入
+ * 通过 SpeechConstant.IN_FILE = IN_FILE_PARAM 让 SDK 调用 open() 获取音频流，
+ * 而不是由 SDK 自己创建 AudioRecord；音频来自 SharedCapture（16k 16-bit 单声道）
+ *
+ * 关键词识别刚检测到唤醒词时（CaptureHandoff 中有交接流），第一句从关键词结束处的历史音频开始读，
+ * 唤醒词后紧接着说的指令不会丢失；之后的句子继续读同一个缓冲区，它结束后改用 SharedCapture
+ * （交接的缓冲区只在关键词识别运行且未暂停时有新音频）
+ *
+ * 连续识别时每句话都会重新 open()：新的流从上一句读到的位置继续，
+ * 句子之间重启识别的这段时间里的语音不会丢失（落后太多时从最新位置开始）
+ */
+public final class BaiduAudioInput {
+    private static final String TAG = "BaiduAudioInput";
+
+    public static final String IN_FILE_PARAM = "#" + BaiduAudioInput.class.getName() + ".open()";
+    // SDK 要求的输入格式
+    public static final int SAMPLE_RATE = 16000;
+    // 新的流最多从多久以前的音频开始读，超过时跳到最新位置
+    private static final int MAX_CATCH_UP_MS = 1000;
+    // 检测到关键词后多久内启动的识别仍使用交接的音频
+    private static final int MAX_HANDOFF_AGE_MS = 3000;
+
+    private static PcmRingBuffer.PcmInputStream lastStream;
+    private static PcmRingBuffer lastBuffer;
+
+    private BaiduAudioInput() {
+    }
+
+    /**
+     * 由百度 SDK 在每次识别开始时调用
+     */
+    public static synchronized InputStream open() {
+        PcmRingBuffer.PcmInputStream handoff = CaptureHandoff.take(MAX_HANDOFF_AGE_MS);
+        if (handoff != null) {
+            PcmRingBuffer handoffBuffer = handoff.getBuffer();
+            if (handoffBuffer.getSampleRate() == SAMPLE_RATE) {
+                if (lastStream != null) {
+                    lastStream.close();
+                }
+                lastStream = handoff;
+                lastBuffer = handoffBuffer;
+                Log.i(TAG, "Opened hand-off input at sample " + handoff.getPosition() + " (" +
+                    ((handoffBuffer.getWrittenSamples() - handoff.getPosition()) * 1000 / SAMPLE_RATE) +
+                    "ms behind live)");
+                return handoff;
+            }
+            Log.w(TAG, "Ignoring hand-off input at " + handoffBuffer.getSampleRate() + "Hz, need " + SAMPLE_RATE + "Hz");
+            handoff.close();
+        }
+
+        SharedCapture capture = SharedCapture.current();
+        PcmRingBuffer buffer;
+        if (lastBuffer != null && !lastBuffer.isClosed() && (capture == null || capture.getBuffer() != lastBuffer)) {
+            // 上一句来自交接的缓冲区，且它仍在写入：继续读，不切换设备
+            buffer = lastBuffer;
+        } else if (capture != null && capture.isRunning()) {
+            buffer = capture.getBuffer();
+        } else {
+            Log.e(TAG, "No shared capture running, returning empty input");
+            return new ByteArrayInputStream(new byte[0]);
+        }
+        long head = buffer.getWrittenSamples();
+        long from = head;
+        if (lastStream != null) {
+            long previous = lastStream.getPosition();
+            lastStream.close();
+            if (lastBuffer == buffer && head - previous <= (long) buffer.getSampleRate() * MAX_CATCH_UP_MS / 1000) {
+                from = previous;
+            }
+        }
+        lastStream = buffer.openStream(from);
+        lastBuffer = buffer;
+        Log.i(TAG, "Opened input at sample " + from + " (" + ((head - from) * 1000 / buffer.getSampleRate()) +
+            "ms behind live)");
+        return lastStream;
+    }
+
+    /**
+     * 关闭当前的输入流（停止识别后调用），下一次 open() 从最新位置开始
+     */
+    public static synchronized void reset() {
+        if (lastStream != null) {
+            lastStream.close();
+        }
+        lastStream = null;
+        lastBuffer = null;
+    }
+}
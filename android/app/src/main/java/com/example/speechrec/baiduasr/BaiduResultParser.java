@@ -0,0 +1,247 @@
+package com.example.speechrec.baiduasr;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * 从百度 ASR 回调参数中提取识别文本
+ *
+ * asr.partial 每秒多次回调，参数里带着完整的 origin_result，而我们只需要 best_result
+ * （或 results_recognition / result 的第一项）。extractBestResult 只扫描顶层字段，
+ * 找到 best_result 就立即返回，不构建 JSONObject；遇到非字符串的取值、
+ * 非标准写法或格式错误时回退到 org.json 解析（extractBestResultDom）
+ *
+ * 与 extractBestResultDom 的差异：best_result 之后的内容不再校验，
+ * 因此 best_result 之后格式错误的参数仍返回该文本，而 org.json 会抛出 JSONException；
+ * best_result 之前的格式错误和其余情况两者结果一致
+ */
+public final class BaiduResultParser {
+
+    private BaiduResultParser() {
+    }
+
+    /**
+     * 提取识别文本，优先级：best_result > results_recognition[0] > result[0]
+     * @return 没有识别文本时返回 null
+     * @throws JSONException 参数不是合法的 JSON 对象（best_result 之后的格式错误不检查）
+     */
+    public static String extractBestResult(String json) throws JSONException {
+        if (json == null || json.isEmpty()) return null;
+        Scanner scanner = new Scanner(json);
+        String text = scanner.scan();
+        if (scanner.fallback) {
+            return extractBestResultDom(json);
+        }
+        return text;
+    }
+
+    /**
+     * 基于 org.json 的完整解析，作为 extractBestResult 的参照实现和回退路径
+     */
+    public static String extractBestResultDom(String json) throws JSONException {
+        if (json == null || json.isEmpty()) return null;
+        JSONObject obj = new JSONObject(json);
+        if (obj.has("best_result")) {
+            return obj.optString("best_result", null);
+        }
+        if (obj.has("results_recognition")) {
+            JSONArray arr = obj.optJSONArray("results_recognition");
+            if (arr != null && arr.length() > 0) {
+                return arr.optString(0, null);
+            }
+        }
+        if (obj.has("result")) {
+            JSONArray arr = obj.optJSONArray("result");
+            if (arr != null && arr.length() > 0) {
+                return arr.optString(0, null);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 顶层字段扫描器；只处理标准 JSON 中取值为字符串的情况，其余情况设置 fallback
+     */
+    private static final class Scanner {
+        private final String s;
+        private final int n;
+        private int pos = 0;
+        boolean fallback = false;
+
+        Scanner(String s) {
+            this.s = s;
+            this.n = s.length();
+        }
+
+        String scan() {
+            String recognition = null;
+            String result = null;
+            skipWhitespace();
+            if (!consume('{')) return fail();
+            skipWhitespace();
+            if (consume('}')) return null;
+            while (true) {
+                skipWhitespace();
+                if (peek() != '"') return fail();
+                String key = readString();
+                if (key == null) return fail();
+                skipWhitespace();
+                if (!consume(':')) return fail();
+                skipWhitespace();
+                if ("best_result".equals(key)) {
+                    // 最高优先级，后面的内容（包括 origin_result）不再扫描
+                    if (peek() != '"') return fail();
+                    String text = readString();
+                    return text != null ? text : fail();
+                } else if ("results_recognition".equals(key) && recognition == null) {
+                    recognition = readFirstString();
+                } else if ("result".equals(key) && result == null) {
+                    result = readFirstString();
+                } else {
+                    skipValue();
+                }
+                if (fallback) return null;
+                skipWhitespace();
+                if (consume(',')) continue;
+                if (consume('}')) break;
+                return fail();
+            }
+            return recognition != null ? recognition : result;
+        }
+
+        /**
+         * 读取数组的第一个字符串元素并跳过整个数组；不是数组或数组为空时返回 null
+         */
+        private String readFirstString() {
+            if (peek() != '[') {
+                skipValue();
+                return null;
+            }
+            pos++;
+            skipWhitespace();
+            if (consume(']')) return null;
+            if (peek() != '"') return fail();
+            String first = readString();
+            if (first == null) return fail();
+            skipWhitespace();
+            while (consume(',')) {
+                skipWhitespace();
+                skipValue();
+                if (fallback) return null;
+                skipWhitespace();
+            }
+            return consume(']') ? first : fail();
+        }
+
+        private String readString() {
+            pos++; // 开头的引号
+            int start = pos;
+            StringBuilder sb = null;
+            while (pos < n) {
+                char c = s.charAt(pos);
+                if (c == '"') {
+                    String text = sb == null ? s.substring(start, pos) : sb.append(s, start, pos).toString();
+                    pos++;
+                    return text;
+                }
+                if (c != '\\') {
+                    pos++;
+                    continue;
+                }
+                if (sb == null) sb = new StringBuilder();
+                sb.append(s, start, pos);
+                if (pos + 1 >= n) return null;
+                char e = s.charAt(pos + 1);
+                pos += 2;
+                switch (e) {
+                    case '"': sb.append('"'); break;
+                    case '\\': sb.append('\\'); break;
+                    case '/': sb.append('/'); break;
+                    case 'b': sb.append('\b'); break;
+                    case 'f': sb.append('\f'); break;
+                    case 'n': sb.append('\n'); break;
+                    case 'r': sb.append('\r'); break;
+                    case 't': sb.append('\t'); break;
+                    case 'u':
+                        if (pos + 4 > n) return null;
+                        try {
+                            sb.append((char) Integer.parseInt(s.substring(pos, pos + 4), 16));
+                        } catch (NumberFormatException ex) {
+                            return null;
+                        }
+                        pos += 4;
+                        break;
+                    default:
+                        return null;
+                }
+                start = pos;
+            }
+            return null;
+        }
+
+        /**
+         * 跳过一个取值（字符串、对象、数组、数字或字面量）
+         */
+        private void skipValue() {
+            char c = peek();
+            if (c == '"') {
+                if (readString() == null) fail();
+                return;
+            }
+            if (c == '{' || c == '[') {
+                int depth = 0;
+                while (pos < n) {
+                    char d = s.charAt(pos);
+                    if (d == '"') {
+                        if (readString() == null) {
+                            fail();
+                            return;
+                        }
+                        continue;
+                    }
+                    pos++;
+                    if (d == '{' || d == '[') {
+                        depth++;
+                    } else if (d == '}' || d == ']') {
+                        if (--depth == 0) return;
+                    }
+                }
+                fail();
+                return;
+            }
+            int start = pos;
+            while (pos < n) {
+                char d = s.charAt(pos);
+                if (d == ',' || d == '}' || d == ']' || isWhitespace(d)) break;
+                pos++;
+            }
+            if (pos == start) fail();
+        }
+
+        private void skipWhitespace() {
+            while (pos < n && isWhitespace(s.charAt(pos))) pos++;
+        }
+
+        private static boolean isWhitespace(char c) {
+            return c == ' ' || c == '\n' || c == '\r' || c == '\t';
+        }
+
+        private char peek() {
+            return pos < n ? s.charAt(pos) : '\0';
+        }
+
+        private boolean consume(char c) {
+            if (pos < n && s.charAt(pos) == c) {
+                pos++;
+                return true;
+            }
+            return false;
+        }
+
+        private String fail() {
+            fallback = true;
+            return null;
+        }
+    }
+}
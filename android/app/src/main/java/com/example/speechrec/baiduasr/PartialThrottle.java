@@ -0,0 +1,115 @@
+package com.example.speechrec.baiduasr;
+
+import android.os.SystemClock;
+
+import com.getcapacitor.JSObject;
+
+/**
+ * Rate limiter for onPartial events crossing the WebView bridge.
+ *
+ * At most one partial is emitted per interval. A partial arriving inside the interval
+ * replaces the pending one, which is emitted when the interval ends, so the latest
+ * text always gets through. All methods run on the AsrEventQueue worker.
+ */
+final class PartialThrottle {
+
+    interface Sink {
+        void emit(JSObject data);
+    }
+
+    private final AsrEventQueue queue;
+    private final Sink sink;
+    private volatile long intervalMs = 0;
+
+    private long lastEmitMs = 0;
+    private JSObject pending;
+    private boolean flushScheduled = false;
+
+    // Stats
+    private volatile long emitted = 0;
+    private volatile long coalesced = 0;
+
+    PartialThrottle(AsrEventQueue queue, Sink sink) {
+        this.queue = queue;
+        this.sink = sink;
+    }
+
+    /**
+     * @param intervalMs minimum time between onPartial events, 0 emits every partial
+     */
+    void setIntervalMs(long intervalMs) {
+        this.intervalMs = Math.max(0, intervalMs);
+    }
+
+    long getIntervalMs() {
+        return intervalMs;
+    }
+
+    void offer(JSObject data) {
+        long now = SystemClock.elapsedRealtime();
+        long waitMs = lastEmitMs + intervalMs - now;
+        if (intervalMs <= 0 || waitMs <= 0) {
+            if (pending != null) {
+                coalesced++;
+                pending = null;
+            }
+            emit(data, now);
+            return;
+        }
+        if (pending != null) {
+            coalesced++;
+        }
+        pending = data;
+        if (!flushScheduled) {
+            flushScheduled = true;
+            queue.postDelayed(this::flush, waitMs);
+        }
+    }
+
+    /**
+     * Drop the pending partial (a final result for the sentence supersedes it)
+     */
+    void discardPending() {
+        if (pending != null) {
+            coalesced++;
+            pending = null;
+        }
+    }
+
+    /**
+     * Forget the pending partial and any scheduled flush (the event worker was restarted)
+     */
+    void reset() {
+        pending = null;
+        flushScheduled = false;
+        lastEmitMs = 0;
+    }
+
+    long getEmitted() {
+        return emitted;
+    }
+
+    long getCoalesced() {
+        return coalesced;
+    }
+
+    void resetStats() {
+        emitted = 0;
+        coalesced = 0;
+    }
+
+    private void flush() {
+        flushScheduled = false;
+        JSObject data = pending;
+        pending = null;
+        if (data != null) {
+            emit(data, SystemClock.elapsedRealtime());
+        }
+    }
+
+    private void emit(JSObject data, long now) {
+        lastEmitMs = now;
+        emitted++;
+        sink.emit(data);
+    }
+}
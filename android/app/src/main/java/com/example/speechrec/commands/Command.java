@@ -0,0 +1,45 @@
+package com.example.speechrec.commands;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 语音命令：一组关键词对应同一个命令 id
+ * action 不为空且注册了同名的原生动作（见 CommandRegistry.registerAction）时，
+ * 命中后直接在原生层执行，不经过 JS
+ */
+public final class Command {
+    public final String id;
+    public final String name;
+    public final String action;
+    public final List<String> keywords;
+
+    public Command(String id, String name, String action, List<String> keywords) {
+        this.id = id;
+        this.name = name != null ? name : id;
+        this.action = action;
+        this.keywords = Collections.unmodifiableList(new ArrayList<>(keywords));
+    }
+
+    /**
+     * 从 JS 传入的配置解析：{ id, name?, action?, keywords: [] }
+     */
+    public static Command fromJSON(JSONObject obj) throws JSONException {
+        String id = obj.getString("id");
+        JSONArray array = obj.getJSONArray("keywords");
+        List<String> keywords = new ArrayList<>();
+        for (int i = 0; i < array.length(); i++) {
+            String keyword = array.getString(i).trim();
+            if (!keyword.isEmpty()) {
+                keywords.add(keyword);
+            }
+        }
+        String action = obj.optString("action", "");
+        return new Command(id, obj.optString("name", id), action.isEmpty() ? null : action, keywords);
+    }
+}
@@ -0,0 +1,11 @@
+package com.example.speechrec.commands;
+
+/**
+ * 原生命令动作，在识别线程上执行，应尽快返回
+ */
+public interface CommandAction {
+    /**
+     * @return 是否已处理（写入 onCommand 事件的 handled 字段）
+     */
+    boolean execute(Command command, String keyword);
+}
@@ -0,0 +1,146 @@
+package com.example.speechrec.commands;
+
+import android.util.Log;
+
+import com.getcapacitor.JSObject;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 进程内共享的命令表
+ * 关键词到命令的映射在原生层完成：SherpaOnnxManager / BaiduAsrManager 检测到关键词后
+ * 直接得到命令 id 并执行原生动作，只向 JS 发送一个 onCommand 事件
+ *
+ * 由任一插件的 setCommands 配置，两个插件共用
+ */
+public final class CommandRegistry {
+    private static final String TAG = "CommandRegistry";
+
+    private static final CommandRegistry INSTANCE = new CommandRegistry();
+
+    private final Map<String, Command> byKeyword = new HashMap<>();
+    private final List<Command> commands = new ArrayList<>();
+    private final Map<String, CommandAction> actions = new HashMap<>();
+    // 命中命令的关键词不再发送 onKeywordDetected
+    private volatile boolean suppressKeywordEvents = true;
+
+    private CommandRegistry() {
+    }
+
+    public static CommandRegistry getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * 替换命令表；同一个关键词出现在多个命令中时以后面的为准
+     */
+    public synchronized void setCommands(List<Command> newCommands) {
+        commands.clear();
+        byKeyword.clear();
+        for (Command command : newCommands) {
+            commands.add(command);
+            for (String keyword : command.keywords) {
+                Command previous = byKeyword.put(keyword, command);
+                if (previous != null && previous != command) {
+                    Log.w(TAG, "Keyword '" + keyword + "' moved from " + previous.id + " to " + command.id);
+                }
+            }
+        }
+        Log.i(TAG, "Registered " + commands.size() + " commands covering " + byKeyword.size() + " keywords");
+    }
+
+    /**
+     * 解析 JS 传入的命令数组并替换命令表
+     */
+    public void setCommands(JSONArray array) throws JSONException {
+        List<Command> parsed = new ArrayList<>();
+        for (int i = 0; i < array.length(); i++) {
+            parsed.add(Command.fromJSON(array.getJSONObject(i)));
+        }
+        setCommands(parsed);
+    }
+
+    public void setSuppressKeywordEvents(boolean suppress) {
+        this.suppressKeywordEvents = suppress;
+    }
+
+    public boolean isSuppressKeywordEvents() {
+        return suppressKeywordEvents;
+    }
+
+    public synchronized boolean isEmpty() {
+        return byKeyword.isEmpty();
+    }
+
+    public synchronized int size() {
+        return commands.size();
+    }
+
+    /**
+     * 注册原生动作，命令的 action 与 name 相同时执行
+     */
+    public synchronized void registerAction(String name, CommandAction action) {
+        actions.put(name, action);
+    }
+
+    /**
+     * 按关键词精确查找命令（关键词识别的结果）
+     */
+    public synchronized Command resolve(String keyword) {
+        if (keyword == null || byKeyword.isEmpty()) {
+            return null;
+        }
+        return byKeyword.get(keyword.trim());
+    }
+
+    /**
+     * 在识别文本中查找命令关键词：取文本中包含的最长关键词（语音识别的结果）
+     * @return 关键词，没有时返回 null；用 resolve() 得到命令
+     */
+    public synchronized String findKeyword(String text) {
+        if (text == null || byKeyword.isEmpty()) {
+            return null;
+        }
+        String best = null;
+        for (String keyword : byKeyword.keySet()) {
+            if ((best == null || keyword.length() > best.length()) && text.contains(keyword)) {
+                best = keyword;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * 执行命令的原生动作（如果有），返回 onCommand 事件数据
+     * @param source 来源："kws"（sherpa-onnx 关键词识别）或 "asr"（百度语音识别）
+     */
+    public JSObject dispatch(Command command, String keyword, String source) {
+        CommandAction action;
+        synchronized (this) {
+            action = command.action != null ? actions.get(command.action) : null;
+        }
+        boolean handled = false;
+        if (action != null) {
+            try {
+                handled = action.execute(command, keyword);
+            } catch (Exception e) {
+                Log.e(TAG, "Action " + command.action + " failed for command " + command.id, e);
+            }
+        }
+        JSObject event = new JSObject();
+        event.put("id", command.id);
+        event.put("keyword", keyword);
+        event.put("source", source);
+        if (command.action != null) {
+            event.put("action", command.action);
+        }
+        event.put("handled", handled);
+        return event;
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.speechrec.commands;
+
+import android.content.Context;
+import android.media.AudioManager;
+import android.util.Log;
+import android.view.KeyEvent;
+
+/**
+ * 发送媒体按键（播放/暂停、上一首、下一首等），由当前的媒体会话处理
+ */
+public final class MediaKeyAction implements CommandAction {
+    private static final String TAG = "MediaKeyAction";
+
+    public static final String PLAY_PAUSE = "media.playPause";
+    public static final String PLAY = "media.play";
+    public static final String PAUSE = "media.pause";
+    public static final String STOP = "media.stop";
+    public static final String NEXT = "media.next";
+    public static final String PREVIOUS = "media.previous";
+
+    private final AudioManager audioManager;
+    private final int keyCode;
+
+    public MediaKeyAction(AudioManager audioManager, int keyCode) {
+        this.audioManager = audioManager;
+        this.keyCode = keyCode;
+    }
+
+    /**
+     * 注册所有媒体按键动作
+     */
+    public static void registerAll(CommandRegistry registry, Context context) {
+        AudioManager audioManager = (AudioManager) context.getSystemService(Context.AUDIO_SERVICE);
+        if (audioManager == null) {
+            return;
+        }
+        registry.registerAction(PLAY_PAUSE, new MediaKeyAction(audioManager, KeyEvent.KEYCODE_MEDIA_PLAY_PAUSE));
+        registry.registerAction(PLAY, new MediaKeyAction(audioManager, KeyEvent.KEYCODE_MEDIA_PLAY));
+        registry.registerAction(PAUSE, new MediaKeyAction(audioManager, KeyEvent.KEYCODE_MEDIA_PAUSE));
+        registry.registerAction(STOP, new MediaKeyAction(audioManager, KeyEvent.KEYCODE_MEDIA_STOP));
+        registry.registerAction(NEXT, new MediaKeyAction(audioManager, KeyEvent.KEYCODE_MEDIA_NEXT));
+        registry.registerAction(PREVIOUS, new MediaKeyAction(audioManager, KeyEvent.KEYCODE_MEDIA_PREVIOUS));
+    }
+
+    @Override
+    public boolean execute(Command command, String keyword) {
+        audioManager.dispatchMediaKeyEvent(new KeyEvent(KeyEvent.ACTION_DOWN, keyCode));
+        audioManager.dispatchMediaKeyEvent(new KeyEvent(KeyEvent.ACTION_UP, keyCode));
+        Log.d(TAG, "Media key " + keyCode + " sent for command " + command.id);
+        return true;
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.speechrec.sherpaonnx;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+/**
+ * AudioRecord 可用配置的缓存，按 设备 stableId + init 请求的采样率 保存在 SharedPreferences 中
+ * findWorkingAudioRecord 先试缓存的配置（一次 AudioRecord 构造），失败时才遍历全部组合并更新缓存
+ * 只缓存 16-bit 单声道配置（AudioRecordSource 只能读取这种格式）
+ *
+ * 值格式: "sampleRate,channelConfig,audioFormat,audioSource"
+ */
+final class AudioConfigCache {
+    private static final String TAG = "AudioConfigCache";
+    private static final String PREFS_NAME = "sherpa_onnx_audio_config";
+
+    private final SharedPreferences prefs;
+
+    AudioConfigCache(Context context) {
+        prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * @param deviceIdentity 设备 stableId，默认设备为 "default"
+     */
+    static String keyOf(String deviceIdentity, int requestedSampleRate) {
+        return deviceIdentity + "@" + requestedSampleRate;
+    }
+
+    /**
+     * @return {sampleRate, channelConfig, audioFormat, audioSource}，没有缓存或格式错误时返回 null
+     */
+    int[] get(String key) {
+        String value = prefs.getString(key, null);
+        if (value == null) {
+            return null;
+        }
+        String[] parts = value.split(",");
+        if (parts.length != 4) {
+            remove(key);
+            return null;
+        }
+        try {
+            int[] config = new int[4];
+            for (int i = 0; i < 4; i++) {
+                config[i] = Integer.parseInt(parts[i]);
+            }
+            return config;
+        } catch (NumberFormatException e) {
+            Log.w(TAG, "Dropping malformed entry " + key + "=" + value);
+            remove(key);
+            return null;
+        }
+    }
+
+    void put(String key, int sampleRate, int channelConfig, int audioFormat, int audioSource) {
+        prefs.edit()
+            .putString(key, sampleRate + "," + channelConfig + "," + audioFormat + "," + audioSource)
+            .apply();
+    }
+
+    void remove(String key) {
+        prefs.edit().remove(key).apply();
+    }
+
+    void clear() {
+        prefs.edit().clear().apply();
+    }
+
+    int size() {
+        return prefs.getAll().size();
+    }
+}
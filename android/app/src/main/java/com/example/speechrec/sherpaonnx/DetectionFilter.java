@@ -0,0 +1,69 @@
+package com.example.speechrec.sherpaonnx;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 关键词检测去抖
+ * 同一个关键词在不应期（refractory window）内的重复检测会被丢弃，
+ * 不应期可以按关键词单独配置；时间使用音频采样时钟（毫秒），不受事件派发延迟影响
+ *
+ * 非线程安全：只应在识别线程中调用 accept()
+ */
+public class DetectionFilter {
+
+    public static final int DEFAULT_REFRACTORY_MS = 1000;
+
+    private volatile int defaultRefractoryMs = DEFAULT_REFRACTORY_MS;
+    private volatile Map<String, Integer> refractoryByKeyword = new HashMap<>();
+    // 关键词 -> 最近一次被接受的检测结束时间
+    private final Map<String, Long> lastAcceptedEndMs = new HashMap<>();
+    private volatile long suppressedCount = 0;
+
+    /**
+     * @param defaultMs 默认不应期
+     * @param perKeywordMs 按关键词单独设置的不应期（可为 null）
+     */
+    public void configure(int defaultMs, Map<String, Integer> perKeywordMs) {
+        this.defaultRefractoryMs = Math.max(0, defaultMs);
+        this.refractoryByKeyword = perKeywordMs != null ? new HashMap<>(perKeywordMs) : new HashMap<>();
+    }
+
+    /**
+     * 新建一个使用相同不应期配置、但没有检测历史的过滤器（例如文件回放）
+     */
+    public DetectionFilter copyConfig() {
+        DetectionFilter copy = new DetectionFilter();
+        copy.configure(defaultRefractoryMs, refractoryByKeyword);
+        return copy;
+    }
+
+    /**
+     * @param keyword 检测到的关键词
+     * @param startMs 关键词开始时间（音频时钟）
+     * @param endMs 关键词结束时间（音频时钟）
+     * @return true 表示应当上报；false 表示处于该关键词的不应期内
+     */
+    public boolean accept(String keyword, long startMs, long endMs) {
+        Long lastEnd = lastAcceptedEndMs.get(keyword);
+        Integer window = refractoryByKeyword.get(keyword);
+        int refractoryMs = window != null ? window : defaultRefractoryMs;
+        if (lastEnd != null && startMs - lastEnd < refractoryMs) {
+            suppressedCount++;
+            return false;
+        }
+        lastAcceptedEndMs.put(keyword, endMs);
+        return true;
+    }
+
+    /**
+     * 清除检测历史（重新开始识别时调用）
+     */
+    public void reset() {
+        lastAcceptedEndMs.clear();
+    }
+
+    public long getSuppressedCount() {
+        return suppressedCount;
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.speechrec.sherpaonnx;
+
+import com.getcapacitor.JSArray;
+import com.getcapacitor.JSObject;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 按关键词统计的检测数据（内存中），用于根据现场数据校准 keywords_threshold
+ *
+ * sherpa-onnx 1.12.15 的 KeywordSpotterResult 只提供 keyword / tokens / timestamps，没有分数，
+ * 因此统计的是可观测的量：每个阈值下的检测次数、被去抖丢弃的次数，以及关键词时长分布
+ * （阈值过低时误触发通常表现为时长异常短的检测）
+ */
+public class DetectionStats {
+
+    // 时长直方图：每个桶 100ms，最后一个桶包含 >= 1500ms 的检测
+    static final int BUCKET_MS = 100;
+    static final int BUCKET_COUNT = 16;
+
+    private static final class KeywordStats {
+        long detections;
+        long suppressed;
+        final long[] durationBuckets = new long[BUCKET_COUNT];
+        final Map<String, Long> detectionsByThreshold = new LinkedHashMap<>();
+    }
+
+    private final Map<String, KeywordStats> statsByKeyword = new LinkedHashMap<>();
+    private volatile boolean enabled = false;
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 记录一次上报的检测
+     * @param durationMs 关键词时长（由 token 时间戳得出）
+     * @param threshold 检测时生效的阈值
+     */
+    public synchronized void recordDetection(String keyword, long durationMs, float threshold) {
+        if (!enabled) {
+            return;
+        }
+        KeywordStats stats = statsFor(keyword);
+        stats.detections++;
+        int bucket = (int) Math.min(BUCKET_COUNT - 1, Math.max(0, durationMs / BUCKET_MS));
+        stats.durationBuckets[bucket]++;
+        String key = String.valueOf(threshold);
+        Long count = stats.detectionsByThreshold.get(key);
+        stats.detectionsByThreshold.put(key, count != null ? count + 1 : 1);
+    }
+
+    /**
+     * 记录一次在不应期内被丢弃的检测
+     */
+    public synchronized void recordSuppressed(String keyword) {
+        if (!enabled) {
+            return;
+        }
+        statsFor(keyword).suppressed++;
+    }
+
+    public synchronized void reset() {
+        statsByKeyword.clear();
+    }
+
+    public synchronized JSObject toJSObject() {
+        JSObject result = new JSObject();
+        result.put("enabled", enabled);
+        result.put("scoreAvailable", false);
+        result.put("durationBucketMs", BUCKET_MS);
+        JSObject keywords = new JSObject();
+        for (Map.Entry<String, KeywordStats> e : statsByKeyword.entrySet()) {
+            KeywordStats stats = e.getValue();
+            JSObject o = new JSObject();
+            o.put("detections", stats.detections);
+            o.put("suppressed", stats.suppressed);
+            JSArray buckets = new JSArray();
+            for (long count : stats.durationBuckets) {
+                buckets.put(count);
+            }
+            o.put("durationHistogram", buckets);
+            JSObject byThreshold = new JSObject();
+            for (Map.Entry<String, Long> t : stats.detectionsByThreshold.entrySet()) {
+                byThreshold.put(t.getKey(), t.getValue());
+            }
+            o.put("detectionsByThreshold", byThreshold);
+            keywords.put(e.getKey(), o);
+        }
+        result.put("keywords", keywords);
+        return result;
+    }
+
+    private KeywordStats statsFor(String keyword) {
+        KeywordStats stats = statsByKeyword.get(keyword);
+        if (stats == null) {
+            stats = new KeywordStats();
+            statsByKeyword.put(keyword, stats);
+        }
+        return stats;
+    }
+}
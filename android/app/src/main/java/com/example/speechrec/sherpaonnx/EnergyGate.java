@@ -0,0 +1,131 @@
+package com.example.speechrec.sherpaonnx;
+
+/**
+ * 基于 RMS 能量的静音门限
+ * 放在关键词识别器前面，静音期间跳过 acceptWaveform/decode 以节省 CPU 和电量
+ *
+ * - 能量超过阈值时打开，低于阈值后保持 hangover 时长再关闭
+ * - 关闭期间的音频写入预录环形缓冲区，打开时先把预录音频送入识别器，避免关键词开头被截断
+ *
+ * 非线程安全：只应在识别线程中调用 process()，统计字段可在其他线程读取
+ */
+public class EnergyGate {
+
+    public static final float DEFAULT_THRESHOLD_DB = -50f;
+    public static final int DEFAULT_HANGOVER_MS = 400;
+    public static final int DEFAULT_PRE_ROLL_MS = 300;
+
+    private final float thresholdRms;
+    private final int hangoverSamples;
+    private final float[] preRoll;
+    private int preRollWritePos = 0;
+    private int preRollFilled = 0;
+
+    private boolean open = false;
+    private int hangoverRemaining = 0;
+
+    private volatile long totalChunks = 0;
+    private volatile long decodedChunks = 0;
+
+    /**
+     * @param sampleRate 采样率
+     * @param thresholdDb 打开门限（dBFS，满幅为 0dB）
+     * @param hangoverMs 能量低于门限后保持打开的时长
+     * @param preRollMs 预录缓冲区时长
+     */
+    public EnergyGate(int sampleRate, float thresholdDb, int hangoverMs, int preRollMs) {
+        this.thresholdRms = (float) Math.pow(10.0, thresholdDb / 20.0);
+        this.hangoverSamples = Math.max(0, sampleRate * hangoverMs / 1000);
+        this.preRoll = new float[Math.max(1, sampleRate * preRollMs / 1000)];
+    }
+
+    /**
+     * 处理一个音频块
+     * @return true 表示该块需要送入识别器
+     */
+    public boolean process(float[] samples, int length) {
+        totalChunks++;
+
+        boolean loud = rms(samples, length) >= thresholdRms;
+        if (loud) {
+            open = true;
+            hangoverRemaining = hangoverSamples;
+        } else if (open) {
+            hangoverRemaining -= length;
+            if (hangoverRemaining <= 0) {
+                open = false;
+            }
+        }
+
+        if (!open) {
+            writePreRoll(samples, length);
+            return false;
+        }
+
+        decodedChunks++;
+        return true;
+    }
+
+    /**
+     * 取出并清空预录缓冲区（按时间顺序）
+     * 应在 process() 从 false 变为 true 时调用，并在当前块之前送入识别器
+     * @return 预录音频，没有数据时返回空数组
+     */
+    public float[] drainPreRoll() {
+        float[] out = new float[preRollFilled];
+        int start = (preRollWritePos - preRollFilled + preRoll.length) % preRoll.length;
+        for (int i = 0; i < preRollFilled; i++) {
+            out[i] = preRoll[(start + i) % preRoll.length];
+        }
+        preRollFilled = 0;
+        return out;
+    }
+
+    /**
+     * 丢弃预录音频并关闭门限（例如暂停恢复后，之前的音频已经过期）
+     */
+    public void reset() {
+        open = false;
+        hangoverRemaining = 0;
+        preRollFilled = 0;
+    }
+
+    public boolean isOpen() {
+        return open;
+    }
+
+    public long getTotalChunks() {
+        return totalChunks;
+    }
+
+    public long getDecodedChunks() {
+        return decodedChunks;
+    }
+
+    /**
+     * 解码占空比：实际送入识别器的音频块比例
+     */
+    public double getDutyCycle() {
+        long total = totalChunks;
+        return total > 0 ? (double) decodedChunks / total : 0;
+    }
+
+    private void writePreRoll(float[] samples, int length) {
+        for (int i = 0; i < length; i++) {
+            preRoll[preRollWritePos] = samples[i];
+            preRollWritePos = (preRollWritePos + 1) % preRoll.length;
+        }
+        preRollFilled = Math.min(preRoll.length, preRollFilled + length);
+    }
+
+    private static float rms(float[] samples, int length) {
+        if (length <= 0) {
+            return 0f;
+        }
+        double sum = 0;
+        for (int i = 0; i < length; i++) {
+            sum += samples[i] * samples[i];
+        }
+        return (float) Math.sqrt(sum / length);
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.speechrec.sherpaonnx;
+
+import com.example.speechrec.audio.AudioSource;
+
+/**
+ * 识别中切换输入设备：新音频源在切换线程中打开并读到第一块音频后交给识别线程，
+ * 识别线程在块边界把旧设备的最后一块与新设备的第一块交叉淡化，送入同一个 OnlineStream 后改从新设备读取
+ */
+final class InputSwitch {
+    final AudioSource source;
+    final float[] firstChunk;
+    final int firstLength;
+    final int deviceId;
+    final String deviceName;
+    final long requestedAtNanos;
+    final SherpaOnnxManager.SwitchCallback callback;
+
+    InputSwitch(AudioSource source, float[] firstChunk, int firstLength, int deviceId, String deviceName,
+                long requestedAtNanos, SherpaOnnxManager.SwitchCallback callback) {
+        this.source = source;
+        this.firstChunk = firstChunk;
+        this.firstLength = firstLength;
+        this.deviceId = deviceId;
+        this.deviceName = deviceName;
+        this.requestedAtNanos = requestedAtNanos;
+        this.callback = callback;
+    }
+
+    /**
+     * 把 next 交叉淡化到 dst：重叠部分旧音频线性淡出、新音频线性淡入，超出旧音频长度的部分直接取新音频
+     * @param dst 旧设备的最后一块，结果写回这里（长度不小于 nextLength）
+     * @param dstLength 旧音频样本数，0 表示旧设备已没有数据（直接拼接）
+     * @return 结果样本数（等于 nextLength）
+     */
+    static int crossfade(float[] dst, int dstLength, float[] next, int nextLength) {
+        int overlap = Math.min(Math.max(dstLength, 0), nextLength);
+        for (int i = 0; i < overlap; i++) {
+            float w = (i + 1) / (float) (overlap + 1);
+            dst[i] = dst[i] * (1f - w) + next[i] * w;
+        }
+        System.arraycopy(next, overlap, dst, overlap, nextLength - overlap);
+        return nextLength;
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.speechrec.sherpaonnx;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 模型关键词表
+ * 解析 keywords.txt（格式: "n ǐ h ǎo j ūn g ē @你好军哥"），并生成
+ * KeywordSpotter.createStream(keywords) 所需的关键词字符串：
+ * 多个关键词用 '/' 分隔，每个关键词可带 "#阈值"
+ */
+public class KeywordList {
+
+    // 显示文本 -> 拼音 token 序列（保持文件顺序）
+    private final Map<String, String> tokensByDisplay = new LinkedHashMap<>();
+
+    public static KeywordList load(File keywordsFile) throws IOException {
+        KeywordList list = new KeywordList();
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(keywordsFile), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                list.addLine(line);
+            }
+        }
+        return list;
+    }
+
+    /**
+     * 添加一行 keywords.txt 格式的关键词，忽略空行和没有 '@' 的行
+     */
+    public void addLine(String line) {
+        if (line == null) {
+            return;
+        }
+        line = line.trim();
+        int atIndex = line.lastIndexOf('@');
+        if (line.isEmpty() || atIndex <= 0 || atIndex == line.length() - 1) {
+            return;
+        }
+        String display = line.substring(atIndex + 1).trim();
+        String tokens = stripOptions(line.substring(0, atIndex));
+        if (!display.isEmpty() && !tokens.isEmpty()) {
+            tokensByDisplay.put(display, tokens);
+        }
+    }
+
+    /**
+     * 模型支持的全部显示文本
+     */
+    public List<String> displayTexts() {
+        return new ArrayList<>(tokensByDisplay.keySet());
+    }
+
+    public boolean contains(String display) {
+        return display != null && tokensByDisplay.containsKey(display.trim());
+    }
+
+    /**
+     * 生成 createStream() 使用的关键词字符串
+     * @param requested 需要启用的关键词（显示文本，或完整的 "tokens @显示文本" 行）；为空时启用全部
+     * @param threshold 每个关键词的触发阈值
+     * @param unresolved 输出参数：无法在模型关键词表中找到的关键词（可为 null）
+     * @return 关键词字符串，没有可用关键词时返回空字符串
+     */
+    public String buildStreamKeywords(String[] requested, float threshold, List<String> unresolved) {
+        List<String> entries = new ArrayList<>();
+        if (requested == null || requested.length == 0) {
+            for (Map.Entry<String, String> e : tokensByDisplay.entrySet()) {
+                entries.add(formatEntry(e.getValue(), e.getKey(), threshold));
+            }
+        } else {
+            for (String keyword : requested) {
+                if (keyword == null || keyword.trim().isEmpty()) {
+                    continue;
+                }
+                String k = keyword.trim();
+                int atIndex = k.lastIndexOf('@');
+                if (atIndex > 0 && atIndex < k.length() - 1) {
+                    // 调用方已提供 token 序列
+                    entries.add(formatEntry(stripOptions(k.substring(0, atIndex)),
+                        k.substring(atIndex + 1).trim(), threshold));
+                } else if (tokensByDisplay.containsKey(k)) {
+                    entries.add(formatEntry(tokensByDisplay.get(k), k, threshold));
+                } else if (unresolved != null) {
+                    unresolved.add(k);
+                }
+            }
+        }
+        return String.join("/", entries);
+    }
+
+    private static String formatEntry(String tokens, String display, float threshold) {
+        return tokens + " #" + threshold + " @" + display;
+    }
+
+    /**
+     * 去掉 token 序列中已有的 ":boost" / "#threshold" 选项
+     */
+    private static String stripOptions(String tokens) {
+        StringBuilder sb = new StringBuilder();
+        for (String t : tokens.trim().split("\\s+")) {
+            if (t.isEmpty() || t.startsWith(":") || t.startsWith("#")) {
+                continue;
+            }
+            if (sb.length() > 0) {
+                sb.append(' ');
+            }
+            sb.append(t);
+        }
+        return sb.toString();
+    }
+}
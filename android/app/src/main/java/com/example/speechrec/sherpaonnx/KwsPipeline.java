@@ -0,0 +1,245 @@
+package com.example.speechrec.sherpaonnx;
+
+import com.k2fsa.sherpa.onnx.KeywordSpotter;
+import com.k2fsa.sherpa.onnx.KeywordSpotterResult;
+import com.k2fsa.sherpa.onnx.OnlineStream;
+
+import java.util.Arrays;
+
+/**
+ * 关键词识别处理流程：PCM 转换 → 静音门限 → acceptWaveform/decode → 时间换算 → 去抖
+ * 实时录音和文件回放共用同一个流程，输入只是一块块的 PCM，不依赖 AudioRecord
+ *
+ * 解码由 Backend 完成：设备上是 KeywordSpotter + OnlineStream，JVM 测试中可以换成本地实现
+ * 非线程安全：只应在一个线程中调用 process()
+ */
+public class KwsPipeline {
+
+    /**
+     * 解码后端：一个识别器和它的音频流
+     */
+    public interface Backend {
+        /**
+         * 送入音频，采样率与模型不同时由后端重采样
+         */
+        void acceptWaveform(float[] samples, int sampleRate);
+
+        /**
+         * 解码所有就绪的帧
+         * @return 检测到关键词时返回结果（并重置解码状态），否则返回 null
+         */
+        KeywordSpotterResult decode();
+
+        /**
+         * 丢弃解码状态（例如暂停恢复后）
+         */
+        void reset();
+    }
+
+    /**
+     * 基于 sherpa-onnx 的后端
+     */
+    public static final class SpotterBackend implements Backend {
+        private final KeywordSpotter spotter;
+        private final OnlineStream stream;
+
+        public SpotterBackend(KeywordSpotter spotter, OnlineStream stream) {
+            this.spotter = spotter;
+            this.stream = stream;
+        }
+
+        @Override
+        public void acceptWaveform(float[] samples, int sampleRate) {
+            stream.acceptWaveform(samples, sampleRate);
+        }
+
+        @Override
+        public KeywordSpotterResult decode() {
+            while (spotter.isReady(stream)) {
+                spotter.decode(stream);
+            }
+            KeywordSpotterResult result = spotter.getResult(stream);
+            if (result == null || result.getKeyword() == null || result.getKeyword().isEmpty()) {
+                return null;
+            }
+            // 重置解码状态，避免同一关键词在后续块中被重复报告
+            spotter.reset(stream);
+            return result;
+        }
+
+        @Override
+        public void reset() {
+            spotter.reset(stream);
+        }
+    }
+
+    /**
+     * 一次关键词检测
+     */
+    public static final class Detection {
+        public final String keyword;
+        public final String[] tokens;
+        public final float[] tokenTimestamps;
+        // 关键词起止位置（采集样本序号），无法换算时为 -1
+        public final long startSample;
+        public final long endSample;
+        // 关键词起止位置（从开始采集起的音频时间）
+        public final long audioStartMs;
+        public final long audioEndMs;
+        // 检测时已处理的样本数
+        public final long processedSamples;
+        // true 表示处于该关键词的不应期内，不应上报
+        public final boolean suppressed;
+
+        Detection(String keyword, String[] tokens, float[] tokenTimestamps, long startSample, long endSample,
+                  long audioStartMs, long audioEndMs, long processedSamples, boolean suppressed) {
+            this.keyword = keyword;
+            this.tokens = tokens;
+            this.tokenTimestamps = tokenTimestamps;
+            this.startSample = startSample;
+            this.endSample = endSample;
+            this.audioStartMs = audioStartMs;
+            this.audioEndMs = audioEndMs;
+            this.processedSamples = processedSamples;
+            this.suppressed = suppressed;
+        }
+    }
+
+    private final int sampleRate;
+    private final EnergyGate gate;
+    private final DetectionFilter filter;
+    private final StreamClock clock;
+    private Backend backend;
+    private float[] floatBuffer = new float[0];
+    private long captureSamples = 0;
+    private boolean gateWasOpen = false;
+
+    /**
+     * @param sampleRate 输入音频的采样率
+     * @param gate 静音门限（可为 null）
+     * @param filter 检测去抖（可为 null）
+     */
+    public KwsPipeline(int sampleRate, EnergyGate gate, DetectionFilter filter) {
+        this.sampleRate = sampleRate;
+        this.gate = gate;
+        this.filter = filter;
+        this.clock = new StreamClock(sampleRate);
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    /**
+     * 切换解码后端（在块边界调用）；新的音频流从 0 开始计时
+     */
+    public void setBackend(Backend backend) {
+        if (backend != this.backend) {
+            this.backend = backend;
+            clock.reset();
+        }
+    }
+
+    public Backend getBackend() {
+        return backend;
+    }
+
+    /**
+     * 丢弃解码状态和预录音频（暂停恢复后调用），采样计数保持连续
+     */
+    public void resetForResume() {
+        if (backend != null) {
+            backend.reset();
+        }
+        if (gate != null) {
+            gate.reset();
+        }
+        gateWasOpen = false;
+    }
+
+    /**
+     * 已处理的样本总数（下一个样本的序号）
+     */
+    public long getCaptureSamples() {
+        return captureSamples;
+    }
+
+    /**
+     * 跳过没有送入 pipeline 的样本（例如解码跟不上时丢弃的块），采样计数与采集保持一致
+     * 丢弃的区间不会送入识别器，StreamClock 会把之后的音频记为新的一段
+     */
+    public void skip(long length) {
+        if (length > 0) {
+            captureSamples += length;
+        }
+    }
+
+    /**
+     * 处理一块 16-bit PCM
+     * @return 检测结果，没有检测到关键词时返回 null
+     */
+    public Detection process(short[] pcm, int length) {
+        if (floatBuffer.length < length) {
+            floatBuffer = new float[length];
+        }
+        // 转换为 float32（sherpa-onnx 需要 float32）
+        for (int i = 0; i < length; i++) {
+            floatBuffer[i] = pcm[i] / 32768.0f;
+        }
+        return process(floatBuffer, length);
+    }
+
+    /**
+     * 处理一块 [-1, 1] 范围的 float 音频
+     * @return 检测结果，没有检测到关键词时返回 null
+     */
+    public Detection process(float[] samples, int length) {
+        long chunkStartSample = captureSamples;
+        captureSamples += length;
+        if (backend == null || length <= 0) {
+            return null;
+        }
+
+        // 静音期间跳过解码；门限刚打开时先送入预录音频
+        if (gate != null) {
+            if (!gate.process(samples, length)) {
+                gateWasOpen = false;
+                return null;
+            }
+            if (!gateWasOpen) {
+                float[] preRoll = gate.drainPreRoll();
+                if (preRoll.length > 0) {
+                    backend.acceptWaveform(preRoll, sampleRate);
+                    clock.onFeed(chunkStartSample - preRoll.length, preRoll.length);
+                }
+                gateWasOpen = true;
+            }
+        }
+
+        backend.acceptWaveform(length == samples.length ? samples : Arrays.copyOf(samples, length), sampleRate);
+        clock.onFeed(chunkStartSample, length);
+
+        KeywordSpotterResult result = backend.decode();
+        if (result == null) {
+            return null;
+        }
+        String keyword = result.getKeyword();
+
+        // 由 token 时间戳（流内时间）换算出关键词在采样时钟上的起止位置
+        float[] tokenTimes = result.getTimestamps();
+        double endSeconds = (double) clock.getStreamSamples() / sampleRate;
+        double startSeconds = endSeconds;
+        if (tokenTimes != null && tokenTimes.length > 0) {
+            startSeconds = tokenTimes[0];
+            endSeconds = tokenTimes[tokenTimes.length - 1];
+        }
+        long startSample = clock.toCaptureSample(startSeconds);
+        long endSample = clock.toCaptureSample(endSeconds);
+        long audioStartMs = (startSample >= 0 ? startSample : chunkStartSample) * 1000 / sampleRate;
+        long audioEndMs = (endSample >= 0 ? endSample : captureSamples) * 1000 / sampleRate;
+
+        boolean suppressed = filter != null && !filter.accept(keyword, audioStartMs, audioEndMs);
+        return new Detection(keyword, result.getTokens(), tokenTimes, startSample, endSample,
+            audioStartMs, audioEndMs, captureSamples, suppressed);
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.speechrec.sherpaonnx;
+
+import com.example.speechrec.audio.AudioSource;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 离线回放：把音频源（文件、合成信号）按块送入 KwsPipeline，走与实时录音相同的门限/解码/去抖流程
+ * - 快速模式：尽快处理，用于回归测试和测量解码实时率（RTF）
+ * - 实时模式：按音频时长节奏送入，复现实时录音时的分块和时序
+ *
+ * 不依赖 AudioRecord，可以在普通 JVM 单元测试中运行
+ */
+public class KwsReplay {
+
+    /**
+     * 检测回调（在回放线程中调用）
+     */
+    public interface Listener {
+        void onDetection(KwsPipeline.Detection detection);
+    }
+
+    /**
+     * 回放结果
+     */
+    public static final class Result {
+        public final int sampleRate;
+        public final long samples;
+        public final long audioMs;
+        // 送入 pipeline 的累计耗时（门限 + 解码），不含读取音频和实时模式下的等待
+        public final double processMs;
+        public final double wallMs;
+        // 上报的检测（不含被去抖丢弃的）
+        public final List<KwsPipeline.Detection> detections;
+        public final int suppressed;
+        public final boolean cancelled;
+
+        Result(int sampleRate, long samples, double processMs, double wallMs,
+               List<KwsPipeline.Detection> detections, int suppressed, boolean cancelled) {
+            this.sampleRate = sampleRate;
+            this.samples = samples;
+            this.audioMs = sampleRate > 0 ? samples * 1000 / sampleRate : 0;
+            this.processMs = processMs;
+            this.wallMs = wallMs;
+            this.detections = Collections.unmodifiableList(detections);
+            this.suppressed = suppressed;
+            this.cancelled = cancelled;
+        }
+
+        /**
+         * 解码实时率：处理耗时 / 音频时长，小于 1 表示快于实时
+         */
+        public double getRealTimeFactor() {
+            return audioMs > 0 ? processMs / audioMs : 0;
+        }
+    }
+
+    private final KwsPipeline pipeline;
+    private final int chunkSamples;
+    private final boolean realtime;
+    private volatile boolean cancelled = false;
+
+    /**
+     * @param pipeline 已设置 Backend 的 pipeline，采样率需与音频源一致
+     * @param chunkMs 每块时长，与实时录音的 chunkMs 相同时分块方式完全一致
+     * @param realtime true 按音频时长节奏送入，false 尽快处理
+     */
+    public KwsReplay(KwsPipeline pipeline, int chunkMs, boolean realtime) {
+        this.pipeline = pipeline;
+        this.chunkSamples = Math.max(1, pipeline.getSampleRate() * chunkMs / 1000);
+        this.realtime = realtime;
+    }
+
+    /**
+     * 停止回放，run() 在当前块处理完后返回
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public Result run(AudioSource source, Listener listener) throws IOException, InterruptedException {
+        if (source.getSampleRate() != pipeline.getSampleRate()) {
+            throw new IllegalArgumentException("Sample rate mismatch: source " + source.getSampleRate() +
+                "Hz, pipeline " + pipeline.getSampleRate() + "Hz");
+        }
+        int sampleRate = pipeline.getSampleRate();
+        float[] buffer = new float[chunkSamples];
+        List<KwsPipeline.Detection> detections = new ArrayList<>();
+        int suppressed = 0;
+        long processNanos = 0;
+        long startNanos = System.nanoTime();
+        long startSample = pipeline.getCaptureSamples();
+
+        source.start();
+        int n;
+        while (!cancelled && (n = source.read(buffer, 0, buffer.length)) >= 0) {
+            if (n == 0) {
+                continue;
+            }
+            if (realtime) {
+                // 块中最后一个样本"录到"的时刻
+                long chunkEndSample = pipeline.getCaptureSamples() - startSample + n;
+                long dueNanos = startNanos + chunkEndSample * 1_000_000_000L / sampleRate;
+                long waitNanos = dueNanos - System.nanoTime();
+                if (waitNanos > 0) {
+                    Thread.sleep(waitNanos / 1_000_000, (int) (waitNanos % 1_000_000));
+                }
+            }
+            long t0 = System.nanoTime();
+            KwsPipeline.Detection detection = pipeline.process(buffer, n);
+            processNanos += System.nanoTime() - t0;
+            if (detection == null) {
+                continue;
+            }
+            if (detection.suppressed) {
+                suppressed++;
+                continue;
+            }
+            detections.add(detection);
+            if (listener != null) {
+                listener.onDetection(detection);
+            }
+        }
+
+        return new Result(sampleRate, pipeline.getCaptureSamples() - startSample,
+            processNanos / 1_000_000.0, (System.nanoTime() - startNanos) / 1_000_000.0,
+            detections, suppressed, cancelled);
+    }
+}
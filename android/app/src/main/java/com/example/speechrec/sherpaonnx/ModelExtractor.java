@@ -0,0 +1,535 @@
+package com.example.speechrec.sherpaonnx;
+
+import android.content.Context;
+import android.content.pm.PackageInfo;
+import android.content.res.AssetFileDescriptor;
+import android.os.Build;
+import android.util.Log;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 模型目录解压器
+ * 把 assets 中的模型目录复制到缓存目录，并写入清单文件（每个文件的大小和 SHA-256，
+ * 以及 APK 版本号和安装时间）
+ *
+ * - 热启动：清单的 APK 版本与当前一致且文件大小吻合时直接返回，只读一次清单，不访问 assets
+ * - 冷启动：逐个计算 assets 文件的哈希，只复制内容变化的文件
+ * - 所有文件先写入 .tmp 再原子重命名，清单最后写入；进程中途被杀不会留下半写的模型文件
+ * - 未压缩的 assets（build.gradle 中 noCompress 'onnx'）通过 AssetFileDescriptor 直接读取 APK 中的区间：
+ *   哈希基于内存映射，复制使用 FileChannel.transferTo；压缩的文件回退到流复制
+ * - 冷启动时各文件在小线程池中并行处理，全部写完后统一 fsync 再重命名
+ */
+public class ModelExtractor {
+    private static final String TAG = "ModelExtractor";
+
+    static final String MANIFEST_NAME = ".manifest.json";
+    private static final String TMP_SUFFIX = ".tmp";
+    private static final int BUFFER_SIZE = 256 * 1024;
+    private static final int MAX_WORKERS = 4;
+
+    public static final String MODE_CACHED = "cached";
+    public static final String MODE_FD = "fd";
+    public static final String MODE_STREAM = "stream";
+    public static final String MODE_MIXED = "mixed";
+
+    private final Context context;
+    private final String assetDir;
+    // 本进程内已验证过的模型目录
+    private volatile File resolvedDir;
+    // 最近一次 extract() 的读取方式和耗时
+    private volatile String lastMode;
+    private volatile double lastDurationMs;
+    private final AtomicInteger fdFiles = new AtomicInteger();
+    private final AtomicInteger streamFiles = new AtomicInteger();
+
+    /**
+     * 解压进度回调（在工作线程中调用）
+     */
+    public interface ProgressListener {
+        /**
+         * @param file 刚处理完的文件名
+         * @param filesDone 已处理的文件数
+         * @param filesTotal 文件总数
+         * @param bytesCopied 已实际写入的字节数（内容未变化的文件不计入）
+         */
+        void onProgress(String file, int filesDone, int filesTotal, long bytesCopied);
+    }
+
+    /**
+     * 列出 assets 目录（AssetManager.list）
+     */
+    interface AssetLister {
+        String[] list(String path) throws IOException;
+    }
+
+    /**
+     * 单个文件的处理结果
+     */
+    private static final class FileResult {
+        final String name;
+        final JSONObject entry;
+        final File tmp; // 需要重命名的临时文件，内容未变化时为 null
+
+        FileResult(String name, JSONObject entry, File tmp) {
+            this.name = name;
+            this.entry = entry;
+            this.tmp = tmp;
+        }
+    }
+
+    // assets 模型目录 -> 解压器；进程内共用，多个管理器不会同时写同一个目录
+    private static final Map<String, ModelExtractor> instances = new HashMap<>();
+
+    private ModelExtractor(Context context, String assetDir) {
+        this.context = context;
+        this.assetDir = assetDir;
+    }
+
+    public static ModelExtractor forAssetDir(Context context, String assetDir) {
+        synchronized (instances) {
+            ModelExtractor extractor = instances.get(assetDir);
+            if (extractor == null) {
+                extractor = new ModelExtractor(context.getApplicationContext(), assetDir);
+                instances.put(assetDir, extractor);
+            }
+            return extractor;
+        }
+    }
+
+    public File extract() throws IOException {
+        return extract(null);
+    }
+
+    /**
+     * 确保缓存中的模型目录与 APK 中的 assets 一致
+     * @return 缓存中的模型目录
+     */
+    public synchronized File extract(ProgressListener listener) throws IOException {
+        if (resolvedDir != null) {
+            return resolvedDir;
+        }
+
+        long startNanos = System.nanoTime();
+        File modelDir = new File(context.getCacheDir(), assetDir);
+        String apkStamp = apkStamp();
+        JSONObject manifest = readManifest(modelDir);
+
+        if (manifest != null && apkStamp.equals(manifest.optString("apk", null)) && filesMatch(modelDir, manifest)) {
+            finish(MODE_CACHED, startNanos);
+            Log.i(TAG, "Model cache is up to date (" + String.format("%.1f", lastDurationMs) + "ms): " +
+                modelDir.getAbsolutePath());
+            resolvedDir = modelDir;
+            return modelDir;
+        }
+
+        if (!modelDir.isDirectory() && !modelDir.mkdirs()) {
+            throw new IOException("Failed to create model directory: " + modelDir.getAbsolutePath());
+        }
+
+        String[] files = listFiles(context.getAssets()::list, assetDir);
+        if (files.length == 0) {
+            throw new IOException("Asset directory is empty or not found: " + assetDir);
+        }
+
+        JSONObject oldFiles = manifest != null ? manifest.optJSONObject("files") : null;
+        // 先删除旧清单，复制中途被杀时下次启动会重新校验
+        new File(modelDir, MANIFEST_NAME).delete();
+        fdFiles.set(0);
+        streamFiles.set(0);
+
+        List<FileResult> results = extractAll(files, modelDir, oldFiles, listener);
+        int copiedCount = 0;
+        try {
+            // 统一 fsync 后再重命名，保证目标文件要么是旧内容要么是完整的新内容
+            for (FileResult r : results) {
+                if (r.tmp != null) {
+                    sync(r.tmp);
+                }
+            }
+            JSONObject newFiles = new JSONObject();
+            for (FileResult r : results) {
+                if (r.tmp != null) {
+                    rename(r.tmp, new File(modelDir, r.name));
+                    copiedCount++;
+                }
+                newFiles.put(r.name, r.entry);
+            }
+
+            JSONObject newManifest = new JSONObject();
+            newManifest.put("apk", apkStamp);
+            newManifest.put("files", newFiles);
+            writeAtomically(newManifest.toString(2).getBytes(StandardCharsets.UTF_8),
+                new File(modelDir, MANIFEST_NAME));
+        } catch (JSONException e) {
+            throw new IOException("Failed to write model manifest", e);
+        } finally {
+            deleteTempFiles(results);
+        }
+
+        int fd = fdFiles.get();
+        int stream = streamFiles.get();
+        finish(fd == 0 ? MODE_STREAM : (stream == 0 ? MODE_FD : MODE_MIXED), startNanos);
+        Log.i(TAG, "Extracted model (" + copiedCount + "/" + files.length + " files changed, " +
+            fd + " via fd, " + stream + " via stream) in " +
+            String.format("%.1f", lastDurationMs) + "ms: " + modelDir.getAbsolutePath());
+        resolvedDir = modelDir;
+        return modelDir;
+    }
+
+    /**
+     * 最近一次 extract() 的读取方式：cached / fd / stream / mixed
+     */
+    public String getLastMode() {
+        return lastMode;
+    }
+
+    /**
+     * 最近一次 extract() 的耗时（毫秒）
+     */
+    public double getLastDurationMs() {
+        return lastDurationMs;
+    }
+
+    private void finish(String mode, long startNanos) {
+        lastMode = mode;
+        lastDurationMs = (System.nanoTime() - startNanos) / 1_000_000.0;
+    }
+
+    /**
+     * assets 目录下的文件（不含子目录，例如模型目录中自带的 test_wavs）
+     * AssetManager.list() 对文件返回空数组，对非空目录返回其中的条目
+     * @return 文件名，目录不存在或为空时返回空数组
+     */
+    static String[] listFiles(AssetLister lister, String assetDir) throws IOException {
+        String[] entries = lister.list(assetDir);
+        if (entries == null) {
+            return new String[0];
+        }
+        List<String> files = new ArrayList<>();
+        for (String entry : entries) {
+            String[] children = lister.list(assetDir + "/" + entry);
+            if (children != null && children.length > 0) {
+                Log.d(TAG, "Skipping asset subdirectory: " + assetDir + "/" + entry);
+                continue;
+            }
+            files.add(entry);
+        }
+        return files.toArray(new String[0]);
+    }
+
+    /**
+     * 在线程池中并行处理所有文件，结果按 assets 列表顺序返回
+     * 任一文件失败时删除已写出的临时文件并抛出异常
+     */
+    private List<FileResult> extractAll(String[] files, File modelDir, JSONObject oldFiles,
+                                        ProgressListener listener) throws IOException {
+        int workers = Math.max(1, Math.min(MAX_WORKERS,
+            Math.min(files.length, Runtime.getRuntime().availableProcessors())));
+        AtomicInteger threadIndex = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(workers,
+            r -> new Thread(r, "ModelExtractor-" + threadIndex.incrementAndGet()));
+        AtomicInteger filesDone = new AtomicInteger();
+        AtomicLong bytesCopied = new AtomicLong();
+
+        List<Future<FileResult>> futures = new ArrayList<>();
+        for (String filename : files) {
+            JSONObject old = oldFiles != null ? oldFiles.optJSONObject(filename) : null;
+            futures.add(pool.submit(() -> {
+                FileResult result = extractFile(filename, modelDir, old);
+                if (result.tmp != null) {
+                    bytesCopied.addAndGet(result.tmp.length());
+                }
+                if (listener != null) {
+                    listener.onProgress(filename, filesDone.incrementAndGet(), files.length, bytesCopied.get());
+                }
+                return result;
+            }));
+        }
+
+        List<FileResult> results = new ArrayList<>();
+        IOException failure = null;
+        try {
+            for (Future<FileResult> future : futures) {
+                try {
+                    results.add(future.get());
+                } catch (ExecutionException e) {
+                    if (failure == null) {
+                        Throwable cause = e.getCause();
+                        failure = cause instanceof IOException ? (IOException) cause
+                            : new IOException("Failed to extract model file", cause);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    if (failure == null) {
+                        failure = new IOException("Model extraction interrupted", e);
+                    }
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        if (failure != null) {
+            deleteTempFiles(results);
+            throw failure;
+        }
+        return results;
+    }
+
+    /**
+     * 校验单个文件，内容变化时写入临时文件（不 fsync，由 extract() 统一处理）
+     * @param old 清单中的旧条目（可为 null）
+     */
+    private FileResult extractFile(String filename, File modelDir, JSONObject old) throws IOException, JSONException {
+        String assetPath = assetDir + "/" + filename;
+        File target = new File(modelDir, filename);
+        File tmp = new File(modelDir, filename + TMP_SUFFIX);
+        String assetHash;
+        long size;
+        AssetFileDescriptor afd = openUncompressed(assetPath);
+        if (afd != null) {
+            fdFiles.incrementAndGet();
+            try (AssetFileDescriptor fd = afd;
+                 FileInputStream in = fd.createInputStream();
+                 FileChannel source = in.getChannel()) {
+                long offset = fd.getStartOffset();
+                long length = fd.getLength();
+                assetHash = sha256(source.map(FileChannel.MapMode.READ_ONLY, offset, length));
+                if (isUnchanged(old, assetHash, target)) {
+                    return new FileResult(filename, old, null);
+                }
+                size = transfer(source, offset, length, tmp);
+            }
+        } else {
+            streamFiles.incrementAndGet();
+            assetHash = sha256(context.getAssets().open(assetPath));
+            if (isUnchanged(old, assetHash, target)) {
+                return new FileResult(filename, old, null);
+            }
+            size = copy(context.getAssets().open(assetPath), tmp);
+        }
+
+        Log.d(TAG, "Copied: " + assetPath + " (" + size + " bytes, " + (afd != null ? MODE_FD : MODE_STREAM) + ")");
+        JSONObject entry = new JSONObject();
+        entry.put("size", size);
+        entry.put("sha256", assetHash);
+        return new FileResult(filename, entry, tmp);
+    }
+
+    private static void deleteTempFiles(List<FileResult> results) {
+        for (FileResult r : results) {
+            if (r.tmp != null && r.tmp.exists()) {
+                r.tmp.delete();
+            }
+        }
+    }
+
+    private static boolean isUnchanged(JSONObject old, String assetHash, File target) {
+        return old != null && assetHash.equals(old.optString("sha256", null))
+            && target.length() == old.optLong("size", -1);
+    }
+
+    /**
+     * 以文件描述符方式打开未压缩的 asset；压缩存储的文件无法 openFd，返回 null
+     */
+    private AssetFileDescriptor openUncompressed(String assetPath) {
+        try {
+            return context.getAssets().openFd(assetPath);
+        } catch (FileNotFoundException e) {
+            // 压缩存储的文件会抛出 FileNotFoundException
+            return null;
+        } catch (IOException e) {
+            Log.w(TAG, "openFd failed, falling back to stream copy: " + assetPath, e);
+            return null;
+        }
+    }
+
+    /**
+     * 当前 APK 的标识：版本号 + 安装时间
+     * 调试构建的版本号不变，加上安装时间后重新安装也能触发更新
+     */
+    private String apkStamp() {
+        try {
+            PackageInfo info = context.getPackageManager().getPackageInfo(context.getPackageName(), 0);
+            long versionCode = Build.VERSION.SDK_INT >= Build.VERSION_CODES.P
+                ? info.getLongVersionCode() : info.versionCode;
+            return versionCode + "-" + info.lastUpdateTime;
+        } catch (Exception e) {
+            Log.w(TAG, "Failed to read package info, model cache will be revalidated", e);
+            return "unknown-" + System.currentTimeMillis();
+        }
+    }
+
+    private static JSONObject readManifest(File modelDir) {
+        File manifestFile = new File(modelDir, MANIFEST_NAME);
+        if (!manifestFile.isFile()) {
+            return null;
+        }
+        try (FileInputStream in = new FileInputStream(manifestFile)) {
+            byte[] data = new byte[(int) manifestFile.length()];
+            int offset = 0;
+            while (offset < data.length) {
+                int n = in.read(data, offset, data.length - offset);
+                if (n < 0) {
+                    break;
+                }
+                offset += n;
+            }
+            return new JSONObject(new String(data, 0, offset, StandardCharsets.UTF_8));
+        } catch (IOException | JSONException e) {
+            Log.w(TAG, "Ignoring unreadable model manifest", e);
+            return null;
+        }
+    }
+
+    /**
+     * 清单中的每个文件都存在且大小一致
+     */
+    private static boolean filesMatch(File modelDir, JSONObject manifest) {
+        JSONObject files = manifest.optJSONObject("files");
+        if (files == null || files.length() == 0) {
+            return false;
+        }
+        Iterator<String> names = files.keys();
+        while (names.hasNext()) {
+            String name = names.next();
+            JSONObject entry = files.optJSONObject(name);
+            if (entry == null || new File(modelDir, name).length() != entry.optLong("size", -1)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 通过直接缓冲区把流复制到临时文件
+     * @return 复制的字节数
+     */
+    private static long copy(InputStream source, File tmp) throws IOException {
+        long total = 0;
+        try (ReadableByteChannel in = Channels.newChannel(source);
+             FileOutputStream out = new FileOutputStream(tmp);
+             FileChannel dest = out.getChannel()) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            while (in.read(buffer) != -1) {
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    total += dest.write(buffer);
+                }
+                buffer.clear();
+            }
+        } catch (IOException e) {
+            tmp.delete();
+            throw e;
+        }
+        return total;
+    }
+
+    /**
+     * 把 APK 中 [offset, offset + length) 区间通过 transferTo 复制到临时文件
+     * @return 复制的字节数
+     */
+    private static long transfer(FileChannel source, long offset, long length, File tmp) throws IOException {
+        try (FileOutputStream out = new FileOutputStream(tmp); FileChannel dest = out.getChannel()) {
+            long position = 0;
+            while (position < length) {
+                long n = source.transferTo(offset + position, length - position, dest);
+                if (n <= 0) {
+                    throw new IOException("Unexpected end of asset while copying " + tmp.getName());
+                }
+                position += n;
+            }
+        } catch (IOException e) {
+            tmp.delete();
+            throw e;
+        }
+        return length;
+    }
+
+    private static void sync(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.getFD().sync();
+        }
+    }
+
+    private static void writeAtomically(byte[] data, File target) throws IOException {
+        File tmp = new File(target.getParentFile(), target.getName() + TMP_SUFFIX);
+        try (FileOutputStream out = new FileOutputStream(tmp)) {
+            out.write(data);
+            out.getFD().sync();
+        } catch (IOException e) {
+            tmp.delete();
+            throw e;
+        }
+        rename(tmp, target);
+    }
+
+    private static void rename(File tmp, File target) throws IOException {
+        if (!tmp.renameTo(target)) {
+            tmp.delete();
+            throw new IOException("Failed to rename " + tmp.getName() + " to " + target.getName());
+        }
+    }
+
+    private static String sha256(MappedByteBuffer data) throws IOException {
+        MessageDigest digest = newSha256();
+        digest.update(data);
+        return toHex(digest.digest());
+    }
+
+    private static String sha256(InputStream source) throws IOException {
+        MessageDigest digest = newSha256();
+        try (InputStream in = source) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, n);
+            }
+        }
+        return toHex(digest.digest());
+    }
+
+    private static MessageDigest newSha256() throws IOException {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException("SHA-256 not available", e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder();
+        for (byte b : bytes) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+}
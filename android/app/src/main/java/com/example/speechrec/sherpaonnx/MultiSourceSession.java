@@ -0,0 +1,393 @@
+package com.example.speechrec.sherpaonnx;
+
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.example.speechrec.audio.AudioSource;
+import com.getcapacitor.JSArray;
+import com.getcapacitor.JSObject;
+import com.k2fsa.sherpa.onnx.KeywordSpotter;
+import com.k2fsa.sherpa.onnx.OnlineStream;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 多麦克风关键词识别会话
+ * 每个输入设备有独立的采集线程和 KwsPipeline（自己的 OnlineStream、采样时钟和检测去抖），
+ * 所有音频流共用一个 KeywordSpotter；采集线程只负责读取音频，由一个解码线程统一处理所有音频源
+ *
+ * 解码线程每轮取出所有已到达的音频块，依次交给各自音频源的 pipeline，检测结果带上来源设备 id
+ */
+public class MultiSourceSession {
+    private static final String TAG = "MultiSourceSession";
+
+    // 每个音频源最多积压的音频块数，解码跟不上时丢弃新块
+    private static final int QUEUE_CHUNKS_PER_SOURCE = 50;
+
+    /**
+     * 为每个音频源创建带当前关键词和阈值的音频流
+     */
+    public interface StreamFactory {
+        OnlineStream create(KeywordSpotter spotter) throws Exception;
+    }
+
+    /**
+     * 检测结果和错误回调（在解码线程中调用）
+     */
+    public interface Listener {
+        /**
+         * @param detection 检测结果，处于不应期内的检测 suppressed 为 true
+         * @param anchorEpochMs 该音频源第 0 个样本对应的系统时间（暂停恢复后重新对齐）
+         * @param capturedAtNanos 检测所在块最后一个样本的采集时间
+         */
+        void onDetection(int deviceId, String deviceName, KwsPipeline.Detection detection, int sampleRate,
+                         long anchorEpochMs, long capturedAtNanos);
+
+        void onError(String code, String message);
+    }
+
+    private static final class Source {
+        final int index;
+        final int deviceId;
+        final String deviceName;
+        final AudioSource audioSource;
+        final int sampleRate;
+        final int chunkSamples;
+        final KwsPipeline pipeline; // 只在解码线程中访问
+        OnlineStream stream; // 只在解码线程中访问
+        long anchorEpochMs = -1; // 只在解码线程中访问
+        Thread captureThread;
+        final AtomicLong chunks = new AtomicLong();
+        final AtomicLong droppedChunks = new AtomicLong();
+        final AtomicLong detections = new AtomicLong();
+
+        Source(int index, int deviceId, String deviceName, AudioSource audioSource, int chunkSamples,
+               DetectionFilter filter) {
+            this.index = index;
+            this.deviceId = deviceId;
+            this.deviceName = deviceName;
+            this.audioSource = audioSource;
+            this.sampleRate = audioSource.getSampleRate();
+            this.chunkSamples = chunkSamples;
+            this.pipeline = new KwsPipeline(sampleRate, null, filter);
+        }
+    }
+
+    private static final class Chunk {
+        final Source source;
+        final float[] samples;
+        final long capturedAtNanos;
+        // 暂停恢复后的第一个块，解码前丢弃该音频源暂停前的解码状态
+        final boolean afterResume;
+        // 该音频源在本块之前因队列已满丢弃的样本数，解码前推进采样计数
+        final long droppedBefore;
+
+        Chunk(Source source, float[] samples, long capturedAtNanos, boolean afterResume, long droppedBefore) {
+            this.source = source;
+            this.samples = samples;
+            this.capturedAtNanos = capturedAtNanos;
+            this.afterResume = afterResume;
+            this.droppedBefore = droppedBefore;
+        }
+    }
+
+    private final KeywordSpotter spotter;
+    private final StreamFactory streamFactory;
+    // 不应期配置，每个音频源使用各自的副本，检测历史互不影响
+    private final DetectionFilter filterTemplate;
+    private final int chunkMs;
+    private final PauseGate pauseGate;
+    private final Listener listener;
+
+    private final List<Source> sources = new ArrayList<>();
+    private BlockingQueue<Chunk> queue;
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    // 关键词/阈值变更后由解码线程在块边界重建所有音频流
+    private final AtomicBoolean rebuildRequested = new AtomicBoolean(false);
+    private Thread decodeThread;
+    // 音频流的释放交接：解码线程未退出时 stop() 不能释放仍可能在 decode 中使用的音频流，
+    // 改由解码线程退出时释放
+    private final Object releaseLock = new Object();
+    private boolean decodeExited = true; // 受 releaseLock 保护
+    private List<Source> pendingRelease; // 受 releaseLock 保护
+
+    public MultiSourceSession(KeywordSpotter spotter, StreamFactory streamFactory, DetectionFilter filterTemplate,
+                              int chunkMs, PauseGate pauseGate, Listener listener) {
+        this.spotter = spotter;
+        this.streamFactory = streamFactory;
+        this.filterTemplate = filterTemplate;
+        this.chunkMs = chunkMs;
+        this.pauseGate = pauseGate;
+        this.listener = listener;
+    }
+
+    /**
+     * 添加音频源，需要在 start() 之前调用；音频源由会话负责释放
+     */
+    public void addSource(int deviceId, String deviceName, AudioSource audioSource) throws Exception {
+        Source source = new Source(sources.size(), deviceId, deviceName, audioSource,
+            Math.max(1, audioSource.getSampleRate() * chunkMs / 1000), filterTemplate.copyConfig());
+        source.stream = streamFactory.create(spotter);
+        source.pipeline.setBackend(new KwsPipeline.SpotterBackend(spotter, source.stream));
+        sources.add(source);
+    }
+
+    public int getSourceCount() {
+        return sources.size();
+    }
+
+    public void start() throws Exception {
+        queue = new LinkedBlockingQueue<>(QUEUE_CHUNKS_PER_SOURCE * Math.max(1, sources.size()));
+        running.set(true);
+        for (Source source : sources) {
+            source.audioSource.start();
+            source.captureThread = new Thread(() -> captureLoop(source), "SherpaOnnx-Capture-" + source.deviceId);
+            source.captureThread.start();
+        }
+        synchronized (releaseLock) {
+            decodeExited = false;
+        }
+        List<Source> decodeSources = new ArrayList<>(sources);
+        decodeThread = new Thread(() -> decodeLoop(decodeSources), "SherpaOnnx-MultiDecode");
+        decodeThread.start();
+        Log.i(TAG, "Started " + sources.size() + " sources (chunk=" + chunkMs + "ms)");
+    }
+
+    /**
+     * 停止所有采集线程和解码线程，释放音频源和音频流
+     * 调用方应先 pauseGate.reset() 唤醒可能阻塞的线程
+     * 解码线程在等待时间内没有退出（仍在 native 解码中）时，音频流由解码线程退出时释放
+     */
+    public void stop() {
+        running.set(false);
+        for (Source source : sources) {
+            source.audioSource.stop();
+        }
+        for (Source source : sources) {
+            join(source.captureThread);
+        }
+        join(decodeThread);
+        decodeThread = null;
+        List<Source> stopped = new ArrayList<>(sources);
+        sources.clear();
+        for (Source source : stopped) {
+            source.audioSource.close();
+        }
+        boolean releaseNow;
+        synchronized (releaseLock) {
+            releaseNow = decodeExited;
+            if (!releaseNow) {
+                pendingRelease = stopped;
+            }
+        }
+        if (releaseNow) {
+            releaseStreams(stopped);
+        } else {
+            Log.w(TAG, "Decode thread still running, keyword streams will be released when it exits");
+        }
+        Log.i(TAG, "Stopped");
+    }
+
+    public void pause() {
+        for (Source source : sources) {
+            source.audioSource.stop();
+        }
+    }
+
+    public void resume() {
+        for (Source source : sources) {
+            try {
+                source.audioSource.start();
+            } catch (Exception e) {
+                Log.e(TAG, "Error restarting capture on resume for device " + source.deviceId, e);
+            }
+        }
+    }
+
+    /**
+     * 关键词或阈值变更后调用，解码线程在下一个块边界重建所有音频流
+     */
+    public void requestStreamRebuild() {
+        rebuildRequested.set(true);
+    }
+
+    /**
+     * 各音频源的状态
+     */
+    public JSArray getStatus() {
+        JSArray array = new JSArray();
+        for (Source source : sources) {
+            JSObject o = new JSObject();
+            o.put("deviceId", source.deviceId);
+            o.put("deviceName", source.deviceName);
+            o.put("sampleRate", source.sampleRate);
+            o.put("chunks", source.chunks.get());
+            o.put("droppedChunks", source.droppedChunks.get());
+            o.put("detections", source.detections.get());
+            array.put(o);
+        }
+        return array;
+    }
+
+    private void captureLoop(Source source) {
+        try {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_URGENT_AUDIO);
+        } catch (Exception e) {
+            Log.w(TAG, "Failed to set URGENT_AUDIO thread priority: " + e.getMessage());
+        }
+
+        float[] buffer = new float[source.chunkSamples];
+        boolean resumed = false;
+        long droppedSamples = 0; // 上一个入队的块之后丢弃的样本数
+        while (running.get()) {
+            try {
+                resumed |= pauseGate.awaitResumed();
+            } catch (InterruptedException e) {
+                break;
+            }
+            if (!running.get()) {
+                break;
+            }
+
+            int samplesRead;
+            try {
+                samplesRead = source.audioSource.read(buffer, 0, buffer.length);
+            } catch (Exception e) {
+                if (running.get() && !pauseGate.isPaused()) {
+                    Log.e(TAG, "Error reading audio from device " + source.deviceId, e);
+                    listener.onError("AUDIO_ERROR", "Failed to read audio from device " + source.deviceName);
+                    break;
+                }
+                continue;
+            }
+            long capturedAtNanos = SystemClock.elapsedRealtimeNanos();
+            if (samplesRead < 0) {
+                break;
+            }
+            if (samplesRead == 0) {
+                continue;
+            }
+
+            // 每个块单独分配，交给解码线程后不再复用
+            float[] samples = Arrays.copyOf(buffer, samplesRead);
+            source.chunks.incrementAndGet();
+            if (queue.offer(new Chunk(source, samples, capturedAtNanos, resumed, droppedSamples))) {
+                resumed = false;
+                droppedSamples = 0;
+            } else {
+                source.droppedChunks.incrementAndGet();
+                droppedSamples += samplesRead;
+            }
+        }
+        Log.i(TAG, "Capture loop ended for device " + source.deviceId);
+    }
+
+    private void decodeLoop(List<Source> decodeSources) {
+        try {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_URGENT_AUDIO);
+        } catch (Exception e) {
+            Log.w(TAG, "Failed to set URGENT_AUDIO thread priority: " + e.getMessage());
+        }
+
+        List<Chunk> batch = new ArrayList<>();
+        while (running.get()) {
+            try {
+                Chunk first = queue.poll(chunkMs * 2L, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch);
+
+                if (rebuildRequested.getAndSet(false)) {
+                    rebuildStreams(decodeSources);
+                }
+
+                // 按到达顺序交给各自音频源的 pipeline：解码、采样时钟换算和去抖与单麦克风模式相同
+                for (Chunk chunk : batch) {
+                    Source source = chunk.source;
+                    KwsPipeline pipeline = source.pipeline;
+                    if (chunk.afterResume) {
+                        // 暂停前的解码状态已过期
+                        pipeline.resetForResume();
+                        source.anchorEpochMs = -1;
+                    }
+                    // 丢弃的块也占用采样时间，否则之后的检测时间会整体偏早
+                    pipeline.skip(chunk.droppedBefore);
+                    if (source.anchorEpochMs < 0) {
+                        source.anchorEpochMs = System.currentTimeMillis()
+                            - (pipeline.getCaptureSamples() + chunk.samples.length) * 1000 / source.sampleRate;
+                    }
+                    KwsPipeline.Detection detection = pipeline.process(chunk.samples, chunk.samples.length);
+                    if (detection == null) {
+                        continue;
+                    }
+                    if (!detection.suppressed) {
+                        source.detections.incrementAndGet();
+                    }
+                    listener.onDetection(source.deviceId, source.deviceName, detection, source.sampleRate,
+                        source.anchorEpochMs, chunk.capturedAtNanos);
+                }
+                batch.clear();
+            } catch (InterruptedException e) {
+                break;
+            } catch (Exception e) {
+                Log.e(TAG, "Error in decode loop", e);
+                listener.onError("DECODE_ERROR", "Multi-source decode failed: " + e.getMessage());
+                break;
+            }
+        }
+        List<Source> release;
+        synchronized (releaseLock) {
+            decodeExited = true;
+            release = pendingRelease;
+            pendingRelease = null;
+        }
+        if (release != null) {
+            // stop() 已返回，由解码线程释放音频流
+            releaseStreams(release);
+        }
+        Log.i(TAG, "Decode loop ended");
+    }
+
+    private static void releaseStreams(List<Source> stopped) {
+        for (Source source : stopped) {
+            if (source.stream != null) {
+                source.stream.release();
+                source.stream = null;
+            }
+        }
+    }
+
+    private void rebuildStreams(List<Source> decodeSources) throws Exception {
+        for (Source source : decodeSources) {
+            OnlineStream next = streamFactory.create(spotter);
+            OnlineStream old = source.stream;
+            source.stream = next;
+            source.pipeline.setBackend(new KwsPipeline.SpotterBackend(spotter, next));
+            if (old != null) {
+                old.release();
+            }
+        }
+        Log.i(TAG, "Rebuilt " + decodeSources.size() + " keyword streams");
+    }
+
+    private static void join(Thread thread) {
+        if (thread == null) {
+            return;
+        }
+        try {
+            thread.join(1000);
+        } catch (InterruptedException e) {
+            Log.w(TAG, "Interrupted while waiting for " + thread.getName(), e);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.speechrec.sherpaonnx;
+
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 识别线程的暂停闸门
+ * 暂停期间识别线程阻塞在 Condition 上，resume() 后立即唤醒，不再需要 sleep 轮询
+ */
+public class PauseGate {
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition resumed = lock.newCondition();
+    private boolean paused = false;
+    private long resumedAtNanos = 0;
+
+    public void pause() {
+        lock.lock();
+        try {
+            paused = true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 恢复并唤醒所有等待的线程，同时记录恢复时间用于统计唤醒延迟
+     */
+    public void resume() {
+        lock.lock();
+        try {
+            paused = false;
+            resumedAtNanos = System.nanoTime();
+            resumed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 解除暂停并唤醒等待线程，不记录恢复时间（用于 start/stop）
+     */
+    public void reset() {
+        lock.lock();
+        try {
+            paused = false;
+            resumedAtNanos = 0;
+            resumed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean isPaused() {
+        lock.lock();
+        try {
+            return paused;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 暂停期间阻塞，直到 resume() 被调用
+     * @return true 表示曾经阻塞过（即刚从暂停中恢复）
+     */
+    public boolean awaitResumed() throws InterruptedException {
+        lock.lock();
+        try {
+            if (!paused) {
+                return false;
+            }
+            while (paused) {
+                resumed.await();
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 取出最近一次 resume() 的时间戳（System.nanoTime），取出后清零
+     * @return 时间戳，没有未消费的恢复事件时返回 0
+     */
+    public long consumeResumeTimestamp() {
+        lock.lock();
+        try {
+            long t = resumedAtNanos;
+            resumedAtNanos = 0;
+            return t;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -6,15 +6,37 @@ import android.media.AudioFormat;
 import android.media.AudioRecord;
 import android.media.MediaRecorder;
 import android.os.Build;
+import android.os.Process;
+import android.os.SystemClock;
 import android.util.Log;
 import androidx.annotation.RequiresApi;
+import androidx.annotation.VisibleForTesting;
+import com.example.speechrec.audio.AudioRecordSource;
+import com.example.speechrec.audio.AudioSource;
+import com.example.speechrec.audio.CaptureHandoff;
+import com.example.speechrec.audio.DeviceRegistry;
+import com.example.speechrec.audio.FileAudioSource;
+import com.example.speechrec.audio.PcmRingBuffer;
+import com.example.speechrec.audio.SharedCapture;
+import com.example.speechrec.commands.Command;
+import com.example.speechrec.commands.CommandRegistry;
+import com.getcapacitor.JSArray;
 import com.getcapacitor.JSObject;
 import com.k2fsa.sherpa.onnx.*;
 import java.io.File;
 import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Sherpa-ONNX 管理器
@@ -32,6 +54,28 @@ public class SherpaOnnxManager {
     private static final int CHANNEL_CONFIG = AudioFormat.CHANNEL_IN_MONO;
     private static final int AUDIO_FORMAT = AudioFormat.ENCODING_PCM_16BIT;
     private static final int BUFFER_SIZE_FACTOR = 2;
+
+    // assets 中内置的模型目录
+    static final String DEFAULT_MODEL_ASSET_DIR = "sherpa-onnx-kws-zipformer-wenetspeech-3.3M-2024-01-01-mobile";
+
+    // 保留的采集音频历史时长，0 表示关闭
+    public static final int DEFAULT_PCM_HISTORY_MS = 5000;
+    // 导出检测音频时在关键词开始前多保留的时长
+    private static final int DETECTION_AUDIO_LEAD_MS = 200;
+    // 交给下一个识别引擎的音频从关键词结束前多久开始（关键词结束位置取自最后一个 token 的时间戳，略偏早）
+    private static final int ASR_HANDOFF_LEAD_MS = 0;
+    // 缓存目录中最多保留的检测音频文件数
+    private static final int MAX_DETECTION_AUDIO_FILES = 20;
+
+    // 每次读取的音频块时长（毫秒），决定检测前的缓冲延迟
+    public static final int DEFAULT_CHUNK_MS = 40;
+    public static final int MIN_CHUNK_MS = 10;
+    public static final int MAX_CHUNK_MS = 100;
+
+    // 采集方式
+    public static final String CAPTURE_AUDIO_RECORD = "audioRecord";
+    // 读取正在运行的共享采集流（例如百度 ASR 的 inputMode=stream），与其使用同一设备上的同一段音频
+    public static final String CAPTURE_SHARED = "shared";
     
     // 自适应采样率列表（按优先级排序）
     private static final int[] SAMPLE_RATES = {
@@ -47,24 +91,137 @@ public class SherpaOnnxManager {
     private EventEmitter eventEmitter;
     
     // Sherpa-ONNX 相关
-    private KeywordSpotter spotter; // sherpa-onnx 的关键词识别器
-    private OnlineStream stream; // sherpa-onnx 的音频流
+    // 当前使用的识别器和音频流，只由识别线程（或未运行时的 start()）替换
+    private volatile KwsEngine engine;
+    // 新建的识别器/音频流（模型重载或关键词变更），由识别线程在块边界取走并释放旧的
+    private final AtomicReference<KwsEngine> pendingEngine = new AtomicReference<>();
+    // 保护 engine 切换与基于最新识别器创建音频流之间的竞争
+    private final Object engineLock = new Object();
+    // release() 之后为 true，仍在进行的模型加载不再发布识别器（在 engineLock 内读写）
+    private boolean released = false;
+    private volatile KeywordList keywordList; // 模型 keywords.txt 中的关键词表
+    // 检测去抖：同一关键词不应期内的重复检测不上报
+    private final DetectionFilter detectionFilter = new DetectionFilter();
+    // 按关键词统计的检测数据（可选），用于校准阈值
+    private final DetectionStats detectionStats = new DetectionStats();
+    // 多麦克风模式的会话，单麦克风模式下为 null
+    private volatile MultiSourceSession multiSession;
+    // 模型读取方式（cached / fd / stream / mixed / path）-> 最近一次从开始加载到就绪的耗时
+    private final Map<String, Double> readyMsByMode = new LinkedHashMap<>();
+    private volatile String lastModelMode;
+    // 后台加载模型，避免阻塞插件调用线程
+    private final ExecutorService modelExecutor = Executors.newSingleThreadExecutor(
+        r -> new Thread(r, "SherpaOnnx-ModelLoader"));
+    // 检测音频导出在单独线程中写文件，不阻塞识别线程
+    private final ExecutorService audioExportExecutor = Executors.newSingleThreadExecutor(
+        r -> new Thread(r, "SherpaOnnx-AudioExport"));
+    // 文件回放在单独线程中运行，一次只回放一个文件
+    private final ExecutorService replayExecutor = Executors.newSingleThreadExecutor(
+        r -> new Thread(r, "SherpaOnnx-Replay"));
+    private final AtomicBoolean replayRunning = new AtomicBoolean(false);
+    private volatile KwsReplay activeReplay;
+    // 识别中切换输入设备：新音频源在切换线程中打开，识别线程在块边界接管，旧音频源也在该线程释放
+    private final ExecutorService switchExecutor = Executors.newSingleThreadExecutor(
+        r -> new Thread(r, "SherpaOnnx-InputSwitch"));
+    private final AtomicReference<InputSwitch> pendingSwitch = new AtomicReference<>();
+    private final AtomicBoolean switchInProgress = new AtomicBoolean(false);
+    private volatile int switchCount = 0;
+    private volatile double lastSwitchMs = 0;
+
+    // findWorkingAudioRecord 的配置缓存和探测统计（只在 start() 调用线程中更新）
+    private AudioConfigCache audioConfigCache; // 首次使用时创建
+    private int probeAttempts = 0; // 本次探测构造的 AudioRecord 数量
+    private volatile int lastProbeAttempts = 0;
+    private volatile double lastProbeMs = 0;
+    private volatile boolean lastProbeFromCache = false;
+    private volatile int probeCacheHits = 0;
+    private volatile int fullProbes = 0;
+
+    // 采集音频历史（环形缓冲区），识别运行期间有效
+    private int pcmHistoryMs = DEFAULT_PCM_HISTORY_MS;
+    private boolean exportAudioOnDetection = false;
+    private volatile PcmRingBuffer pcmHistory;
+    private volatile long lastDetectionEndSample = -1;
     
-    private AudioRecord audioRecord;
+    // 采集音频源，识别线程只通过 AudioSource 接口读取音频
+    private volatile AudioSource audioSource;
+    private volatile String captureBackend = CAPTURE_AUDIO_RECORD;
     private Thread recognitionThread;
     private AtomicBoolean isRunning = new AtomicBoolean(false);
-    private AtomicBoolean isPaused = new AtomicBoolean(false);
+    private final PauseGate pauseGate = new PauseGate();
+    private volatile double lastResumeLatencyMs = 0;
     
     private String[] keywords = new String[0];
     private float threshold = 0.2f;
-    private int sampleRate = SAMPLE_RATE;
+    private int sampleRate = SAMPLE_RATE; // 当前采集的采样率，start() 时改为设备实际的采样率
+    private int requestedSampleRate = SAMPLE_RATE; // init 时请求的采样率，作为 AudioRecord 配置缓存的键
     private int numThreads = 1;
+    private int chunkMs = DEFAULT_CHUNK_MS;
     private String modelPath;
 
+    // 采集到检测的延迟统计（毫秒）
+    private final Object latencyLock = new Object();
+    private long detectionCount = 0;
+    private double latencySumMs = 0;
+    private double lastLatencyMs = 0;
+    private double maxLatencyMs = 0;
+
+    // 静音门限配置（识别线程启动时创建 EnergyGate）
+    private boolean energyGateEnabled = true;
+    private float energyGateThresholdDb = EnergyGate.DEFAULT_THRESHOLD_DB;
+    private int energyGateHangoverMs = EnergyGate.DEFAULT_HANGOVER_MS;
+    private int energyGatePreRollMs = EnergyGate.DEFAULT_PRE_ROLL_MS;
+    private volatile EnergyGate energyGate;
+
     public interface EventEmitter {
         void emit(String event, JSObject data);
     }
 
+    /**
+     * 异步初始化完成回调（在模型加载线程中调用）
+     */
+    public interface InitCallback {
+        void onComplete(boolean success, String message);
+    }
+
+    /**
+     * 文件回放完成回调（在回放线程中调用）
+     * @param result 回放结果，失败时为 null
+     * @param error 失败原因，成功时为 null
+     */
+    public interface ReplayCallback {
+        void onComplete(JSObject result, String error);
+    }
+
+    /**
+     * 输入设备切换完成回调（在切换线程或识别线程中调用）
+     * @param result 切换结果，失败时为 null
+     * @param error 失败原因，成功时为 null
+     * @param deviceFailed 新设备打开、启动或读取失败（识别状态不允许切换、切换被取消时为 false）
+     */
+    public interface SwitchCallback {
+        void onComplete(JSObject result, String error, boolean deviceFailed);
+    }
+
+    /**
+     * 识别器与其音频流，作为一个整体切换
+     */
+    private static final class KwsEngine {
+        final KeywordSpotter spotter;
+        final OnlineStream stream;
+        final KwsPipeline.Backend backend;
+
+        KwsEngine(KeywordSpotter spotter, OnlineStream stream) {
+            this(spotter, stream, new KwsPipeline.SpotterBackend(spotter, stream));
+        }
+
+        KwsEngine(KeywordSpotter spotter, OnlineStream stream, KwsPipeline.Backend backend) {
+            this.spotter = spotter;
+            this.stream = stream;
+            this.backend = backend;
+        }
+    }
+
     public SherpaOnnxManager(Context context, EventEmitter eventEmitter) {
         this.context = context;
         this.eventEmitter = eventEmitter;
@@ -72,67 +229,226 @@ public class SherpaOnnxManager {
 
     /**
      * 初始化 sherpa-onnx 引擎
+     * 模型在后台线程加载，完成后通过 callback 和 onModelReady 事件通知；
+     * 已有的识别器在新模型就绪前继续工作
+     * @param chunkMs 每次从音频源读取的音频时长（毫秒），限制在 10-100ms
      */
-    public boolean initialize(String modelPath, String[] keywords, int sampleRate, int numThreads, float threshold) {
+    public void initialize(String modelPath, String[] keywords, int sampleRate, int numThreads, float threshold,
+                           int chunkMs, InitCallback callback) {
         this.modelPath = modelPath;
         this.keywords = keywords != null ? keywords : new String[0];
         this.sampleRate = sampleRate;
+        this.requestedSampleRate = sampleRate;
         this.numThreads = numThreads;
         this.threshold = threshold;
+        this.chunkMs = Math.max(MIN_CHUNK_MS, Math.min(MAX_CHUNK_MS, chunkMs));
+        Log.i(TAG, "Capture chunk duration: " + this.chunkMs + "ms");
 
         Log.i(TAG, "Initializing Sherpa-ONNX with built-in keywords from model");
+        loadEngineAsync("init", callback);
+    }
 
-        try {
-            // 1. 加载模型文件（从assets或指定路径）
-            String actualModelPath = modelPath;
-            if (actualModelPath == null || actualModelPath.isEmpty()) {
-                // 从assets加载默认模型目录
-                actualModelPath = copyModelDirectoryToCache("sherpa-onnx-kws-zipformer-wenetspeech-3.3M-2024-01-01-mobile");
-                if (actualModelPath == null) {
-                    throw new Exception("Failed to copy model directory from assets");
+    /**
+     * 在后台线程创建 KeywordSpotter，完成后发布给识别线程
+     * @param reason 加载原因（init），随 onModelReady 事件上报
+     */
+    private void loadEngineAsync(String reason, InitCallback callback) {
+        final String requestedModelPath = this.modelPath;
+        final int targetSampleRate = this.sampleRate;
+        final int threads = this.numThreads;
+        final float spotterThreshold = this.threshold;
+        modelExecutor.execute(() -> {
+            long startNanos = System.nanoTime();
+            KeywordSpotter newSpotter = null;
+            try {
+                // 1. 加载模型文件（从assets或指定路径）
+                String actualModelPath = requestedModelPath;
+                String modelMode = "path";
+                if (actualModelPath == null || actualModelPath.isEmpty()) {
+                    // 从assets加载默认模型目录
+                    actualModelPath = copyModelDirectoryToCache(DEFAULT_MODEL_ASSET_DIR);
+                    if (actualModelPath == null) {
+                        throw new Exception("Failed to copy model directory from assets");
+                    }
+                    modelMode = getModelExtractor(DEFAULT_MODEL_ASSET_DIR).getLastMode();
                 }
-            }
-            
-            Log.i(TAG, "Model path: " + actualModelPath);
-            
-            // 2. 创建 KeywordSpotterConfig
-            KeywordSpotterConfig config = createKeywordSpotterConfig(actualModelPath, this.keywords, this.sampleRate, this.numThreads, this.threshold);
-            
-            // 3. 创建 KeywordSpotter 实例
-            Log.i(TAG, "Creating KeywordSpotter instance...");
-            spotter = new KeywordSpotter(config);
-            
-            if (spotter == null) {
-                throw new Exception("KeywordSpotter creation returned null");
-            }
-            
-            // 4. 创建音频流
-            Log.i(TAG, "Creating audio stream...");
-            stream = spotter.createStream();
-            
-            if (stream == null) {
-                throw new Exception("Stream creation returned null");
-            }
-            
-            Log.i(TAG, "Sherpa-ONNX initialized successfully with model path: " + actualModelPath);
-            emitEvent("onReady", new JSObject());
-            return true;
-        } catch (Exception e) {
-            Log.e(TAG, "Failed to initialize Sherpa-ONNX", e);
-            emitError("INIT_ERROR", "Failed to initialize: " + e.getMessage());
-            
-            // 清理资源
-            stream = null;
-            if (spotter != null) {
-                try {
-                    spotter.release();
-                } catch (Exception ex) {
-                    Log.e(TAG, "Error releasing spotter after init failure", ex);
+                long preparedNanos = System.nanoTime();
+                Log.i(TAG, "Model path: " + actualModelPath);
+
+                // 2-3. 从进程级缓存获取 KeywordSpotter，未命中时按配置创建
+                final String spotterModelPath = actualModelPath;
+                newSpotter = SpotterRegistry.acquire(
+                    new SpotterRegistry.Key(actualModelPath, threads, SpotterRegistry.PROVIDER_CPU),
+                    () -> {
+                        KeywordSpotterConfig config = createKeywordSpotterConfig(
+                            spotterModelPath, this.keywords, threads, spotterThreshold);
+                        Log.i(TAG, "Creating KeywordSpotter instance...");
+                        return new KeywordSpotter(config);
+                    });
+                long builtNanos = System.nanoTime();
+
+                // 4. 加载模型关键词表，按当前关键词和阈值创建音频流
+                KeywordList list = loadKeywordList(actualModelPath);
+                OnlineStream newStream;
+                synchronized (engineLock) {
+                    if (released) {
+                        // shutdownNow 无法中断已经开始的加载：归还引用，不再发布也不再通知插件
+                        Log.i(TAG, "Discarding " + reason + " load finished after release");
+                        SpotterRegistry.release(newSpotter);
+                        return;
+                    }
+                    keywordList = list;
+                    Log.i(TAG, "Creating audio stream...");
+                    newStream = createConfiguredStream(newSpotter);
+                    if (newStream == null) {
+                        throw new Exception("Stream creation returned null");
+                    }
+                    // 本管理器已经持有同一个模型时（例如重复 init），归还这次多取的引用
+                    boolean alreadyHeld = holdsSpotter(newSpotter);
+                    publishEngine(new KwsEngine(newSpotter, newStream));
+                    if (alreadyHeld) {
+                        SpotterRegistry.release(newSpotter);
+                    }
+                }
+                long readyNanos = System.nanoTime();
+
+                double totalMs = (readyNanos - startNanos) / 1_000_000.0;
+                synchronized (readyMsByMode) {
+                    readyMsByMode.put(modelMode, totalMs);
+                }
+                lastModelMode = modelMode;
+                Log.i(TAG, "Sherpa-ONNX " + reason + " load finished (" + targetSampleRate + "Hz, model " + modelMode +
+                    ") in " + String.format("%.1f", totalMs) + "ms, model path: " + actualModelPath);
+
+                JSObject timings = new JSObject();
+                timings.put("reason", reason);
+                timings.put("sampleRate", targetSampleRate);
+                timings.put("modelMode", modelMode);
+                timings.put("prepareMs", (preparedNanos - startNanos) / 1_000_000.0);
+                timings.put("buildMs", (builtNanos - preparedNanos) / 1_000_000.0);
+                timings.put("streamMs", (readyNanos - builtNanos) / 1_000_000.0);
+                timings.put("totalMs", totalMs);
+                timings.put("modelRefs", SpotterRegistry.refCount(newSpotter));
+                emitEvent("onModelReady", timings);
+                if ("init".equals(reason)) {
+                    emitEvent("onReady", new JSObject());
+                }
+                if (callback != null) {
+                    callback.onComplete(true, "Sherpa-ONNX initialized successfully");
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "Failed to load Sherpa-ONNX model (" + reason + ")", e);
+                boolean afterRelease;
+                synchronized (engineLock) {
+                    afterRelease = released;
+                }
+                if (!afterRelease) {
+                    emitError("INIT_ERROR", "Failed to initialize: " + e.getMessage());
+                }
+                // 清理资源，当前识别器（如果有）继续工作
+                if (newSpotter != null) {
+                    try {
+                        SpotterRegistry.release(newSpotter);
+                    } catch (Exception ex) {
+                        Log.e(TAG, "Error releasing spotter after init failure", ex);
+                    }
+                }
+                if (callback != null) {
+                    callback.onComplete(false, "Failed to initialize Sherpa-ONNX: " + e.getMessage());
                 }
-                spotter = null;
             }
-            return false;
+        });
+    }
+
+    /**
+     * 配置静音门限
+     * 在下一次 start() 时生效
+     * @param enabled 是否启用，关闭时所有音频都会送入识别器
+     * @param thresholdDb 打开门限（dBFS）
+     * @param hangoverMs 能量下降后保持打开的时长
+     * @param preRollMs 预录缓冲区时长，避免关键词开头被截断
+     */
+    public void configureEnergyGate(boolean enabled, float thresholdDb, int hangoverMs, int preRollMs) {
+        this.energyGateEnabled = enabled;
+        this.energyGateThresholdDb = thresholdDb;
+        this.energyGateHangoverMs = Math.max(0, hangoverMs);
+        this.energyGatePreRollMs = Math.max(0, preRollMs);
+        Log.i(TAG, "Energy gate: enabled=" + enabled + ", threshold=" + thresholdDb + "dBFS, hangover=" +
+            this.energyGateHangoverMs + "ms, preRoll=" + this.energyGatePreRollMs + "ms");
+    }
+
+    /**
+     * 配置检测去抖
+     * @param refractoryMs 同一关键词两次检测之间的最短间隔（音频时间）
+     * @param perKeywordMs 按关键词单独设置的间隔（可为 null）
+     * @param collectStats 是否在内存中统计每个关键词的检测数据（getDetectionStats）
+     */
+    public void configureDetection(int refractoryMs, Map<String, Integer> perKeywordMs, boolean collectStats) {
+        detectionFilter.configure(refractoryMs, perKeywordMs);
+        detectionStats.setEnabled(collectStats);
+        Log.i(TAG, "Detection refractory window: " + refractoryMs + "ms" +
+            (perKeywordMs != null && !perKeywordMs.isEmpty() ? ", per keyword " + perKeywordMs : ""));
+    }
+
+    /**
+     * 配置采集音频历史
+     * @param historyMs 环形缓冲区保留的音频时长，0 表示关闭
+     * @param exportOnDetection 检测到关键词时把关键词及之后的音频导出为 WAV（onDetectionAudio 事件）
+     */
+    public void configureAudioHistory(int historyMs, boolean exportOnDetection) {
+        this.pcmHistoryMs = Math.max(0, historyMs);
+        this.exportAudioOnDetection = exportOnDetection && this.pcmHistoryMs > 0;
+        Log.i(TAG, "PCM history: " + this.pcmHistoryMs + "ms, export on detection=" + this.exportAudioOnDetection);
+    }
+
+    /**
+     * 从指定样本开始的实时采集音频流（16-bit 小端 PCM，采样率见 getCaptureSampleRate()）
+     * 先返回历史音频，再持续返回新采集的音频，直到流关闭或识别停止；
+     * 可以直接交给下一个识别引擎，唤醒词之后的指令不会因为重新打开麦克风而丢失
+     * @param fromSample 起始样本序号（检测事件中的 endSample 等），早于缓冲区中最早样本时从最早样本开始
+     * @return 音频流，未启用音频历史或识别未运行时返回 null
+     */
+    public PcmRingBuffer.PcmInputStream openCaptureStream(long fromSample) {
+        PcmRingBuffer history = pcmHistory;
+        return history != null ? history.openStream(Math.max(fromSample, history.getOldestSample())) : null;
+    }
+
+    /**
+     * 从最近一次检测到的关键词结束处开始的实时采集音频流
+     * 检测到关键词时会自动通过 CaptureHandoff 交给随后启动的百度 ASR（inputMode=stream）
+     * @param leadMs 在关键词结束前多包含的时长
+     */
+    public PcmRingBuffer.PcmInputStream openCaptureStreamAfterDetection(int leadMs) {
+        long endSample = lastDetectionEndSample;
+        int rate = getCaptureSampleRate();
+        if (endSample < 0 || rate == 0) {
+            return null;
         }
+        return openCaptureStream(endSample - (long) rate * leadMs / 1000);
+    }
+
+    /**
+     * 采集音频的采样率，未运行时返回 0
+     */
+    public int getCaptureSampleRate() {
+        PcmRingBuffer history = pcmHistory;
+        return history != null ? history.getSampleRate() : 0;
+    }
+
+    /**
+     * 把最近 lastMs 毫秒的采集音频导出为 WAV 文件
+     * @return 文件，未启用音频历史或识别未运行时返回 null
+     */
+    public File exportRecentAudio(int lastMs) throws IOException {
+        PcmRingBuffer history = pcmHistory;
+        if (history == null) {
+            return null;
+        }
+        long end = history.getWrittenSamples();
+        long start = end - (long) history.getSampleRate() * lastMs / 1000;
+        File file = newDetectionAudioFile("recent");
+        history.exportWav(start, end, file);
+        return file;
     }
 
     /**
@@ -155,119 +471,72 @@ public class SherpaOnnxManager {
         // Keywords are loaded from model's built-in keywords.txt file
 
         try {
-            // 使用自适应采样率查找可用的AudioRecord配置
-            AudioRecordConfig audioConfig = findWorkingAudioRecord(selectedDevice);
-            if (audioConfig == null) {
-                Log.e(TAG, "Failed to find working AudioRecord configuration");
-                emitError("AUDIO_ERROR", "Failed to find compatible audio configuration");
-                return false;
-            }
-            
-            // 如果采样率发生了变化，需要重新初始化sherpa-onnx引擎
-            if (audioConfig.sampleRate != this.sampleRate) {
-                Log.i(TAG, "Sample rate changed from " + this.sampleRate + "Hz to " + 
-                    audioConfig.sampleRate + "Hz, reinitializing sherpa-onnx...");
-                
-                // 保存当前状态
-                boolean wasInitialized = (spotter != null && stream != null);
-                
-                // 更新采样率
-                int oldSampleRate = this.sampleRate;
-                this.sampleRate = audioConfig.sampleRate;
-                
-                // 重新初始化sherpa-onnx（如果已初始化）
-                if (wasInitialized) {
-                    // 释放旧的stream和spotter
-                    stream = null;
-                    if (spotter != null) {
-                        try {
-                            spotter.release();
-                        } catch (Exception e) {
-                            Log.e(TAG, "Error releasing old spotter", e);
-                        }
-                        spotter = null;
-                    }
-                    
-                    // 重新初始化
-                    String actualModelPath = modelPath;
-                    if (actualModelPath == null || actualModelPath.isEmpty()) {
-                        actualModelPath = copyModelDirectoryToCache("sherpa-onnx-kws-zipformer-wenetspeech-3.3M-2024-01-01-mobile");
-                    }
-                    
-                    if (actualModelPath != null) {
-                        try {
-                            KeywordSpotterConfig config = createKeywordSpotterConfig(
-                                actualModelPath, this.keywords, this.sampleRate, this.numThreads, this.threshold);
-                            spotter = new KeywordSpotter(config);
-                            stream = spotter != null ? spotter.createStream() : null;
-                            
-                            if (spotter != null && stream != null) {
-                                Log.i(TAG, "Sherpa-ONNX reinitialized with new sample rate: " + this.sampleRate + "Hz");
-                            } else {
-                                Log.e(TAG, "Failed to reinitialize sherpa-onnx with new sample rate");
-                                this.sampleRate = oldSampleRate; // 恢复旧采样率
-                                // 释放已创建的AudioRecord
-                                audioConfig.audioRecord.release();
-                                emitError("INIT_ERROR", "Failed to reinitialize with new sample rate");
-                                return false;
-                            }
-                        } catch (Exception e) {
-                            Log.e(TAG, "Failed to reinitialize sherpa-onnx", e);
-                            this.sampleRate = oldSampleRate; // 恢复旧采样率
-                            // 释放已创建的AudioRecord
-                            audioConfig.audioRecord.release();
-                            emitError("INIT_ERROR", "Failed to reinitialize: " + e.getMessage());
-                            return false;
-                        }
-                    } else {
-                        Log.e(TAG, "Cannot reinitialize: model path not available");
-                        this.sampleRate = oldSampleRate; // 恢复旧采样率
-                        // 释放已创建的AudioRecord
-                        audioConfig.audioRecord.release();
-                        emitError("INIT_ERROR", "Model path not available for reinitialization");
-                        return false;
-                    }
+            AudioSource source = null;
+            if (CAPTURE_SHARED.equals(captureBackend)) {
+                SharedCapture shared = SharedCapture.current();
+                if (shared != null && shared.isRunning()) {
+                    source = shared.newReader();
+                } else {
+                    Log.w(TAG, "No shared capture running, falling back to AudioRecord");
                 }
             }
-            
-            // 使用找到的配置创建AudioRecord
-            audioRecord = audioConfig.audioRecord;
-            Log.i(TAG, "Using AudioRecord configuration: " + audioConfig.sampleRate + "Hz, " +
-                "channel=" + audioConfig.channelConfig + ", format=" + audioConfig.audioFormat +
-                ", source=" + audioConfig.audioSource);
-
-            // 设置首选设备（如果指定）
-            if (selectedDevice != null && Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
-                Log.i(TAG, "Setting preferred device: " + selectedDevice.getProductName() + 
-                    " (type=" + selectedDevice.getType() + ", id=" + selectedDevice.getId() + 
-                    ", isSource=" + selectedDevice.isSource() + ")");
-                
-                // 验证设备是否为音频输入源
-                if (!selectedDevice.isSource()) {
-                    Log.e(TAG, "ERROR: Selected device is not an audio input source!");
-                    emitError("DEVICE_ERROR", "Selected device is not an audio input source");
-                    audioRecord.release();
-                    audioRecord = null;
+            if (source == null) {
+                source = openAudioRecordSource(selectedDevice);
+                if (source == null) {
                     return false;
                 }
-                
-                boolean success = audioRecord.setPreferredDevice(selectedDevice);
-                Log.i(TAG, "setPreferredDevice() returned: " + success);
-                
-                if (!success) {
-                    Log.w(TAG, "⚠️ setPreferredDevice() returned false - will use system default routing");
-                }
-            } else if (selectedDevice == null) {
-                Log.i(TAG, "No device specified, using system default microphone");
-            } else {
-                Log.w(TAG, "API level < 23, cannot set preferred device");
             }
+            return startCapture(source, selectedDevice);
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to start recognition", e);
+            emitError("START_ERROR", "Failed to start: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 测试用：在给定的音频源上开始识别（不打开设备）
+     */
+    @VisibleForTesting
+    boolean startWithSource(AudioSource source) {
+        if (isRunning.get()) {
+            Log.w(TAG, "Already running");
+            return false;
+        }
+        return startCapture(source, null);
+    }
+
+    /**
+     * 测试用：用给定的解码后端代替识别器，不加载模型
+     */
+    @VisibleForTesting
+    void useBackendForTest(KwsPipeline.Backend backend) {
+        synchronized (engineLock) {
+            engine = new KwsEngine(null, null, backend);
+        }
+    }
+
+    /**
+     * 在已打开的音频源上启动识别线程，失败时释放音频源
+     */
+    private boolean startCapture(AudioSource source, AudioDeviceInfo selectedDevice) {
+        try {
+            // 识别器配置与采样率无关，acceptWaveform 会按实际采样率重采样，采样率变化时无需重建
+            if (source.getSampleRate() != this.sampleRate) {
+                Log.i(TAG, "Sample rate changed from " + this.sampleRate + "Hz to " +
+                    source.getSampleRate() + "Hz");
+                this.sampleRate = source.getSampleRate();
+            }
+            
+            // 未运行期间发布的识别器直接生效
+            adoptPendingEngine();
 
+            audioSource = source;
             isRunning.set(true);
-            isPaused.set(false);
+            pauseGate.reset();
             
-            Log.i(TAG, "Starting AudioRecord recording...");
-            audioRecord.startRecording();
+            Log.i(TAG, "Starting audio capture (" + source.getClass().getSimpleName() + ")...");
+            source.start();
             
             // 短暂延迟确保录音启动
             try {
@@ -276,33 +545,12 @@ public class SherpaOnnxManager {
                 // Ignore
             }
 
-            // 验证实际使用的设备（Android M+）
-            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
-                AudioDeviceInfo routedDevice = audioRecord.getRoutedDevice();
-                if (routedDevice != null) {
-                    Log.i(TAG, "✓ Actually recording from: " + routedDevice.getProductName() + 
-                        " (type=" + routedDevice.getType() + ", id=" + routedDevice.getId() + ")");
-                    
-                    // 检查是否是我们想要的设备
-                    if (selectedDevice != null) {
-                        if (routedDevice.getId() == selectedDevice.getId()) {
-                            Log.i(TAG, "✓✓ Device routing CONFIRMED - using selected device!");
-                        } else {
-                            Log.w(TAG, "⚠️ Device routing MISMATCH - wanted " + selectedDevice.getProductName() + 
-                                " but got " + routedDevice.getProductName());
-                        }
-                    }
-                } else {
-                    Log.w(TAG, "⚠️ Cannot determine routed device - getRoutedDevice() returned null");
-                }
-                
-                // 检查录音状态
-                int recordingState = audioRecord.getRecordingState();
-                Log.i(TAG, "AudioRecord recording state: " + 
-                    (recordingState == AudioRecord.RECORDSTATE_RECORDING ? "RECORDING" : "NOT_RECORDING"));
+            if (source instanceof AudioRecordSource) {
+                logRoutedDevice((AudioRecordSource) source, selectedDevice);
             }
 
-            recognitionThread = new Thread(this::recognitionLoop);
+            resetLatencyStats();
+            recognitionThread = new Thread(this::recognitionLoop, "SherpaOnnx-Recognition");
             recognitionThread.start();
 
             Log.i(TAG, "Recognition started");
@@ -311,6 +559,307 @@ public class SherpaOnnxManager {
             Log.e(TAG, "Failed to start recognition", e);
             emitError("START_ERROR", "Failed to start: " + e.getMessage());
             isRunning.set(false);
+            audioSource = null;
+            source.close();
+            return false;
+        }
+    }
+
+    public boolean isRunning() {
+        return isRunning.get();
+    }
+
+    /**
+     * 单设备识别运行中时改用指定设备采集（例如选中的 USB 麦克风重新插入后）
+     * 只重开音频源和识别线程，模型和关键词流保持不变；多麦克风模式和共享采集流不处理
+     * @return 是否已在新设备上重新开始
+     */
+    public boolean restartOnDevice(AudioDeviceInfo device) {
+        if (!isRunning.get() || multiSession != null || CAPTURE_SHARED.equals(captureBackend)) {
+            return false;
+        }
+        Log.i(TAG, "Restarting capture on " + (device != null ? device.getProductName() + " (id=" + device.getId() + ")" : "default device"));
+        boolean paused = pauseGate.isPaused();
+        stop();
+        boolean ok = start(device);
+        if (ok && paused) {
+            pause();
+        }
+        return ok;
+    }
+
+    /**
+     * 识别中切换输入设备，识别不中断
+     * 在后台按当前的采样率和音频源打开新设备（不走 findWorkingAudioRecord 的探测，也不重建识别器），
+     * 读到第一块音频后由识别线程在块边界交叉淡化拼接到同一个 OnlineStream，再释放旧的音频源
+     * 只支持单设备的 AudioRecord 采集；暂停或停止时取消
+     * @param device 新的输入设备，null 表示系统默认路由
+     */
+    public void switchInput(AudioDeviceInfo device, SwitchCallback callback) {
+        AudioSource current = audioSource;
+        if (!isRunning.get() || current == null) {
+            callback.onComplete(null, "Recognition is not running", false);
+            return;
+        }
+        if (multiSession != null || CAPTURE_SHARED.equals(captureBackend)) {
+            callback.onComplete(null, "Input switching is not supported in multi-source or shared capture mode", false);
+            return;
+        }
+        if (pauseGate.isPaused()) {
+            callback.onComplete(null, "Recognition is paused", false);
+            return;
+        }
+        if (!switchInProgress.compareAndSet(false, true)) {
+            callback.onComplete(null, "Another input switch is in progress", false);
+            return;
+        }
+        long requestedAt = System.nanoTime();
+        int chunkSamples = Math.max(1, current.getSampleRate() * chunkMs / 1000);
+        switchExecutor.execute(() -> {
+            AudioSource next = null;
+            try {
+                next = openSwitchSource(device, current);
+                if (next == null) {
+                    throw new IOException("Failed to open input at " + current.getSampleRate() + "Hz");
+                }
+                next.start();
+                // 新设备已在出数据后才交给识别线程，识别线程不会在切换时等待设备启动
+                float[] first = new float[chunkSamples];
+                int n = next.read(first, 0, first.length);
+                if (n <= 0) {
+                    throw new IOException("New input produced no audio");
+                }
+                InputSwitch sw = new InputSwitch(next, first, n,
+                    device != null ? device.getId() : 0,
+                    device != null && device.getProductName() != null ? device.getProductName().toString() : "default",
+                    requestedAt, callback);
+                next = null;
+                pendingSwitch.set(sw);
+                if (!isRunning.get() || pauseGate.isPaused()) {
+                    // 发布期间停止/暂停了
+                    cancelPendingSwitch("Recognition stopped or paused during switch");
+                }
+            } catch (Exception e) {
+                Log.w(TAG, "Input switch failed: " + e.getMessage());
+                if (next != null) {
+                    next.close();
+                }
+                switchInProgress.set(false);
+                callback.onComplete(null, e.getMessage(), true);
+            }
+        });
+    }
+
+    /**
+     * 按当前音频源的采样率（和 AudioRecord 的音频源类型）在新设备上打开采集，失败时返回 null
+     */
+    private AudioSource openSwitchSource(AudioDeviceInfo device, AudioSource current) {
+        int rate = current.getSampleRate();
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.M) {
+            return null;
+        }
+        int[] audioSources = current instanceof AudioRecordSource
+            ? new int[]{
+                ((AudioRecordSource) current).getAudioRecord().getAudioSource(),
+                MediaRecorder.AudioSource.VOICE_RECOGNITION,
+                MediaRecorder.AudioSource.MIC,
+                MediaRecorder.AudioSource.DEFAULT}
+            : new int[]{
+                MediaRecorder.AudioSource.VOICE_RECOGNITION,
+                MediaRecorder.AudioSource.MIC,
+                MediaRecorder.AudioSource.DEFAULT};
+        return AudioRecordSource.openRouted(device, rate, audioSources);
+    }
+
+    /**
+     * 识别线程在块边界接管新的音频源：旧设备的最后一块与新设备的第一块交叉淡化后作为本块返回
+     * @return 本块的样本数
+     */
+    private int spliceInput(InputSwitch sw, AudioSource old, float[] buffer) {
+        int oldRead;
+        try {
+            oldRead = old.read(buffer, 0, buffer.length);
+        } catch (IOException e) {
+            // 旧设备已断开，直接拼接
+            oldRead = 0;
+        }
+        int n = InputSwitch.crossfade(buffer, oldRead, sw.firstChunk, Math.min(sw.firstLength, buffer.length));
+        audioSource = sw.source;
+        if (pauseGate.isPaused()) {
+            // 切换时刚好暂停：pause() 可能只停止了旧的音频源
+            sw.source.stop();
+        }
+        switchExecutor.execute(old::close);
+        double switchMs = (System.nanoTime() - sw.requestedAtNanos) / 1_000_000.0;
+        lastSwitchMs = switchMs;
+        switchCount++;
+        switchInProgress.set(false);
+        Log.i(TAG, "Input switched to " + sw.deviceName + " (id=" + sw.deviceId + ") in " +
+            String.format("%.1f", switchMs) + "ms");
+        JSObject result = new JSObject();
+        result.put("ok", true);
+        result.put("deviceId", sw.deviceId);
+        result.put("deviceName", sw.deviceName);
+        result.put("switchMs", switchMs);
+        sw.callback.onComplete(result, null, false);
+        return n;
+    }
+
+    /**
+     * 取消尚未被识别线程接管的切换并释放新的音频源
+     */
+    private void cancelPendingSwitch(String reason) {
+        InputSwitch sw = pendingSwitch.getAndSet(null);
+        if (sw == null) {
+            return;
+        }
+        sw.source.close();
+        switchInProgress.set(false);
+        Log.i(TAG, "Input switch cancelled: " + reason);
+        sw.callback.onComplete(null, reason, false);
+    }
+
+    /**
+     * 选择采集方式
+     * @param backend CAPTURE_AUDIO_RECORD（默认）或 CAPTURE_SHARED；没有共享采集流时回退到 AudioRecord
+     */
+    public void setCaptureBackend(String backend) {
+        if (CAPTURE_SHARED.equals(backend)) {
+            this.captureBackend = backend;
+        } else {
+            this.captureBackend = CAPTURE_AUDIO_RECORD;
+        }
+    }
+
+    /**
+     * 用自适应采样率创建 AudioRecord 并设置首选设备，失败时发送错误并返回 null
+     */
+    private AudioRecordSource openAudioRecordSource(AudioDeviceInfo selectedDevice) {
+        // 使用自适应采样率查找可用的AudioRecord配置
+        AudioRecordConfig audioConfig = findWorkingAudioRecord(selectedDevice);
+        if (audioConfig == null) {
+            Log.e(TAG, "Failed to find working AudioRecord configuration");
+            emitError("AUDIO_ERROR", "Failed to find compatible audio configuration");
+            return null;
+        }
+        AudioRecord recorder = audioConfig.audioRecord;
+        Log.i(TAG, "Using AudioRecord configuration: " + audioConfig.sampleRate + "Hz, " +
+            "channel=" + audioConfig.channelConfig + ", format=" + audioConfig.audioFormat +
+            ", source=" + audioConfig.audioSource);
+
+        // 设置首选设备（如果指定）
+        if (selectedDevice != null && Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            Log.i(TAG, "Setting preferred device: " + selectedDevice.getProductName() + 
+                " (type=" + selectedDevice.getType() + ", id=" + selectedDevice.getId() + 
+                ", isSource=" + selectedDevice.isSource() + ")");
+            
+            // 验证设备是否为音频输入源
+            if (!selectedDevice.isSource()) {
+                Log.e(TAG, "ERROR: Selected device is not an audio input source!");
+                emitError("DEVICE_ERROR", "Selected device is not an audio input source");
+                recorder.release();
+                return null;
+            }
+            
+            boolean success = recorder.setPreferredDevice(selectedDevice);
+            Log.i(TAG, "setPreferredDevice() returned: " + success);
+            
+            if (!success) {
+                Log.w(TAG, "⚠️ setPreferredDevice() returned false - will use system default routing");
+            }
+        } else if (selectedDevice == null) {
+            Log.i(TAG, "No device specified, using system default microphone");
+        } else {
+            Log.w(TAG, "API level < 23, cannot set preferred device");
+        }
+        return new AudioRecordSource(recorder, audioConfig.sampleRate);
+    }
+
+    /**
+     * 验证实际使用的设备（Android M+）
+     */
+    private void logRoutedDevice(AudioRecordSource source, AudioDeviceInfo selectedDevice) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.M) {
+            return;
+        }
+        AudioDeviceInfo routedDevice = source.getRoutedDevice();
+        if (routedDevice != null) {
+            Log.i(TAG, "✓ Actually recording from: " + routedDevice.getProductName() + 
+                " (type=" + routedDevice.getType() + ", id=" + routedDevice.getId() + ")");
+            
+            // 检查是否是我们想要的设备
+            if (selectedDevice != null) {
+                if (routedDevice.getId() == selectedDevice.getId()) {
+                    Log.i(TAG, "✓✓ Device routing CONFIRMED - using selected device!");
+                } else {
+                    Log.w(TAG, "⚠️ Device routing MISMATCH - wanted " + selectedDevice.getProductName() + 
+                        " but got " + routedDevice.getProductName());
+                }
+            }
+        } else {
+            Log.w(TAG, "⚠️ Cannot determine routed device - getRoutedDevice() returned null");
+        }
+        
+        // 检查录音状态
+        Log.i(TAG, "AudioRecord recording state: " + (source.isRecording() ? "RECORDING" : "NOT_RECORDING"));
+    }
+
+    /**
+     * 多麦克风模式：同时在多个输入设备上识别关键词
+     * 每个设备有独立的采集线程和音频流，共用当前的 KeywordSpotter，检测事件带 deviceId
+     * @param devices 输入设备列表
+     */
+    public boolean startMulti(List<AudioDeviceInfo> devices) {
+        if (isRunning.get()) {
+            Log.w(TAG, "Already running");
+            return false;
+        }
+        KwsEngine current = adoptPendingEngine();
+        if (current == null) {
+            emitError("NOT_INITIALIZED", "Sherpa-ONNX is not initialized");
+            return false;
+        }
+
+        MultiSourceSession session = new MultiSourceSession(current.spotter, this::createConfiguredStream,
+            detectionFilter, chunkMs, pauseGate, new MultiSourceSession.Listener() {
+                @Override
+                public void onDetection(int deviceId, String deviceName, KwsPipeline.Detection detection,
+                                        int sourceSampleRate, long anchorEpochMs, long capturedAtNanos) {
+                    reportDetection(detection, sourceSampleRate, anchorEpochMs, capturedAtNanos, deviceId, deviceName);
+                }
+
+                @Override
+                public void onError(String code, String message) {
+                    emitError(code, message);
+                }
+            });
+
+        try {
+            for (AudioDeviceInfo device : devices) {
+                AudioRecordConfig audioConfig = findWorkingAudioRecord(device);
+                if (audioConfig == null) {
+                    throw new Exception("No compatible audio configuration for device " + device.getId());
+                }
+                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M && !audioConfig.audioRecord.setPreferredDevice(device)) {
+                    Log.w(TAG, "setPreferredDevice() returned false for device " + device.getId());
+                }
+                session.addSource(device.getId(), String.valueOf(device.getProductName()),
+                    new AudioRecordSource(audioConfig.audioRecord, audioConfig.sampleRate));
+            }
+
+            isRunning.set(true);
+            pauseGate.reset();
+            resetLatencyStats();
+            multiSession = session;
+            session.start();
+            Log.i(TAG, "Multi-source recognition started on " + devices.size() + " devices");
+            return true;
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to start multi-source recognition", e);
+            emitError("START_ERROR", "Failed to start multi-source: " + e.getMessage());
+            multiSession = null;
+            isRunning.set(false);
+            session.stop();
             return false;
         }
     }
@@ -324,17 +873,21 @@ public class SherpaOnnxManager {
         }
 
         isRunning.set(false);
+        // 唤醒可能阻塞在暂停闸门上的识别线程，让其退出
+        pauseGate.reset();
+
+        MultiSourceSession session = multiSession;
+        if (session != null) {
+            multiSession = null;
+            session.stop();
+        }
         
-        if (audioRecord != null) {
-            try {
-                if (audioRecord.getRecordingState() == AudioRecord.RECORDSTATE_RECORDING) {
-                    audioRecord.stop();
-                }
-                audioRecord.release();
-            } catch (Exception e) {
-                Log.e(TAG, "Error stopping AudioRecord", e);
-            }
-            audioRecord = null;
+        cancelPendingSwitch("Recognition stopped");
+
+        // 先停止采集让阻塞中的 read() 返回，识别线程退出后再释放音频源
+        AudioSource source = audioSource;
+        if (source != null) {
+            source.stop();
         }
 
         if (recognitionThread != null) {
@@ -346,78 +899,230 @@ public class SherpaOnnxManager {
             recognitionThread = null;
         }
 
+        // 识别线程可能在停止前刚切换到新的音频源
+        AudioSource last = audioSource;
+        audioSource = null;
+        if (last != null) {
+            last.close();
+        }
+        if (source != null && source != last) {
+            source.close();
+        }
+
         Log.i(TAG, "Recognition stopped");
     }
 
     /**
      * 暂停识别
+     * 停止采集（避免缓冲区溢出和过期音频），识别线程阻塞等待恢复
      */
     public void pause() {
-        isPaused.set(true);
+        pauseGate.pause();
+        cancelPendingSwitch("Recognition paused");
+        MultiSourceSession session = multiSession;
+        if (session != null) {
+            session.pause();
+        }
+        AudioSource source = audioSource;
+        if (source != null && isRunning.get()) {
+            source.stop();
+        }
         Log.i(TAG, "Recognition paused");
     }
 
     /**
-     * 恢复识别
+     * 恢复识别
+     * 重新开始录音并立即唤醒识别线程
+     */
+    public void resume() {
+        if (!pauseGate.isPaused()) {
+            return;
+        }
+        AudioSource source = audioSource;
+        if (source != null && isRunning.get()) {
+            try {
+                source.start();
+            } catch (Exception e) {
+                Log.e(TAG, "Error restarting audio capture on resume", e);
+            }
+        }
+        MultiSourceSession session = multiSession;
+        if (session != null) {
+            session.resume();
+        }
+        pauseGate.resume();
+        Log.i(TAG, "Recognition resumed");
+    }
+
+    /**
+     * 更新关键词列表
+     * 在现有 KeywordSpotter 上用 createStream(keywords) 新建音频流，不重新加载模型
+     */
+    public boolean updateKeywords(String[] newKeywords) {
+        this.keywords = newKeywords != null ? newKeywords : new String[0];
+        Log.i(TAG, "Keywords updated: " + Arrays.toString(this.keywords));
+        return publishKeywordStream();
+    }
+
+    /**
+     * 设置检测阈值
+     * 阈值以 "#threshold" 的形式写入每个关键词，同样只需新建音频流
+     */
+    public void setThreshold(float threshold) {
+        this.threshold = threshold;
+        if (publishKeywordStream()) {
+            Log.i(TAG, "Threshold updated successfully to: " + threshold);
+        }
+    }
+
+    /**
+     * 按当前关键词和阈值创建新的音频流并交给识别线程
+     * 基于最新的识别器创建，通过 pendingEngine 发布，由识别线程在块边界替换并释放旧流
+     */
+    private boolean publishKeywordStream() {
+        synchronized (engineLock) {
+            if (released) {
+                return false;
+            }
+            KeywordSpotter currentSpotter = latestSpotter();
+            if (currentSpotter == null) {
+                // 尚未初始化，模型加载完成时会使用最新配置
+                return true;
+            }
+            if (this.keywords.length > 0 && buildStreamKeywords().isEmpty()) {
+                Log.e(TAG, "None of the requested keywords exist in the model keyword list");
+                return false;
+            }
+
+            long startNanos = System.nanoTime();
+            try {
+                publishEngine(new KwsEngine(currentSpotter, createConfiguredStream(currentSpotter)));
+                MultiSourceSession session = multiSession;
+                if (session != null) {
+                    session.requestStreamRebuild();
+                }
+                Log.i(TAG, "Keyword stream rebuilt in " +
+                    String.format("%.1f", (System.nanoTime() - startNanos) / 1_000_000.0) + "ms");
+                return true;
+            } catch (Exception e) {
+                Log.e(TAG, "Failed to rebuild keyword stream", e);
+                return false;
+            }
+        }
+    }
+
+    /**
+     * 最新的识别器：优先返回尚未生效的 pendingEngine
+     */
+    private KeywordSpotter latestSpotter() {
+        KwsEngine pending = pendingEngine.get();
+        if (pending != null) {
+            return pending.spotter;
+        }
+        KwsEngine current = engine;
+        return current != null ? current.spotter : null;
+    }
+
+    /**
+     * 发布新的识别器/音频流，覆盖尚未被识别线程取走的那一个
+     * 调用方需持有 engineLock
+     */
+    private void publishEngine(KwsEngine next) {
+        KwsEngine replaced = pendingEngine.getAndSet(next);
+        if (replaced != null) {
+            retireEngine(replaced, next);
+        }
+    }
+
+    /**
+     * 取走 pendingEngine 并替换当前识别器
+     * 只能在识别线程的块边界或识别未运行时调用
+     * @return 当前使用的识别器
+     */
+    private KwsEngine adoptPendingEngine() {
+        if (pendingEngine.get() == null) {
+            return engine;
+        }
+        synchronized (engineLock) {
+            KwsEngine next = pendingEngine.getAndSet(null);
+            if (next != null) {
+                KwsEngine old = engine;
+                engine = next;
+                if (old != null) {
+                    retireEngine(old, next);
+                }
+                Log.d(TAG, "Switched to updated keyword engine");
+            }
+            return engine;
+        }
+    }
+
+    /**
+     * 当前或待切换的识别器是否为该 KeywordSpotter
      */
-    public void resume() {
-        isPaused.set(false);
-        Log.i(TAG, "Recognition resumed");
+    private boolean holdsSpotter(KeywordSpotter spotter) {
+        KwsEngine pending = pendingEngine.get();
+        KwsEngine current = engine;
+        return (pending != null && pending.spotter == spotter) || (current != null && current.spotter == spotter);
     }
 
     /**
-     * 更新关键词列表
+     * 释放被替换的识别器/音频流；识别器仍被继任者使用时只释放音频流
+     * 识别器归还给 SpotterRegistry，其他管理器仍在使用时不会被销毁
      */
-    public boolean updateKeywords(String[] newKeywords) {
-        this.keywords = newKeywords != null ? newKeywords : new String[0];
-        Log.i(TAG, "Keywords updated: " + Arrays.toString(this.keywords));
-        
-        // 更新 spotter 的关键词列表需要重新初始化
-        if (spotter != null && this.keywords.length > 0) {
+    private void retireEngine(KwsEngine old, KwsEngine successor) {
+        releaseStream(old.stream);
+        KwsEngine current = engine;
+        if (old.spotter != successor.spotter && (current == null || old.spotter != current.spotter)) {
             try {
-                String modelPathToUse = this.modelPath != null && !this.modelPath.isEmpty() 
-                    ? this.modelPath 
-                    : copyModelDirectoryToCache("sherpa-onnx-kws-zipformer-wenetspeech-3.3M-2024-01-01-mobile");
-                KeywordSpotterConfig config = createKeywordSpotterConfig(modelPathToUse, this.keywords, this.sampleRate, this.numThreads, this.threshold);
-                
-                // 释放旧的spotter和stream
-                stream = null;
-                spotter = null;
-                // 创建新的spotter和stream
-                spotter = new KeywordSpotter(config);
-                stream = spotter.createStream();
-                Log.i(TAG, "Keywords updated successfully");
+                SpotterRegistry.release(old.spotter);
             } catch (Exception e) {
-                Log.e(TAG, "Failed to update keywords", e);
-                return false;
+                Log.e(TAG, "Error releasing old spotter", e);
             }
         }
-        
-        return true;
     }
 
     /**
-     * 设置检测阈值
+     * 创建带有当前关键词和阈值的音频流
      */
-    public void setThreshold(float threshold) {
-        this.threshold = threshold;
-        // 更新阈值需要重新初始化spotter（如果已初始化）
-        if (spotter != null && this.keywords.length > 0) {
+    private OnlineStream createConfiguredStream(KeywordSpotter keywordSpotter) {
+        String streamKeywords = buildStreamKeywords();
+        if (streamKeywords.isEmpty()) {
+            return keywordSpotter.createStream();
+        }
+        return keywordSpotter.createStream(streamKeywords);
+    }
+
+    private String buildStreamKeywords() {
+        if (keywordList == null) {
+            return "";
+        }
+        List<String> unresolved = new ArrayList<>();
+        String streamKeywords = keywordList.buildStreamKeywords(keywords, threshold, unresolved);
+        if (!unresolved.isEmpty()) {
+            Log.w(TAG, "Keywords not found in model keyword list, ignored: " + unresolved);
+        }
+        return streamKeywords;
+    }
+
+    private KeywordList loadKeywordList(String modelDir) {
+        File keywordsFile = new File(modelDir, "keywords.txt");
+        try {
+            KeywordList list = KeywordList.load(keywordsFile);
+            Log.i(TAG, "Loaded " + list.displayTexts().size() + " model keywords");
+            return list;
+        } catch (Exception e) {
+            Log.w(TAG, "Failed to load keyword list: " + keywordsFile.getAbsolutePath(), e);
+            return null;
+        }
+    }
+
+    private void releaseStream(OnlineStream s) {
+        if (s != null) {
             try {
-                String modelPathToUse = this.modelPath != null && !this.modelPath.isEmpty() 
-                    ? this.modelPath 
-                    : copyModelDirectoryToCache("sherpa-onnx-kws-zipformer-wenetspeech-3.3M-2024-01-01-mobile");
-                KeywordSpotterConfig config = createKeywordSpotterConfig(modelPathToUse, this.keywords, this.sampleRate, this.numThreads, this.threshold);
-                
-                // 释放旧的spotter和stream
-                stream = null;
-                spotter = null;
-                // 创建新的spotter和stream
-                spotter = new KeywordSpotter(config);
-                stream = spotter.createStream();
-                Log.i(TAG, "Threshold updated successfully to: " + threshold);
+                s.release();
             } catch (Exception e) {
-                Log.e(TAG, "Failed to update threshold", e);
+                Log.e(TAG, "Error releasing stream", e);
             }
         }
     }
@@ -428,10 +1133,61 @@ public class SherpaOnnxManager {
     public JSObject getStatus() {
         JSObject status = new JSObject();
         status.put("isRunning", isRunning.get());
-        status.put("isPaused", isPaused.get());
+        status.put("isPaused", pauseGate.isPaused());
+        status.put("resumeLatencyMs", lastResumeLatencyMs);
         status.put("keywordsCount", keywords.length);
         status.put("threshold", threshold);
         status.put("sampleRate", sampleRate);
+        status.put("chunkMs", chunkMs);
+        synchronized (latencyLock) {
+            JSObject latency = new JSObject();
+            latency.put("detections", detectionCount);
+            latency.put("lastMs", lastLatencyMs);
+            latency.put("avgMs", detectionCount > 0 ? latencySumMs / detectionCount : 0);
+            latency.put("maxMs", maxLatencyMs);
+            status.put("latency", latency);
+        }
+        EnergyGate gate = energyGate;
+        JSObject gateStatus = new JSObject();
+        gateStatus.put("enabled", gate != null);
+        gateStatus.put("open", gate == null || gate.isOpen());
+        gateStatus.put("totalChunks", gate != null ? gate.getTotalChunks() : 0);
+        gateStatus.put("decodedChunks", gate != null ? gate.getDecodedChunks() : 0);
+        gateStatus.put("decodeDutyCycle", gate != null ? gate.getDutyCycle() : 1.0);
+        status.put("energyGate", gateStatus);
+        status.put("suppressedDetections", detectionFilter.getSuppressedCount());
+        JSObject modelLoad = new JSObject();
+        modelLoad.put("lastMode", lastModelMode);
+        JSObject readyMs = new JSObject();
+        synchronized (readyMsByMode) {
+            for (Map.Entry<String, Double> e : readyMsByMode.entrySet()) {
+                readyMs.put(e.getKey(), e.getValue());
+            }
+        }
+        modelLoad.put("readyMs", readyMs);
+        status.put("modelLoad", modelLoad);
+        JSObject sharedModel = new JSObject();
+        KwsEngine current = engine;
+        sharedModel.put("refs", current != null ? SpotterRegistry.refCount(current.spotter) : 0);
+        sharedModel.put("loadedModels", SpotterRegistry.loadedModels());
+        status.put("sharedModel", sharedModel);
+        JSObject audioProbe = new JSObject();
+        audioProbe.put("lastAttempts", lastProbeAttempts);
+        audioProbe.put("lastMs", lastProbeMs);
+        audioProbe.put("lastFromCache", lastProbeFromCache);
+        audioProbe.put("cacheHits", probeCacheHits);
+        audioProbe.put("fullProbes", fullProbes);
+        audioProbe.put("cachedDevices", audioConfigCache().size());
+        status.put("audioProbe", audioProbe);
+        JSObject inputSwitch = new JSObject();
+        inputSwitch.put("count", switchCount);
+        inputSwitch.put("lastMs", lastSwitchMs);
+        inputSwitch.put("inProgress", switchInProgress.get());
+        status.put("inputSwitch", inputSwitch);
+        MultiSourceSession session = multiSession;
+        if (session != null) {
+            status.put("sources", session.getStatus());
+        }
         return status;
     }
 
@@ -447,7 +1203,7 @@ public class SherpaOnnxManager {
             // 获取模型目录路径
             String actualModelPath = modelPath;
             if (actualModelPath == null || actualModelPath.isEmpty()) {
-                actualModelPath = copyModelDirectoryToCache("sherpa-onnx-kws-zipformer-wenetspeech-3.3M-2024-01-01-mobile");
+                actualModelPath = copyModelDirectoryToCache(DEFAULT_MODEL_ASSET_DIR);
             }
             
             if (actualModelPath != null) {
@@ -492,7 +1248,7 @@ public class SherpaOnnxManager {
                     // 如果文件不存在，尝试从assets读取
                     try {
                         java.io.InputStream is = context.getAssets().open(
-                            "sherpa-onnx-kws-zipformer-wenetspeech-3.3M-2024-01-01-mobile/keywords.txt");
+                            DEFAULT_MODEL_ASSET_DIR + "/keywords.txt");
                         java.io.BufferedReader reader = new java.io.BufferedReader(
                             new java.io.InputStreamReader(is, "UTF-8"));
                         
@@ -535,12 +1291,38 @@ public class SherpaOnnxManager {
      */
     public void release() {
         stop();
+        synchronized (engineLock) {
+            released = true;
+        }
+        modelExecutor.shutdownNow();
+        // 等待正在进行的加载结束，它看到 released 后会归还自己持有的识别器
+        try {
+            if (!modelExecutor.awaitTermination(5, TimeUnit.SECONDS)) {
+                Log.w(TAG, "Model loader still running after release");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        audioExportExecutor.shutdown();
+        stopReplay();
+        replayExecutor.shutdown();
+        switchExecutor.shutdown();
         // 释放 sherpa-onnx 资源
         try {
-            stream = null;
-            if (spotter != null) {
-                spotter.release();
-                spotter = null;
+            synchronized (engineLock) {
+                KwsEngine pending = pendingEngine.getAndSet(null);
+                KwsEngine current = engine;
+                engine = null;
+                if (pending != null) {
+                    releaseStream(pending.stream);
+                    if (current == null || pending.spotter != current.spotter) {
+                        SpotterRegistry.release(pending.spotter);
+                    }
+                }
+                if (current != null) {
+                    releaseStream(current.stream);
+                    SpotterRegistry.release(current.spotter);
+                }
             }
         } catch (Exception e) {
             Log.e(TAG, "Error releasing spotter", e);
@@ -550,71 +1332,125 @@ public class SherpaOnnxManager {
 
     /**
      * 识别循环
+     * 以 URGENT_AUDIO 优先级运行，每次读取 chunkMs 时长的音频
      */
     private void recognitionLoop() {
-        short[] buffer = new short[4096]; // 16-bit samples
+        try {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_URGENT_AUDIO);
+        } catch (Exception e) {
+            Log.w(TAG, "Failed to set URGENT_AUDIO thread priority: " + e.getMessage());
+        }
+
+        int chunkSamples = Math.max(1, sampleRate * chunkMs / 1000);
+        float[] buffer = new float[chunkSamples];
         int samplesRead;
+        EnergyGate gate = energyGateEnabled
+            ? new EnergyGate(sampleRate, energyGateThresholdDb, energyGateHangoverMs, energyGatePreRollMs)
+            : null;
+        energyGate = gate;
+        detectionFilter.reset();
+        // 转换、门限、解码、时间换算和去抖都在 pipeline 中，与文件回放共用
+        KwsPipeline pipeline = new KwsPipeline(sampleRate, gate, detectionFilter);
+        // 第 0 个样本对应的系统时间（暂停恢复后重新对齐）
+        long anchorEpochMs = -1;
+        PcmRingBuffer history = pcmHistoryMs > 0 ? new PcmRingBuffer(sampleRate, pcmHistoryMs) : null;
+        pcmHistory = history;
+        lastDetectionEndSample = -1;
 
-        Log.i(TAG, "Recognition loop started");
+        Log.i(TAG, "Recognition loop started (chunk=" + chunkMs + "ms, " + chunkSamples + " samples)");
 
         while (isRunning.get()) {
-            if (isPaused.get()) {
-                try {
-                    Thread.sleep(100);
-                } catch (InterruptedException e) {
-                    break;
+            try {
+                if (pauseGate.awaitResumed()) {
+                    if (!isRunning.get()) {
+                        break;
+                    }
+                    // 暂停前的解码状态和预录音频已过期
+                    pipeline.resetForResume();
+                    anchorEpochMs = -1;
                 }
-                continue;
+            } catch (InterruptedException e) {
+                break;
             }
 
-            if (audioRecord == null) {
+            AudioSource source = audioSource;
+            if (source == null) {
                 break;
             }
 
+            // 在块边界切换到新的识别器/关键词流
+            KwsEngine current = adoptPendingEngine();
+            // 在块边界切换到新的输入设备
+            InputSwitch sw = pendingSwitch.getAndSet(null);
+
             try {
-                samplesRead = audioRecord.read(buffer, 0, buffer.length);
+                try {
+                    if (sw != null) {
+                        samplesRead = spliceInput(sw, source, buffer);
+                    } else {
+                        samplesRead = source.read(buffer, 0, buffer.length);
+                    }
+                } catch (IOException e) {
+                    if (!isRunning.get() || pauseGate.isPaused()) {
+                        // 停止/暂停时采集被中断
+                        continue;
+                    }
+                    Log.e(TAG, "Error reading audio", e);
+                    break;
+                }
+                // 块中最后一个样本的采集时间
+                long capturedAtNanos = SystemClock.elapsedRealtimeNanos();
                 
-                if (samplesRead == AudioRecord.ERROR_INVALID_OPERATION || 
-                    samplesRead == AudioRecord.ERROR_BAD_VALUE) {
-                    Log.e(TAG, "Error reading audio");
+                if (samplesRead < 0) {
+                    Log.i(TAG, "Audio source ended");
                     break;
                 }
+                if (samplesRead == 0) {
+                    continue;
+                }
 
-                if (samplesRead > 0) {
-                    // 调用 sherpa-onnx 进行处理
-                    if (spotter != null && stream != null) {
-                        // 转换为 float32（sherpa-onnx 需要 float32）
-                        float[] floatBuffer = new float[samplesRead];
-                        for (int i = 0; i < samplesRead; i++) {
-                            floatBuffer[i] = buffer[i] / 32768.0f;
-                        }
-                        
-                        // 处理音频数据 - 使用stream的acceptWaveform
-                        stream.acceptWaveform(floatBuffer, sampleRate);
-                        
-                        // 检查是否检测到关键词
-                        while (spotter.isReady(stream)) {
-                            spotter.decode(stream);
-                        }
-                        
-                        // 获取检测结果
-                        KeywordSpotterResult result = spotter.getResult(stream);
-                        if (result != null) {
-                            String text = result.getKeyword();
-                            if (text != null && !text.isEmpty()) {
-                                // 触发关键词检测事件
-                                JSObject eventData = new JSObject();
-                                eventData.put("keyword", text);
-                                eventData.put("confidence", 1.0f);
-                                eventData.put("timestamp", System.currentTimeMillis());
-                                emitEvent("onKeywordDetected", eventData);
-                                
-                                Log.d(TAG, "Keyword detected: " + text);
-                            }
-                        }
-                    } else {
-                        // spotter未初始化，使用模拟处理
-                        processAudioMock(buffer, samplesRead);
+                long chunkStartSample = pipeline.getCaptureSamples();
+                if (history != null) {
+                    history.write(buffer, samplesRead);
+                }
+                if (anchorEpochMs < 0) {
+                    anchorEpochMs = System.currentTimeMillis()
+                        - (chunkStartSample + samplesRead) * 1000 / sampleRate;
+                }
+                long resumedAt = pauseGate.consumeResumeTimestamp();
+                if (resumedAt != 0) {
+                    lastResumeLatencyMs = (System.nanoTime() - resumedAt) / 1_000_000.0;
+                    Log.i(TAG, "First chunk after resume in " +
+                        String.format("%.1f", lastResumeLatencyMs) + "ms");
+                }
+
+                if (current == null) {
+                    // spotter未初始化，使用模拟处理（pipeline 只推进采样计数）
+                    pipeline.setBackend(null);
+                    pipeline.process(buffer, samplesRead);
+                    processAudioMock(buffer, samplesRead);
+                    continue;
+                }
+                pipeline.setBackend(current.backend);
+                KwsPipeline.Detection detection = pipeline.process(buffer, samplesRead);
+                if (detection == null) {
+                    continue;
+                }
+                if (!reportDetection(detection, sampleRate, anchorEpochMs, capturedAtNanos, null, null)) {
+                    continue;
+                }
+                String text = detection.keyword;
+                long captureSamples = detection.processedSamples;
+
+                lastDetectionEndSample = detection.endSample >= 0 ? detection.endSample : captureSamples;
+                if (history != null) {
+                    // 关键词之后的音频交给随后启动的识别引擎（例如百度 ASR 的 stream 输入）
+                    CaptureHandoff.offer(openCaptureStreamAfterDetection(ASR_HANDOFF_LEAD_MS));
+                    if (exportAudioOnDetection) {
+                        exportDetectionAudio(history, text,
+                            (detection.startSample >= 0 ? detection.startSample : chunkStartSample)
+                                - (long) sampleRate * DETECTION_AUDIO_LEAD_MS / 1000,
+                            captureSamples);
                     }
                 }
             } catch (Exception e) {
@@ -623,13 +1459,278 @@ public class SherpaOnnxManager {
             }
         }
 
+        if (history != null) {
+            // 结束所有还在等待新音频的读取
+            pcmHistory = null;
+            history.close();
+        }
         Log.i(TAG, "Recognition loop ended");
     }
 
+    /**
+     * 上报一次检测：更新检测统计和延迟，命中命令表时执行原生动作并发送 onCommand，否则发送 onKeywordDetected
+     * 单麦克风和多麦克风模式共用，事件时间都由采样计数推算
+     * @param anchorEpochMs 第 0 个样本对应的系统时间
+     * @param capturedAtNanos 检测所在块最后一个样本的采集时间
+     * @param deviceId 多麦克风模式下的来源设备，单麦克风模式为 null
+     * @return false 表示处于不应期内，未上报
+     */
+    private boolean reportDetection(KwsPipeline.Detection detection, int sampleRate, long anchorEpochMs,
+                                    long capturedAtNanos, Integer deviceId, String deviceName) {
+        String text = detection.keyword;
+        String from = deviceId != null ? " on device " + deviceId : "";
+        if (detection.suppressed) {
+            detectionStats.recordSuppressed(text);
+            Log.d(TAG, "Keyword suppressed within refractory window" + from + ": " + text);
+            return false;
+        }
+        long audioStartMs = detection.audioStartMs;
+        long audioEndMs = detection.audioEndMs;
+        float thresholdInEffect = threshold;
+        detectionStats.recordDetection(text, audioEndMs - audioStartMs, thresholdInEffect);
+
+        double latencyMs = detectionLatencyMs(detection, sampleRate, capturedAtNanos);
+        recordLatency(latencyMs);
+
+        if (emitCommand(text, anchorEpochMs + audioEndMs, latencyMs, deviceId)) {
+            JSObject eventData = new JSObject();
+            eventData.put("keyword", text);
+            // sherpa-onnx 的检测结果不带分数，confidence 保持 1.0 以兼容旧版本，
+            // 并通过 scoreAvailable 标明
+            eventData.put("confidence", 1.0f);
+            eventData.put("scoreAvailable", false);
+            eventData.put("threshold", thresholdInEffect);
+            eventData.put("tokens", toJSArray(detection.tokens));
+            eventData.put("tokenTimestamps", toJSArray(detection.tokenTimestamps));
+            eventData.put("startSample", detection.startSample);
+            eventData.put("endSample", detection.endSample);
+            eventData.put("sampleRate", sampleRate);
+            // 时间由采样计数推算，而不是事件发送时的系统时间
+            eventData.put("timestamp", anchorEpochMs + audioEndMs);
+            eventData.put("startTime", anchorEpochMs + audioStartMs);
+            eventData.put("endTime", anchorEpochMs + audioEndMs);
+            eventData.put("audioStartMs", audioStartMs);
+            eventData.put("audioEndMs", audioEndMs);
+            eventData.put("latencyMs", latencyMs);
+            if (deviceId != null) {
+                eventData.put("deviceId", deviceId);
+                eventData.put("deviceName", deviceName);
+            }
+            emitEvent("onKeywordDetected", eventData);
+        }
+
+        Log.d(TAG, "Keyword detected" + from + ": " + text + " (latency " +
+            String.format("%.1f", latencyMs) + "ms)");
+        return true;
+    }
+
+    /**
+     * 在后台把检测到的关键词及其后的音频导出为 WAV，完成后发送 onDetectionAudio
+     */
+    private void exportDetectionAudio(PcmRingBuffer history, String keyword, long fromSample, long toSample) {
+        audioExportExecutor.execute(() -> {
+            try {
+                File file = newDetectionAudioFile("kws");
+                int samples = history.exportWav(fromSample, toSample, file);
+                JSObject data = new JSObject();
+                data.put("keyword", keyword);
+                data.put("file", file.getAbsolutePath());
+                data.put("startSample", Math.max(fromSample, 0));
+                data.put("endSample", toSample);
+                data.put("sampleRate", history.getSampleRate());
+                data.put("durationMs", samples * 1000L / history.getSampleRate());
+                emitEvent("onDetectionAudio", data);
+            } catch (Exception e) {
+                Log.e(TAG, "Failed to export detection audio", e);
+            }
+        });
+    }
+
+    /**
+     * 在缓存目录中新建检测音频文件，只保留最近的 MAX_DETECTION_AUDIO_FILES 个
+     */
+    private File newDetectionAudioFile(String prefix) {
+        File dir = new File(context.getCacheDir(), "kws-audio");
+        if (!dir.isDirectory()) {
+            dir.mkdirs();
+        }
+        File[] existing = dir.listFiles();
+        if (existing != null && existing.length >= MAX_DETECTION_AUDIO_FILES) {
+            Arrays.sort(existing, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+            for (int i = 0; i <= existing.length - MAX_DETECTION_AUDIO_FILES; i++) {
+                existing[i].delete();
+            }
+        }
+        return new File(dir, prefix + "-" + System.currentTimeMillis() + ".wav");
+    }
+
+    private static JSArray toJSArray(String[] values) {
+        JSArray array = new JSArray();
+        if (values != null) {
+            for (String v : values) {
+                array.put(v);
+            }
+        }
+        return array;
+    }
+
+    private static JSArray toJSArray(float[] values) {
+        JSArray array = new JSArray();
+        if (values != null) {
+            for (float v : values) {
+                array.put(Double.valueOf(v));
+            }
+        }
+        return array;
+    }
+
+    /**
+     * 离线回放 WAV / 裸 PCM 文件，与实时识别使用相同的 KwsPipeline（转换、静音门限、解码、去抖）
+     * 使用当前识别器上新建的音频流，可以与实时识别同时进行；每次检测发送 onReplayDetection
+     * @param path 文件路径
+     * @param realtime true 按音频时长节奏送入，false 尽快处理（用于测量解码实时率）
+     * @param rawSampleRate 裸 PCM 文件的采样率，WAV 文件忽略
+     * @return false 表示模型未初始化或已有回放在进行
+     */
+    public boolean replayFile(String path, boolean realtime, int rawSampleRate, ReplayCallback callback) {
+        KeywordSpotter spotter;
+        synchronized (engineLock) {
+            spotter = latestSpotter();
+            // 持有一个引用，回放期间识别器被替换也不会被销毁
+            if (spotter == null || !SpotterRegistry.retain(spotter)) {
+                Log.w(TAG, "Cannot replay: model not initialized");
+                return false;
+            }
+        }
+        if (!replayRunning.compareAndSet(false, true)) {
+            SpotterRegistry.release(spotter);
+            Log.w(TAG, "Cannot replay: another replay is running");
+            return false;
+        }
+        replayExecutor.execute(() -> runReplay(spotter, new File(path), realtime, rawSampleRate, callback));
+        return true;
+    }
+
+    /**
+     * 停止正在进行的回放，已得到的结果仍会通过回调返回
+     */
+    public void stopReplay() {
+        KwsReplay replay = activeReplay;
+        if (replay != null) {
+            replay.cancel();
+        }
+    }
+
+    private void runReplay(KeywordSpotter spotter, File file, boolean realtime, int rawSampleRate,
+                           ReplayCallback callback) {
+        OnlineStream stream = null;
+        try (FileAudioSource source = FileAudioSource.open(file, rawSampleRate)) {
+            stream = createConfiguredStream(spotter);
+            int fileRate = source.getSampleRate();
+            EnergyGate gate = energyGateEnabled
+                ? new EnergyGate(fileRate, energyGateThresholdDb, energyGateHangoverMs, energyGatePreRollMs)
+                : null;
+            KwsPipeline pipeline = new KwsPipeline(fileRate, gate, detectionFilter.copyConfig());
+            pipeline.setBackend(new KwsPipeline.SpotterBackend(spotter, stream));
+            KwsReplay replay = new KwsReplay(pipeline, chunkMs, realtime);
+            activeReplay = replay;
+
+            Log.i(TAG, "Replaying " + file + " (" + fileRate + "Hz, " + source.getChannels() + "ch, " +
+                (realtime ? "realtime" : "fast") + ")");
+            KwsReplay.Result result = replay.run(source, detection -> {
+                JSObject data = toDetectionJSObject(detection, fileRate);
+                data.put("file", file.getAbsolutePath());
+                emitEvent("onReplayDetection", data);
+            });
+
+            JSObject ret = new JSObject();
+            ret.put("file", file.getAbsolutePath());
+            ret.put("sampleRate", result.sampleRate);
+            ret.put("realtime", realtime);
+            ret.put("cancelled", result.cancelled);
+            ret.put("audioMs", result.audioMs);
+            ret.put("processMs", result.processMs);
+            ret.put("wallMs", result.wallMs);
+            ret.put("rtf", result.getRealTimeFactor());
+            ret.put("suppressed", result.suppressed);
+            JSArray detections = new JSArray();
+            for (KwsPipeline.Detection detection : result.detections) {
+                detections.put(toDetectionJSObject(detection, fileRate));
+            }
+            ret.put("detections", detections);
+            Log.i(TAG, "Replay finished: " + result.detections.size() + " detections in " + result.audioMs +
+                "ms of audio, RTF " + String.format("%.3f", result.getRealTimeFactor()));
+            callback.onComplete(ret, null);
+        } catch (Exception e) {
+            Log.e(TAG, "Replay failed: " + file, e);
+            callback.onComplete(null, e.getMessage());
+        } finally {
+            activeReplay = null;
+            if (stream != null) {
+                releaseStream(stream);
+            }
+            SpotterRegistry.release(spotter);
+            replayRunning.set(false);
+        }
+    }
+
+    private static JSObject toDetectionJSObject(KwsPipeline.Detection detection, int sampleRate) {
+        JSObject data = new JSObject();
+        data.put("keyword", detection.keyword);
+        data.put("tokens", toJSArray(detection.tokens));
+        data.put("tokenTimestamps", toJSArray(detection.tokenTimestamps));
+        data.put("startSample", detection.startSample);
+        data.put("endSample", detection.endSample);
+        data.put("sampleRate", sampleRate);
+        data.put("audioStartMs", detection.audioStartMs);
+        data.put("audioEndMs", detection.audioEndMs);
+        return data;
+    }
+
+    /**
+     * 获取按关键词统计的检测数据
+     */
+    public JSObject getDetectionStats() {
+        return detectionStats.toJSObject();
+    }
+
+    public void resetDetectionStats() {
+        detectionStats.reset();
+    }
+
+    /**
+     * 关键词结束到得出检测结果的延迟：
+     * 关键词结束后已采集的音频时长（采样时钟，检测块中关键词之后的部分）+ 读取返回到现在的处理耗时
+     * @param capturedAtNanos 检测块读取返回时的 elapsedRealtimeNanos（块中最后一个样本的采集时间）
+     */
+    static double detectionLatencyMs(KwsPipeline.Detection detection, int sampleRate, long capturedAtNanos) {
+        long endSample = detection.endSample >= 0 ? detection.endSample : detection.processedSamples;
+        double bufferedMs = Math.max(0, detection.processedSamples - endSample) * 1000.0 / sampleRate;
+        return bufferedMs + (SystemClock.elapsedRealtimeNanos() - capturedAtNanos) / 1_000_000.0;
+    }
+
+    private void recordLatency(double latencyMs) {
+        synchronized (latencyLock) {
+            detectionCount++;
+            latencySumMs += latencyMs;
+            lastLatencyMs = latencyMs;
+            maxLatencyMs = Math.max(maxLatencyMs, latencyMs);
+        }
+    }
+
+    private void resetLatencyStats() {
+        synchronized (latencyLock) {
+            detectionCount = 0;
+            latencySumMs = 0;
+            lastLatencyMs = 0;
+            maxLatencyMs = 0;
+        }
+    }
+
     /**
      * 模拟音频处理（仅用于测试，实际使用时需要移除）
      */
-    private void processAudioMock(short[] buffer, int samplesRead) {
+    private void processAudioMock(float[] buffer, int samplesRead) {
         // 这是一个占位实现，实际使用时需要替换为真实的 sherpa-onnx 调用
         // 当前不做任何处理，只是保持循环运行
     }
@@ -666,139 +1767,40 @@ public class SherpaOnnxManager {
         }
     }
 
-    /**
-     * 从 assets 复制单个文件到目标目录
-     * @param assetDir assets 中的目录路径
-     * @param filename 要复制的文件名
-     * @param targetDir 目标目录
-     * @return 成功返回 true，失败返回 false
-     */
-    private boolean copySingleFileFromAssets(String assetDir, String filename, File targetDir) {
-        try {
-            String assetPath = assetDir + "/" + filename;
-            File outputFile = new File(targetDir, filename);
-            
-            InputStream is = context.getAssets().open(assetPath);
-            FileOutputStream fos = new FileOutputStream(outputFile);
-            
-            byte[] buffer = new byte[8192];
-            int bytesRead;
-            while ((bytesRead = is.read(buffer)) != -1) {
-                fos.write(buffer, 0, bytesRead);
-            }
-            
-            fos.close();
-            is.close();
-            
-            return true;
-        } catch (Exception e) {
-            Log.w(TAG, "Failed to copy file from assets: " + filename, e);
-            return false;
-        }
+    private ModelExtractor getModelExtractor(String assetDir) {
+        return ModelExtractor.forAssetDir(context, assetDir);
     }
 
     /**
      * 从 assets 复制整个模型目录到缓存目录
+     * 由 ModelExtractor 根据清单增量复制，缓存有效时不访问 assets；需要复制时发送 onModelProgress 事件
      * @param assetDir 模型目录在assets中的路径
      * @return 缓存目录中的模型目录路径，失败返回null
      */
     private String copyModelDirectoryToCache(String assetDir) {
         try {
-            File cacheDir = context.getCacheDir();
-            File modelDir = new File(cacheDir, assetDir);
-            
-            // 需要始终更新的可编辑配置文件
-            String[] editableFiles = {"keywords.txt", "keywords_raw.txt"};
-            
-            // 如果目录已存在，检查关键文件是否存在
-            if (modelDir.exists()) {
-                File encoderFile = new File(modelDir, "encoder-epoch-12-avg-2-chunk-16-left-64.onnx");
-                File decoderFile = new File(modelDir, "decoder-epoch-12-avg-2-chunk-16-left-64.onnx");
-                File joinerFile = new File(modelDir, "joiner-epoch-12-avg-2-chunk-16-left-64.int8.onnx");
-                File tokensFile = new File(modelDir, "tokens.txt");
-                
-                if (encoderFile.exists() && decoderFile.exists() && joinerFile.exists() && tokensFile.exists()) {
-                    Log.i(TAG, "Model directory already exists: " + modelDir.getAbsolutePath());
-                    
-                    // 即使目录已存在，也要更新可编辑的配置文件（如 keywords.txt 和 keywords_raw.txt）
-                    // 这样可以确保用户修改了 assets 中的文件后，更改会被同步到缓存目录
-                    for (String filename : editableFiles) {
-                        try {
-                            if (copySingleFileFromAssets(assetDir, filename, modelDir)) {
-                                Log.d(TAG, "Updated editable file: " + filename);
-                            }
-                        } catch (Exception e) {
-                            // 如果文件不存在于 assets 中，忽略错误（某些文件可能不存在）
-                            Log.d(TAG, "File not found in assets (may not exist): " + filename);
-                        }
-                    }
-                    
-                    return modelDir.getAbsolutePath();
-                } else {
-                    // 文件不完整，删除目录重新复制
-                    deleteDirectory(modelDir);
-                }
-            }
-            
-            // 创建目标目录
-            if (!modelDir.mkdirs()) {
-                Log.e(TAG, "Failed to create model directory: " + modelDir.getAbsolutePath());
-                return null;
-            }
-            
-            // 列出assets目录中的所有文件
-            String[] files = context.getAssets().list(assetDir);
-            if (files == null || files.length == 0) {
-                Log.e(TAG, "Asset directory is empty or not found: " + assetDir);
-                return null;
-            }
-            
-            Log.i(TAG, "Copying model files from assets...");
-            int copiedCount = 0;
-            
-            // 复制所有文件
-            for (String filename : files) {
-                if (copySingleFileFromAssets(assetDir, filename, modelDir)) {
-                    copiedCount++;
-                    Log.d(TAG, "Copied: " + filename);
-                } else {
-                    Log.w(TAG, "Failed to copy file: " + filename);
-                    // 继续复制其他文件
-                }
-            }
-            
-            Log.i(TAG, "Copied " + copiedCount + " files to: " + modelDir.getAbsolutePath());
-            return modelDir.getAbsolutePath();
+            long startNanos = System.nanoTime();
+            // 首次解压时上报进度，UI 可据此显示首启准备时间
+            return getModelExtractor(assetDir).extract((file, filesDone, filesTotal, bytesCopied) -> {
+                JSObject progress = new JSObject();
+                progress.put("file", file);
+                progress.put("filesDone", filesDone);
+                progress.put("filesTotal", filesTotal);
+                progress.put("bytesCopied", bytesCopied);
+                progress.put("elapsedMs", (System.nanoTime() - startNanos) / 1_000_000.0);
+                emitEvent("onModelProgress", progress);
+            }).getAbsolutePath();
         } catch (Exception e) {
             Log.e(TAG, "Failed to copy model directory: " + assetDir, e);
             return null;
         }
     }
 
-    /**
-     * 递归删除目录
-     */
-    private void deleteDirectory(File directory) {
-        if (directory.exists()) {
-            File[] files = directory.listFiles();
-            if (files != null) {
-                for (File file : files) {
-                    if (file.isDirectory()) {
-                        deleteDirectory(file);
-                    } else {
-                        file.delete();
-                    }
-                }
-            }
-            directory.delete();
-        }
-    }
-
     /**
      * 创建 KeywordSpotterConfig
      * 根据sherpa-onnx的API结构正确配置，使用Builder模式
      */
-    private KeywordSpotterConfig createKeywordSpotterConfig(String modelDir, String[] keywords, int sampleRate, int numThreads, float threshold) throws Exception {
+    private KeywordSpotterConfig createKeywordSpotterConfig(String modelDir, String[] keywords, int numThreads, float threshold) throws Exception {
         // 设置模型文件路径
         File modelDirFile = new File(modelDir);
         String encoderPath = new File(modelDirFile, "encoder-epoch-12-avg-2-chunk-16-left-64.onnx").getAbsolutePath();
@@ -845,6 +1847,7 @@ public class SherpaOnnxManager {
             .setTransducer(transducerConfig)
             .setTokens(tokensPath)
             .setNumThreads(numThreads)
+            .setProvider(SpotterRegistry.PROVIDER_CPU)
             .setDebug(false)
             .build();
         
@@ -927,6 +1930,27 @@ public class SherpaOnnxManager {
         return result.toString();
     }
 
+    /**
+     * 关键词在命令表中时执行命令的原生动作并发送 onCommand
+     * @return 是否还需要发送 onKeywordDetected
+     */
+    private boolean emitCommand(String keyword, long timestamp, double latencyMs, Integer deviceId) {
+        CommandRegistry commands = CommandRegistry.getInstance();
+        Command command = commands.resolve(keyword);
+        if (command == null) {
+            return true;
+        }
+        JSObject event = commands.dispatch(command, keyword, "kws");
+        event.put("timestamp", timestamp);
+        event.put("latencyMs", latencyMs);
+        if (deviceId != null) {
+            event.put("deviceId", deviceId);
+        }
+        emitEvent("onCommand", event);
+        Log.d(TAG, "Command " + command.id + " from keyword " + keyword);
+        return !commands.isSuppressKeywordEvents();
+    }
+
     private void emitEvent(String event, JSObject data) {
         if (eventEmitter != null) {
             eventEmitter.emit(event, data);
@@ -960,13 +1984,74 @@ public class SherpaOnnxManager {
         }
     }
     
+    private synchronized AudioConfigCache audioConfigCache() {
+        if (audioConfigCache == null) {
+            audioConfigCache = new AudioConfigCache(context);
+        }
+        return audioConfigCache;
+    }
+
+    /**
+     * 清空 AudioRecord 配置缓存，下次 start() 重新完整探测
+     */
+    public void clearAudioConfigCache() {
+        audioConfigCache().clear();
+        Log.i(TAG, "AudioRecord configuration cache cleared");
+    }
+
     /**
      * 查找可用的AudioRecord配置（自适应采样率）
-     * 参考用户提供的代码，遍历不同的采样率、通道配置和音频格式
+     * 先试该设备缓存的配置，失败时才遍历不同的采样率、通道配置、音频格式和音频源，并缓存第一个可用的配置
      * @param selectedDevice 选定的音频输入设备，null 表示使用默认设备
      * @return 找到的AudioRecord配置，失败返回null
      */
     private AudioRecordConfig findWorkingAudioRecord(AudioDeviceInfo selectedDevice) {
+        long startNanos = System.nanoTime();
+        probeAttempts = 0;
+        String cacheKey = AudioConfigCache.keyOf(selectedDevice != null && Build.VERSION.SDK_INT >= Build.VERSION_CODES.M
+            ? DeviceRegistry.get(context).stableIdOf(selectedDevice) : "default", requestedSampleRate);
+
+        int[] cached = audioConfigCache().get(cacheKey);
+        if (cached != null && (cached[1] != AudioFormat.CHANNEL_IN_MONO || cached[2] != AudioFormat.ENCODING_PCM_16BIT)) {
+            // 旧版本可能缓存了立体声或 8-bit 配置，AudioRecordSource 只能读取 16-bit 单声道
+            Log.w(TAG, "Dropping cached non-mono/16-bit AudioRecord configuration for " + cacheKey);
+            audioConfigCache().remove(cacheKey);
+            cached = null;
+        }
+        if (cached != null) {
+            AudioRecordConfig config = tryAudioRecordConfig(cached[0], cached[1], cached[2], cached[3], selectedDevice);
+            if (config != null) {
+                probeCacheHits++;
+                recordProbe(true, startNanos);
+                return config;
+            }
+            Log.w(TAG, "Cached AudioRecord configuration for " + cacheKey + " no longer works, probing again");
+            audioConfigCache().remove(cacheKey);
+        }
+
+        AudioRecordConfig config = probeAudioRecord(selectedDevice);
+        fullProbes++;
+        recordProbe(false, startNanos);
+        if (config != null) {
+            audioConfigCache().put(cacheKey, config.sampleRate, config.channelConfig, config.audioFormat,
+                config.audioSource);
+        }
+        return config;
+    }
+
+    private void recordProbe(boolean fromCache, long startNanos) {
+        lastProbeAttempts = probeAttempts;
+        lastProbeMs = (System.nanoTime() - startNanos) / 1_000_000.0;
+        lastProbeFromCache = fromCache;
+        Log.i(TAG, "AudioRecord probe: " + probeAttempts + " instance(s) in " +
+            String.format("%.1f", lastProbeMs) + "ms" + (fromCache ? " (cached configuration)" : ""));
+    }
+
+    /**
+     * 完整探测：遍历采样率和音频源的组合
+     * 只尝试 16-bit 单声道：AudioRecordSource 按 16-bit 单声道读取，其他格式即使能打开也无法正确解码
+     */
+    private AudioRecordConfig probeAudioRecord(AudioDeviceInfo selectedDevice) {
         // 优先尝试的音频源（按优先级排序）
         int[] audioSources = {
             MediaRecorder.AudioSource.VOICE_RECOGNITION,  // 专为语音识别优化
@@ -977,66 +2062,21 @@ public class SherpaOnnxManager {
         
         // 优先尝试用户指定的采样率，如果没有找到再尝试其他采样率
         int[] candidateSampleRates = new int[SAMPLE_RATES.length + 1];
-        candidateSampleRates[0] = this.sampleRate; // 将用户指定的采样率放在首位
+        candidateSampleRates[0] = requestedSampleRate; // 将用户指定的采样率放在首位
         System.arraycopy(SAMPLE_RATES, 0, candidateSampleRates, 1, SAMPLE_RATES.length);
         
         // 遍历所有配置组合
+        int channelConfig = AudioFormat.CHANNEL_IN_MONO;
+        int audioFormat = AudioFormat.ENCODING_PCM_16BIT;
         for (int sampleRate : candidateSampleRates) {
-            for (short channelConfig : new short[] {
-                AudioFormat.CHANNEL_IN_MONO,
-                AudioFormat.CHANNEL_IN_STEREO
-            }) {
-                for (short audioFormat : new short[] {
-                    AudioFormat.ENCODING_PCM_16BIT,
-                    AudioFormat.ENCODING_PCM_8BIT
-                }) {
-                    for (int audioSource : audioSources) {
-                        try {
-                            int bufferSize = AudioRecord.getMinBufferSize(
-                                sampleRate, channelConfig, audioFormat
-                            );
-                            
-                            if (bufferSize == AudioRecord.ERROR_BAD_VALUE || 
-                                bufferSize == AudioRecord.ERROR) {
-                                continue; // 此配置不可用，尝试下一个
-                            }
-                            
-                            bufferSize *= BUFFER_SIZE_FACTOR;
-                            
-                            AudioRecord recorder = new AudioRecord(
-                                audioSource,
-                                sampleRate,
-                                channelConfig,
-                                audioFormat,
-                                bufferSize
-                            );
-                            
-                            if (recorder.getState() == AudioRecord.STATE_INITIALIZED) {
-                                // 验证设备兼容性（如果指定了设备）
-                                if (selectedDevice != null && Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
-                                    if (!selectedDevice.isSource()) {
-                                        recorder.release();
-                                        continue; // 设备不是输入源，跳过
-                                    }
-                                    // 注意：不在这里设置设备，让start方法在创建后统一设置
-                                }
-                                
-                                Log.i(TAG, "✓ Found working AudioRecord configuration: " + 
-                                    sampleRate + "Hz, channel=" + channelConfig + 
-                                    ", format=" + audioFormat + ", source=" + audioSource);
-                                
-                                return new AudioRecordConfig(recorder, sampleRate, 
-                                    channelConfig, audioFormat, audioSource);
-                            } else {
-                                recorder.release();
-                            }
-                        } catch (Exception e) {
-                            // 继续尝试下一个配置
-                            Log.d(TAG, "Exception trying configuration: " + sampleRate + 
-                                "Hz, channel=" + channelConfig + ", format=" + audioFormat + 
-                                ", source=" + audioSource + ": " + e.getMessage());
-                        }
-                    }
+            for (int audioSource : audioSources) {
+                AudioRecordConfig config = tryAudioRecordConfig(sampleRate, channelConfig, audioFormat,
+                    audioSource, selectedDevice);
+                if (config != null) {
+                    Log.i(TAG, "✓ Found working AudioRecord configuration: " +
+                        sampleRate + "Hz, channel=" + channelConfig +
+                        ", format=" + audioFormat + ", source=" + audioSource);
+                    return config;
                 }
             }
         }
@@ -1044,5 +2084,54 @@ public class SherpaOnnxManager {
         Log.e(TAG, "✗ Failed to find any working AudioRecord configuration");
         return null;
     }
+
+    /**
+     * 用一组参数构造 AudioRecord，初始化成功时返回配置，否则释放并返回 null
+     */
+    private AudioRecordConfig tryAudioRecordConfig(int sampleRate, int channelConfig, int audioFormat,
+                                                   int audioSource, AudioDeviceInfo selectedDevice) {
+        try {
+            int bufferSize = AudioRecord.getMinBufferSize(
+                sampleRate, channelConfig, audioFormat
+            );
+            
+            if (bufferSize == AudioRecord.ERROR_BAD_VALUE || 
+                bufferSize == AudioRecord.ERROR) {
+                return null; // 此配置不可用，尝试下一个
+            }
+            
+            bufferSize *= BUFFER_SIZE_FACTOR;
+            
+            probeAttempts++;
+            AudioRecord recorder = new AudioRecord(
+                audioSource,
+                sampleRate,
+                channelConfig,
+                audioFormat,
+                bufferSize
+            );
+            
+            if (recorder.getState() == AudioRecord.STATE_INITIALIZED) {
+                // 验证设备兼容性（如果指定了设备）
+                if (selectedDevice != null && Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+                    if (!selectedDevice.isSource()) {
+                        recorder.release();
+                        return null; // 设备不是输入源，跳过
+                    }
+                    // 注意：不在这里设置设备，让start方法在创建后统一设置
+                }
+                return new AudioRecordConfig(recorder, sampleRate, 
+                    channelConfig, audioFormat, audioSource);
+            } else {
+                recorder.release();
+            }
+        } catch (Exception e) {
+            // 继续尝试下一个配置
+            Log.d(TAG, "Exception trying configuration: " + sampleRate + 
+                "Hz, channel=" + channelConfig + ", format=" + audioFormat + 
+                ", source=" + audioSource + ": " + e.getMessage());
+        }
+        return null;
+    }
 }
 
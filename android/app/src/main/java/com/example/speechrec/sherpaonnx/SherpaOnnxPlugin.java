@@ -10,6 +10,9 @@ import android.os.Build;
 import android.os.Handler;
 import android.os.Looper;
 import androidx.annotation.RequiresApi;
+import com.example.speechrec.audio.DeviceRegistry;
+import com.example.speechrec.commands.CommandRegistry;
+import com.example.speechrec.commands.MediaKeyAction;
 import com.getcapacitor.JSArray;
 import com.getcapacitor.JSObject;
 import com.getcapacitor.Plugin;
@@ -22,6 +25,15 @@ import com.getcapacitor.PermissionState;
 import org.json.JSONArray;
 import org.json.JSONException;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
 /**
  * Sherpa-ONNX 指令识别插件
  * 基于 sherpa-onnx 的离线关键词识别引擎
@@ -40,6 +52,23 @@ public class SherpaOnnxPlugin extends Plugin {
     private Handler mainHandler;
     private AudioManager audioManager;
     private AudioDeviceInfo selectedInputDevice;
+    // 选择按 stableId 记录，设备拔出后保留，重新插入时自动恢复
+    private volatile String selectedStableId;
+    private DeviceRegistry deviceRegistry;
+    // 输入设备增删时通知 JS（onDevicesChanged），代替轮询 listInputs
+    private final DeviceRegistry.Listener deviceListener = (added, removed) -> {
+        JSObject data = new JSObject();
+        data.put("added", deviceRegistry.toJSArray(added));
+        data.put("removed", deviceRegistry.toJSArray(removed));
+        data.put("inputs", deviceRegistry.toJSArray(deviceRegistry.getInputs()));
+        if (selectedStableId != null) {
+            data.put("selectedStableId", selectedStableId);
+            data.put("selectedAvailable", deviceRegistry.findByStableId(selectedStableId) != null);
+        }
+        notifyListeners("onDevicesChanged", data);
+        // 设备回调在主线程，切换/重启采集放到插件方法所在的线程执行，避免与 start/stop/pause 竞争
+        getBridge().execute(() -> onSelectedDeviceReattached(added));
+    };
     private AudioRecord routingAudioRecord;
 
     private boolean isAudioGranted() {
@@ -52,6 +81,9 @@ public class SherpaOnnxPlugin extends Plugin {
         manager = new SherpaOnnxManager(getContext(), this::emitEvent);
         mainHandler = new Handler(Looper.getMainLooper());
         audioManager = (AudioManager) getContext().getSystemService(Context.AUDIO_SERVICE);
+        MediaKeyAction.registerAll(CommandRegistry.getInstance(), getContext());
+        deviceRegistry = DeviceRegistry.get(getContext());
+        deviceRegistry.addListener(deviceListener);
         android.util.Log.i("SherpaOnnxPlugin", "Plugin loaded");
     }
 
@@ -73,14 +105,21 @@ public class SherpaOnnxPlugin extends Plugin {
 
     @Override
     protected void handleOnDestroy() {
+        if (deviceRegistry != null) {
+            deviceRegistry.removeListener(deviceListener);
+        }
         if (manager != null) {
             manager.release();
         }
         super.handleOnDestroy();
     }
 
+    // 没有监听者时保留、等 JS 注册监听后补发的事件；模型下载进度、检测音频等高频或过时即无用的事件不保留
+    private static final Set<String> RETAINED_EVENTS = new HashSet<>(Arrays.asList(
+        "onKeywordDetected", "onCommand", "onError", "onModelReady"));
+
     private void emitEvent(String event, JSObject data) {
-        notifyListeners(event, data, true);
+        notifyListeners(event, data, RETAINED_EVENTS.contains(event));
     }
 
     /**
@@ -90,6 +129,18 @@ public class SherpaOnnxPlugin extends Plugin {
      *   - keywords: 关键词列表（字符串数组）
      *   - sampleRate: 采样率（默认16000）
      *   - numThreads: 线程数（默认1）
+     *   - chunkMs: 每次读取的音频块时长，10-100ms（默认40）
+     *   - energyGate: 是否启用静音门限（默认true）
+     *   - energyGateThresholdDb: 门限打开阈值，dBFS（默认-50）
+     *   - energyGateHangoverMs: 能量下降后保持打开的时长（默认400）
+     *   - energyGatePreRollMs: 预录缓冲时长（默认300）
+     *   - refractoryMs: 同一关键词两次上报之间的最短间隔（默认1000）
+     *   - keywordRefractoryMs: 按关键词单独设置的间隔，如 { "下一步": 500 }
+     *   - detectionStats: 是否统计每个关键词的检测数据，供 getDetectionStats 使用（默认false）
+     *   - pcmHistoryMs: 保留的采集音频历史时长，0 表示关闭（默认5000）
+     *   - exportAudioOnDetection: 检测到关键词时导出音频为 WAV，通过 onDetectionAudio 通知（默认false）
+     *   - captureBackend: 采集方式 "audioRecord"（默认）
+     *     或 "shared"（读取百度 ASR inputMode=stream 打开的共享采集流，没有时回退到 AudioRecord）
      */
     @PluginMethod
     public void init(PluginCall call) {
@@ -105,17 +156,44 @@ public class SherpaOnnxPlugin extends Plugin {
             int numThreads = call.getInt("numThreads", 1);
             Double thresholdObj = call.getDouble("threshold", 0.2);
             float threshold = thresholdObj != null ? thresholdObj.floatValue() : 0.2f;
+            int chunkMs = call.getInt("chunkMs", SherpaOnnxManager.DEFAULT_CHUNK_MS);
 
-            boolean success = manager.initialize(modelPath, keywords, sampleRate, numThreads, threshold);
-            
-            JSObject ret = new JSObject();
-            ret.put("ok", success);
-            if (success) {
-                ret.put("message", "Sherpa-ONNX initialized successfully");
-            } else {
-                ret.put("message", "Failed to initialize Sherpa-ONNX");
+            Boolean gateEnabled = call.getBoolean("energyGate", true);
+            Double gateThreshold = call.getDouble("energyGateThresholdDb", (double) EnergyGate.DEFAULT_THRESHOLD_DB);
+            manager.configureEnergyGate(
+                gateEnabled == null || gateEnabled,
+                gateThreshold != null ? gateThreshold.floatValue() : EnergyGate.DEFAULT_THRESHOLD_DB,
+                call.getInt("energyGateHangoverMs", EnergyGate.DEFAULT_HANGOVER_MS),
+                call.getInt("energyGatePreRollMs", EnergyGate.DEFAULT_PRE_ROLL_MS));
+
+            Map<String, Integer> keywordRefractory = new HashMap<>();
+            JSObject refractoryObj = call.getObject("keywordRefractoryMs", null);
+            if (refractoryObj != null) {
+                Iterator<String> names = refractoryObj.keys();
+                while (names.hasNext()) {
+                    String name = names.next();
+                    keywordRefractory.put(name, refractoryObj.optInt(name, DetectionFilter.DEFAULT_REFRACTORY_MS));
+                }
             }
-            call.resolve(ret);
+            Boolean collectStats = call.getBoolean("detectionStats", false);
+            manager.configureDetection(
+                call.getInt("refractoryMs", DetectionFilter.DEFAULT_REFRACTORY_MS), keywordRefractory,
+                collectStats != null && collectStats);
+
+            Boolean exportAudio = call.getBoolean("exportAudioOnDetection", false);
+            manager.configureAudioHistory(
+                call.getInt("pcmHistoryMs", SherpaOnnxManager.DEFAULT_PCM_HISTORY_MS),
+                exportAudio != null && exportAudio);
+            manager.setCaptureBackend(call.getString("captureBackend", SherpaOnnxManager.CAPTURE_AUDIO_RECORD));
+
+            // 模型在后台线程加载，加载完成后再 resolve，不阻塞插件线程
+            manager.initialize(modelPath, keywords, sampleRate, numThreads, threshold, chunkMs,
+                (success, message) -> {
+                    JSObject ret = new JSObject();
+                    ret.put("ok", success);
+                    ret.put("message", message);
+                    call.resolve(ret);
+                });
         } catch (Exception e) {
             android.util.Log.e("SherpaOnnxPlugin", "Init error", e);
             call.reject("Init failed: " + e.getMessage());
@@ -188,6 +266,51 @@ public class SherpaOnnxPlugin extends Plugin {
         }
     }
 
+    /**
+     * 多麦克风模式：同时在多个输入设备上识别关键词
+     * 参数:
+     *   - stableIds: listInputs 返回的设备 stableId 列表
+     * 检测事件中带 deviceId / deviceName 标明来源设备
+     */
+    @PluginMethod
+    public void startMulti(PluginCall call) {
+        if (!isAudioGranted()) {
+            call.reject("Microphone permission not granted");
+            return;
+        }
+        String[] stableIds = extractStringArray(call, "stableIds");
+        if (stableIds.length == 0) {
+            call.reject("stableIds is required");
+            return;
+        }
+        if (audioManager == null || Build.VERSION.SDK_INT < Build.VERSION_CODES.M) {
+            call.reject("AudioManager not available or API < 23");
+            return;
+        }
+
+        try {
+            List<AudioDeviceInfo> devices = new ArrayList<>();
+            for (String stableId : stableIds) {
+                AudioDeviceInfo device = findInputByStableId(stableId);
+                if (device == null) {
+                    call.reject("Device not found with stableId: " + stableId);
+                    return;
+                }
+                devices.add(device);
+            }
+
+            releaseRoutingAudioRecord();
+            boolean success = manager.startMulti(devices);
+            JSObject ret = new JSObject();
+            ret.put("ok", success);
+            ret.put("sources", devices.size());
+            call.resolve(ret);
+        } catch (Exception e) {
+            android.util.Log.e("SherpaOnnxPlugin", "StartMulti error", e);
+            call.reject("Start failed: " + e.getMessage());
+        }
+    }
+
     /**
      * 停止识别
      */
@@ -224,6 +347,35 @@ public class SherpaOnnxPlugin extends Plugin {
         }
     }
 
+    /**
+     * 配置原生命令表（与 BaiduAsr.setCommands 共用同一张表）
+     * 关键词到命令的映射和原生动作（如 media.playPause）在原生层完成，命中时只发送一个 onCommand 事件
+     * 参数:
+     *   - commands: [{ id, name?, action?, keywords: [] }]，空数组清空命令表
+     *   - suppressKeywordEvents: 命中命令的关键词不再发送 onKeywordDetected（默认true）
+     */
+    @PluginMethod
+    public void setCommands(PluginCall call) {
+        try {
+            JSArray commands = call.getArray("commands");
+            if (commands == null) {
+                call.reject("commands is required");
+                return;
+            }
+            CommandRegistry registry = CommandRegistry.getInstance();
+            registry.setCommands(commands);
+            Boolean suppress = call.getBoolean("suppressKeywordEvents", true);
+            registry.setSuppressKeywordEvents(suppress == null || suppress);
+            JSObject ret = new JSObject();
+            ret.put("ok", true);
+            ret.put("commands", registry.size());
+            call.resolve(ret);
+        } catch (Exception e) {
+            android.util.Log.e("SherpaOnnxPlugin", "Set commands error", e);
+            call.reject("Set commands failed: " + e.getMessage());
+        }
+    }
+
     /**
      * 设置检测阈值
      * @param call 包含 threshold (0.0-1.0)
@@ -257,6 +409,93 @@ public class SherpaOnnxPlugin extends Plugin {
         }
     }
 
+    /**
+     * 清空各设备缓存的 AudioRecord 配置，下次 start 重新完整探测（换系统版本或设备行为变化后排查用）
+     */
+    @PluginMethod
+    public void clearAudioConfigCache(PluginCall call) {
+        manager.clearAudioConfigCache();
+        JSObject ret = new JSObject();
+        ret.put("ok", true);
+        call.resolve(ret);
+    }
+
+    /**
+     * 获取按关键词统计的检测数据（需要 init 时 detectionStats: true）
+     * 参数:
+     *   - reset: 读取后清空统计（默认false）
+     */
+    @PluginMethod
+    public void getDetectionStats(PluginCall call) {
+        try {
+            JSObject stats = manager.getDetectionStats();
+            Boolean reset = call.getBoolean("reset", false);
+            if (reset != null && reset) {
+                manager.resetDetectionStats();
+            }
+            call.resolve(stats);
+        } catch (Exception e) {
+            call.reject("Failed to get detection stats: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 把最近的采集音频导出为 WAV 文件
+     * 参数:
+     *   - lastMs: 导出的时长（默认3000，受 pcmHistoryMs 限制）
+     */
+    @PluginMethod
+    public void exportAudio(PluginCall call) {
+        try {
+            java.io.File file = manager.exportRecentAudio(call.getInt("lastMs", 3000));
+            JSObject ret = new JSObject();
+            ret.put("ok", file != null);
+            if (file != null) {
+                ret.put("file", file.getAbsolutePath());
+            }
+            call.resolve(ret);
+        } catch (Exception e) {
+            call.reject("Failed to export audio: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 离线回放音频文件，走与实时识别相同的处理流程，完成后返回检测结果和解码实时率
+     * 参数:
+     *   - path: WAV（16-bit PCM）或裸 PCM（16-bit 小端单声道）文件路径
+     *   - realtime: 是否按音频时长节奏回放（默认false，尽快处理）
+     *   - sampleRate: 裸 PCM 文件的采样率（默认16000）
+     */
+    @PluginMethod
+    public void replayFile(PluginCall call) {
+        String path = call.getString("path", null);
+        if (path == null || path.isEmpty()) {
+            call.reject("path is required");
+            return;
+        }
+        Boolean realtime = call.getBoolean("realtime", false);
+        boolean started = manager.replayFile(path, realtime != null && realtime, call.getInt("sampleRate", 16000),
+            (result, error) -> {
+                if (result != null) {
+                    call.resolve(result);
+                } else {
+                    call.reject("Replay failed: " + error);
+                }
+            });
+        if (!started) {
+            call.reject("Replay not started: model not initialized or another replay is running");
+        }
+    }
+
+    /**
+     * 停止正在进行的文件回放
+     */
+    @PluginMethod
+    public void stopReplay(PluginCall call) {
+        manager.stopReplay();
+        call.resolve();
+    }
+
     /**
      * 获取支持的关键词列表
      */
@@ -296,85 +535,26 @@ public class SherpaOnnxPlugin extends Plugin {
 
     /**
      * 枚举原生音频输入设备
+     * 相同型号设备的 stableId 后缀（#2、#3）在设备保持连接期间不变，全部重新插入或应用重启后可能互换
      */
     @PluginMethod
     public void listInputs(PluginCall call) {
-        try {
-            JSObject ret = new JSObject();
-            JSArray arr = new JSArray();
-            if (audioManager != null) {
-                AudioDeviceInfo[] inputs;
-                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
-                    // 切换音频模式来触发重新扫描
-                    int originalMode = audioManager.getMode();
-                    audioManager.setMode(AudioManager.MODE_IN_COMMUNICATION);
-                    try {
-                        Thread.sleep(500);
-                    } catch (InterruptedException e) {}
-                    audioManager.setMode(originalMode);
-
-                    inputs = audioManager.getDevices(AudioManager.GET_DEVICES_INPUTS);
-                    
-                    android.util.Log.i("SherpaOnnxPlugin", 
-                        "Enumerating audio input devices: found " + inputs.length + " devices");
-                    
-                    boolean hasPermission = isAudioGranted();
-                    android.util.Log.i("SherpaOnnxPlugin", 
-                        "RECORD_AUDIO permission granted: " + hasPermission);
-                } else {
-                    inputs = new AudioDeviceInfo[0];
-                    android.util.Log.w("SherpaOnnxPlugin", 
-                        "API level < 23, cannot enumerate audio devices");
-                }
-                
-                for (AudioDeviceInfo d : inputs) {
-                    String productName = d.getProductName() != null ? 
-                        d.getProductName().toString() : "Unknown";
-                    int type = d.getType();
-                    int id = d.getId();
-                    boolean isSource = d.isSource();
-                    String address = Build.VERSION.SDK_INT >= Build.VERSION_CODES.P ? 
-                        d.getAddress() : "N/A";
-                    
-                    android.util.Log.i("SherpaOnnxPlugin", 
-                        String.format("Device: name='%s', type=%d, id=%d, address='%s', isSource=%s",
-                            productName, type, id, address, isSource));
-                    
-                    boolean isUsbDevice = (type == AudioDeviceInfo.TYPE_USB_DEVICE || 
-                                         type == AudioDeviceInfo.TYPE_USB_HEADSET);
-                    if (isUsbDevice) {
-                        android.util.Log.i("SherpaOnnxPlugin", 
-                            "✓ USB device detected: " + productName + " (type=" + type + ")");
-                    }
-                    
-                    JSObject o = new JSObject();
-                    o.put("type", type);
-                    o.put("label", productName);
-                    // 构造稳定ID
-                    String stableId = d.getType() + "_" + productName + "_" + d.hashCode();
-                    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.P) {
-                        if (address != null && !address.isEmpty()) {
-                            stableId = d.getType() + "_" + address;
-                        }
-                        o.put("address", address);
-                    }
-                    o.put("stableId", stableId);
-                    o.put("id", id);
-                    o.put("isSource", isSource);
-                    arr.put(o);
-                }
-                
-                android.util.Log.i("SherpaOnnxPlugin", 
-                    "Device enumeration complete: " + arr.length() + " devices returned to frontend");
-            } else {
-                android.util.Log.e("SherpaOnnxPlugin", "AudioManager is null, cannot enumerate devices");
-            }
-            ret.put("inputs", arr);
-            call.resolve(ret);
-        } catch (Exception e) {
-            android.util.Log.e("SherpaOnnxPlugin", "Failed to list inputs", e);
-            call.reject("Failed to list inputs: " + e.getMessage());
+        // 从设备表返回（由 AudioDeviceCallback 保持最新）；refresh: true 时重新读取一次
+        Boolean refresh = call.getBoolean("refresh", false);
+        if (refresh != null && refresh) {
+            deviceRegistry.refresh();
         }
+        JSObject ret = new JSObject();
+        ret.put("inputs", deviceRegistry.toJSArray(deviceRegistry.getInputs()));
+        ret.put("updatedAt", deviceRegistry.getUpdatedAtMs());
+        call.resolve(ret);
+    }
+
+    /**
+     * 按 stableId 查找当前的输入设备（与 listInputs 的 stableId 规则一致）
+     */
+    private AudioDeviceInfo findInputByStableId(String stableId) {
+        return deviceRegistry.findByStableId(stableId);
     }
 
     /**
@@ -395,21 +575,10 @@ public class SherpaOnnxPlugin extends Plugin {
                 call.resolve(ret);
                 return;
             }
-            AudioDeviceInfo[] inputs = audioManager.getDevices(AudioManager.GET_DEVICES_INPUTS);
-            AudioDeviceInfo match = null;
-            for (AudioDeviceInfo d : inputs) {
-                CharSequence pn = d.getProductName();
-                String sid = d.getType() + "_" + (pn != null ? pn.toString() : "") + "_" + d.hashCode();
-                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.P) {
-                    String addr = d.getAddress();
-                    if (addr != null && !addr.isEmpty()) sid = d.getType() + "_" + addr;
-                }
-                if (stableId.equals(sid)) {
-                    match = d; break;
-                }
-            }
+            AudioDeviceInfo match = findInputByStableId(stableId);
             if (match != null) {
                 this.selectedInputDevice = match;
+                this.selectedStableId = stableId;
                 android.util.Log.i("SherpaOnnxPlugin", "Device selected: " + 
                     match.getProductName() + " (type=" + match.getType() + 
                     ", id=" + match.getId() + ")");
@@ -436,28 +605,89 @@ public class SherpaOnnxPlugin extends Plugin {
     }
 
     /**
-     * 验证并更新选中的设备引用
+     * 识别中切换输入设备，识别不中断（新设备在后台打开，在块边界接入同一个识别流）
+     * 参数:
+     *   - stableId: listInputs 返回的设备 stableId
+     * 未运行时等同于 selectInput，下次 start 生效
      */
-    private boolean validateSelectedDevice() {
-        if (selectedInputDevice == null || audioManager == null) return false;
-        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.M) return false;
-        
-        try {
-            AudioDeviceInfo[] currentDevices = audioManager.getDevices(AudioManager.GET_DEVICES_INPUTS);
-            for (AudioDeviceInfo dev : currentDevices) {
-                if (dev.getId() == selectedInputDevice.getId()) {
-                    selectedInputDevice = dev;
-                    android.util.Log.d("SherpaOnnxPlugin", "Device validated: " + 
-                        dev.getProductName() + " (id=" + dev.getId() + ")");
-                    return true;
-                }
+    @PluginMethod
+    public void switchInput(PluginCall call) {
+        String stableId = call.getString("stableId");
+        if (stableId == null || stableId.isEmpty()) {
+            call.reject("stableId is required");
+            return;
+        }
+        AudioDeviceInfo device = findInputByStableId(stableId);
+        if (device == null) {
+            call.reject("Device not found with stableId: " + stableId);
+            return;
+        }
+        selectedInputDevice = device;
+        selectedStableId = stableId;
+        if (!manager.isRunning()) {
+            JSObject ret = new JSObject();
+            ret.put("ok", true);
+            ret.put("switched", false);
+            call.resolve(ret);
+            return;
+        }
+        manager.switchInput(device, (result, error, deviceFailed) -> {
+            if (result != null) {
+                result.put("switched", true);
+                call.resolve(result);
+            } else {
+                call.reject("Switch failed: " + error);
             }
-            
+        });
+    }
+
+    /**
+     * 验证并更新选中的设备引用（按 stableId 从设备表取当前的设备对象，拔插后 id 会变）
+     */
+    private boolean validateSelectedDevice() {
+        if (selectedStableId == null) return false;
+        AudioDeviceInfo dev = deviceRegistry.findByStableId(selectedStableId);
+        if (dev == null) {
             android.util.Log.w("SherpaOnnxPlugin", "Selected device no longer available");
             return false;
-        } catch (Exception e) {
-            android.util.Log.e("SherpaOnnxPlugin", "validateSelectedDevice failed", e);
-            return false;
+        }
+        selectedInputDevice = dev;
+        android.util.Log.d("SherpaOnnxPlugin", "Device validated: " + 
+            dev.getProductName() + " (id=" + dev.getId() + ")");
+        return true;
+    }
+
+    /**
+     * 选中的设备重新插入：更新设备引用，识别运行中时切换到该设备采集（不重新加载模型）
+     * 在插件方法线程中执行；切换失败时的重启也回到该线程，与 start/stop/pause 串行
+     */
+    private void onSelectedDeviceReattached(List<AudioDeviceInfo> added) {
+        String stableId = selectedStableId;
+        if (stableId == null || added.isEmpty()) return;
+        for (AudioDeviceInfo dev : added) {
+            if (!stableId.equals(deviceRegistry.stableIdOf(dev))) continue;
+            selectedInputDevice = dev;
+            android.util.Log.i("SherpaOnnxPlugin", "Selected device re-attached: " + 
+                dev.getProductName() + " (id=" + dev.getId() + ")");
+            if (manager == null) return;
+            // 先尝试不中断识别的切换，只有新设备打开/读取失败时才重启采集；
+            // 未运行、暂停或已有切换进行中时不处理（进行中的切换会自己完成）
+            manager.switchInput(dev, (result, error, deviceFailed) -> {
+                if (result != null) {
+                    android.util.Log.i("SherpaOnnxPlugin", "Capture moved to re-attached device");
+                    return;
+                }
+                if (!deviceFailed) {
+                    android.util.Log.i("SherpaOnnxPlugin", "Re-attached device not switched: " + error);
+                    return;
+                }
+                getBridge().execute(() -> {
+                    if (manager.restartOnDevice(dev)) {
+                        android.util.Log.i("SherpaOnnxPlugin", "Capture restarted on re-attached device");
+                    }
+                });
+            });
+            return;
         }
     }
     
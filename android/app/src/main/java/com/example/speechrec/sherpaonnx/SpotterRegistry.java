@@ -0,0 +1,198 @@
+package com.example.speechrec.sherpaonnx;
+
+import android.util.Log;
+
+import com.k2fsa.sherpa.onnx.KeywordSpotter;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * 进程级的 KeywordSpotter 缓存（引用计数）
+ * 相同 (模型目录, 线程数, provider) 的管理器共用一个已加载的模型，
+ * 各自通过 createStream(keywords) 创建独立的 OnlineStream；
+ * WebView 重载或多个 WebView 同时使用时不会重复加载 ONNX 模型
+ *
+ * 关键词和阈值都随 OnlineStream 传入，采样率由 acceptWaveform 逐块指定，因此都不属于缓存键
+ */
+public final class SpotterRegistry {
+    private static final String TAG = "SpotterRegistry";
+
+    public static final String PROVIDER_CPU = "cpu";
+
+    private static final Object LOCK = new Object();
+    private static final Map<Key, Entry> entries = new HashMap<>();
+    private static final Map<KeywordSpotter, Entry> entriesBySpotter = new IdentityHashMap<>();
+
+    private SpotterRegistry() {
+    }
+
+    /**
+     * 模型缓存键
+     */
+    public static final class Key {
+        final String modelDir;
+        final int numThreads;
+        final String provider;
+
+        public Key(String modelDir, int numThreads, String provider) {
+            this.modelDir = modelDir;
+            this.numThreads = numThreads;
+            this.provider = provider;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return numThreads == other.numThreads
+                && modelDir.equals(other.modelDir) && provider.equals(other.provider);
+        }
+
+        @Override
+        public int hashCode() {
+            int h = modelDir.hashCode();
+            h = 31 * h + numThreads;
+            h = 31 * h + provider.hashCode();
+            return h;
+        }
+
+        @Override
+        public String toString() {
+            return modelDir + " (" + numThreads + " threads, " + provider + ")";
+        }
+    }
+
+    /**
+     * 缓存未命中时创建 KeywordSpotter
+     */
+    public interface Factory {
+        KeywordSpotter create() throws Exception;
+    }
+
+    private static final class Entry {
+        final Key key;
+        KeywordSpotter spotter; // 由 Entry 自身的锁保护创建过程
+        int refCount; // 由 LOCK 保护
+
+        Entry(Key key) {
+            this.key = key;
+        }
+    }
+
+    /**
+     * 获取（必要时创建）共享的 KeywordSpotter，引用计数加一
+     * 同一个键的并发调用只会创建一次，不同键的创建互不阻塞
+     * 使用完毕后必须调用 release()
+     */
+    public static KeywordSpotter acquire(Key key, Factory factory) throws Exception {
+        Entry entry;
+        synchronized (LOCK) {
+            entry = entries.get(key);
+            if (entry == null) {
+                entry = new Entry(key);
+                entries.put(key, entry);
+            }
+            entry.refCount++;
+        }
+
+        try {
+            synchronized (entry) {
+                if (entry.spotter == null) {
+                    long startNanos = System.nanoTime();
+                    KeywordSpotter spotter = factory.create();
+                    synchronized (LOCK) {
+                        entry.spotter = spotter;
+                        entriesBySpotter.put(spotter, entry);
+                    }
+                    Log.i(TAG, "Loaded model " + key + " in " +
+                        String.format("%.1f", (System.nanoTime() - startNanos) / 1_000_000.0) + "ms");
+                } else {
+                    Log.i(TAG, "Reusing loaded model " + key + " (refs=" + refCount(key) + ")");
+                }
+                return entry.spotter;
+            }
+        } catch (Exception e) {
+            synchronized (LOCK) {
+                if (--entry.refCount == 0) {
+                    entries.remove(key);
+                }
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 为已获取的 KeywordSpotter 再增加一个引用（例如后台任务需要在识别器被替换后继续使用它）
+     * @return false 表示该 KeywordSpotter 不在缓存中或已被销毁，不应再使用
+     */
+    public static boolean retain(KeywordSpotter spotter) {
+        synchronized (LOCK) {
+            Entry entry = entriesBySpotter.get(spotter);
+            if (entry == null || entry.refCount == 0) {
+                return false;
+            }
+            entry.refCount++;
+            return true;
+        }
+    }
+
+    /**
+     * 引用计数减一，最后一个使用者释放时销毁模型
+     * 不是从缓存获取的 KeywordSpotter 会被直接释放
+     */
+    public static void release(KeywordSpotter spotter) {
+        if (spotter == null) {
+            return;
+        }
+        boolean destroy;
+        synchronized (LOCK) {
+            Entry entry = entriesBySpotter.get(spotter);
+            if (entry == null) {
+                destroy = true;
+            } else {
+                destroy = --entry.refCount == 0;
+                if (destroy) {
+                    entries.remove(entry.key);
+                    entriesBySpotter.remove(spotter);
+                    Log.i(TAG, "Unloading model " + entry.key);
+                }
+            }
+        }
+        if (destroy) {
+            spotter.release();
+        }
+    }
+
+    /**
+     * 当前缓存中的模型数量
+     */
+    public static int loadedModels() {
+        synchronized (LOCK) {
+            return entriesBySpotter.size();
+        }
+    }
+
+    /**
+     * 共享该 KeywordSpotter 的使用者数量，不在缓存中时返回 0
+     */
+    public static int refCount(KeywordSpotter spotter) {
+        synchronized (LOCK) {
+            Entry entry = entriesBySpotter.get(spotter);
+            return entry != null ? entry.refCount : 0;
+        }
+    }
+
+    private static int refCount(Key key) {
+        synchronized (LOCK) {
+            Entry entry = entries.get(key);
+            return entry != null ? entry.refCount : 0;
+        }
+    }
+}
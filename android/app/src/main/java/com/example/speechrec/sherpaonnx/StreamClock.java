@@ -0,0 +1,80 @@
+package com.example.speechrec.sherpaonnx;
+
+import java.util.ArrayDeque;
+
+/**
+ * 音频流时间到采集样本位置的映射
+ * 静音门限关闭期间音频不会送入 OnlineStream，因此流内时间（识别结果中的 token 时间戳）
+ * 与采集样本计数之间存在间隙；每次不连续地送入音频时记录一个分段，用于换算
+ *
+ * 非线程安全：只应在识别线程中使用
+ */
+public class StreamClock {
+
+    // 最多保留的分段数，超过后丢弃最早的（更早的音频不会再出现在识别结果中）
+    private static final int MAX_SEGMENTS = 256;
+
+    private final int sampleRate;
+    // 每个分段: {流内起始样本, 采集起始样本}
+    private final ArrayDeque<long[]> segments = new ArrayDeque<>();
+    private long streamSamples = 0;
+    private long nextCaptureSample = -1;
+
+    public StreamClock(int sampleRate) {
+        this.sampleRate = sampleRate;
+    }
+
+    /**
+     * 记录送入音频流的一段音频
+     * @param captureSample 这段音频第一个样本的采集位置
+     * @param length 样本数
+     */
+    public void onFeed(long captureSample, int length) {
+        if (captureSample != nextCaptureSample) {
+            segments.addLast(new long[]{streamSamples, captureSample});
+            if (segments.size() > MAX_SEGMENTS) {
+                segments.removeFirst();
+            }
+        }
+        streamSamples += length;
+        nextCaptureSample = captureSample + length;
+    }
+
+    /**
+     * 新建音频流后调用，流内时间从 0 重新开始
+     */
+    public void reset() {
+        segments.clear();
+        streamSamples = 0;
+        nextCaptureSample = -1;
+    }
+
+    /**
+     * 已送入音频流的样本数
+     */
+    public long getStreamSamples() {
+        return streamSamples;
+    }
+
+    /**
+     * 把流内时间（秒）换算为采集样本位置
+     * @return 采集样本位置，没有任何分段时返回 -1
+     */
+    public long toCaptureSample(double streamSeconds) {
+        long streamSample = Math.max(0, Math.min(streamSamples, Math.round(streamSeconds * sampleRate)));
+        long[] match = null;
+        for (long[] segment : segments) {
+            if (segment[0] > streamSample) {
+                break;
+            }
+            match = segment;
+        }
+        if (match == null) {
+            match = segments.peekFirst();
+            if (match == null) {
+                return -1;
+            }
+        }
+        return match[1] + (streamSample - match[0]);
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.speechrec.baiduasr;
+
+import java.util.List;
+
+/**
+ * 识别文本提取的耗时比较（流式扫描 vs org.json），不属于单元测试，不做断言
+ * 在 IDE 中直接运行 main()，或以测试 classpath 运行本类；耗时受机器负载影响，只作参考
+ */
+public final class BaiduResultParserBenchmark {
+
+    private BaiduResultParserBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        List<String> corpus = BaiduResultParserTest.loadCorpus();
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+        // 预热
+        runDom(corpus, iterations);
+        runStreaming(corpus, iterations);
+
+        long domNs = runDom(corpus, iterations);
+        long streamNs = runStreaming(corpus, iterations);
+        long calls = (long) iterations * corpus.size();
+        System.out.println("extractBestResult over " + calls + " payloads: org.json " +
+            (domNs / calls) + " ns/op, streaming " + (streamNs / calls) + " ns/op (" +
+            String.format("%.1f", (double) domNs / Math.max(1, streamNs)) + "x)");
+    }
+
+    private static long runDom(List<String> corpus, int iterations) throws Exception {
+        long start = System.nanoTime();
+        int found = 0;
+        for (int i = 0; i < iterations; i++) {
+            for (String payload : corpus) {
+                if (BaiduResultParser.extractBestResultDom(payload) != null) found++;
+            }
+        }
+        if (found == 0) {
+            throw new IllegalStateException("corpus has no recognition text");
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static long runStreaming(List<String> corpus, int iterations) throws Exception {
+        long start = System.nanoTime();
+        int found = 0;
+        for (int i = 0; i < iterations; i++) {
+            for (String payload : corpus) {
+                if (BaiduResultParser.extractBestResult(payload) != null) found++;
+            }
+        }
+        if (found == 0) {
+            throw new IllegalStateException("corpus has no recognition text");
+        }
+        return System.nanoTime() - start;
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.speechrec.baiduasr;
+
+import static org.junit.Assert.*;
+
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import org.json.JSONException;
+import org.junit.Test;
+
+/**
+ * 识别文本提取单元测试：用按百度回调参数结构合成的语料（test/resources/baiduasr/asr_payloads.jsonl）
+ * 验证流式扫描与 org.json 解析结果一致；耗时比较见 BaiduResultParserBenchmark
+ */
+public class BaiduResultParserTest {
+
+    static List<String> loadCorpus() throws Exception {
+        List<String> payloads = new ArrayList<>();
+        try (InputStream in = BaiduResultParserTest.class.getClassLoader()
+                .getResourceAsStream("baiduasr/asr_payloads.jsonl")) {
+            assertNotNull("corpus not found", in);
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                // # 开头的行是语料说明
+                if (!line.trim().isEmpty() && !line.startsWith("#")) {
+                    payloads.add(line);
+                }
+            }
+        }
+        return payloads;
+    }
+
+    @Test
+    public void extract_matchesOrgJsonOnCorpus() throws Exception {
+        List<String> corpus = loadCorpus();
+        assertTrue(corpus.size() >= 30);
+        for (String payload : corpus) {
+            assertEquals(payload, BaiduResultParser.extractBestResultDom(payload),
+                BaiduResultParser.extractBestResult(payload));
+        }
+    }
+
+    @Test
+    public void extract_followsFieldPriority() throws Exception {
+        // 顶层 best_result 优先，origin_result 中的同名字段不算
+        assertEquals("最佳", BaiduResultParser.extractBestResult(
+            "{\"origin_result\":{\"best_result\":\"嵌套\"},\"results_recognition\":[\"顶层\"],\"best_result\":\"最佳\"}"));
+        assertEquals("识别结果", BaiduResultParser.extractBestResult(
+            "{\"result\":[\"旧版\"],\"results_recognition\":[\"识别结果\"]}"));
+        assertEquals("回退", BaiduResultParser.extractBestResult(
+            "{\"results_recognition\":[],\"result\":[\"回退\"]}"));
+        assertNull(BaiduResultParser.extractBestResult(
+            "{\"origin_result\":{\"sn\":\"\",\"error\":0},\"error\":0,\"desc\":\"Speech Recognize success.\"}"));
+        assertNull(BaiduResultParser.extractBestResult(""));
+        assertNull(BaiduResultParser.extractBestResult(null));
+    }
+
+    @Test
+    public void extract_decodesEscapes() throws Exception {
+        assertEquals("a\"b\\c/d\te\nf你好", BaiduResultParser.extractBestResult(
+            "{\"best_result\":\"a\\\"b\\\\c\\/d\\te\\nf\\u4f60\\u597d\"}"));
+        assertEquals("after", BaiduResultParser.extractBestResult(
+            "{\"desc\":\"} ] \\\" {\",\"results_recognition\":[\"after\"]}"));
+    }
+
+    @Test
+    public void extract_rejectsMalformedJsonLikeOrgJson() {
+        String[] malformed = {"{\"best_result\":", "[\"best_result\"]", "not json"};
+        for (String payload : malformed) {
+            try {
+                BaiduResultParser.extractBestResult(payload);
+                fail("expected JSONException for " + payload);
+            } catch (JSONException expected) {
+                // 与 org.json 解析一致
+            }
+        }
+    }
+
+    @Test
+    public void extract_ignoresMalformedTailAfterBestResult() throws Exception {
+        // 已知差异：best_result 之后不再扫描，org.json 会因为后面的格式错误而失败
+        String payload = "{\"best_result\":\"打开灯\",\"origin_result\":{\"sn\":";
+        assertEquals("打开灯", BaiduResultParser.extractBestResult(payload));
+        try {
+            BaiduResultParser.extractBestResultDom(payload);
+            fail("org.json should reject the truncated payload");
+        } catch (JSONException expected) {
+            // 完整解析会发现截断
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.speechrec.sherpaonnx;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * InputSwitch 单元测试：验证切换输入设备时旧块与新块的交叉淡化拼接
+ */
+public class InputSwitchTest {
+
+    @Test
+    public void crossfade_movesFromOldToNewMonotonically() {
+        float[] dst = filled(8, 1f);
+        float[] next = filled(8, 0f);
+        int n = InputSwitch.crossfade(dst, 8, next, 8);
+
+        assertEquals(8, n);
+        assertTrue("first sample should still be mostly old audio", dst[0] > 0.5f);
+        assertTrue("last sample should be mostly new audio", dst[7] < 0.5f);
+        for (int i = 1; i < n; i++) {
+            assertTrue("fade must be monotonic at " + i, dst[i] <= dst[i - 1]);
+        }
+    }
+
+    @Test
+    public void crossfade_keepsLevelForEqualSignals() {
+        float[] dst = filled(16, 0.5f);
+        float[] next = filled(16, 0.5f);
+        InputSwitch.crossfade(dst, 16, next, 16);
+        for (float v : dst) {
+            assertEquals(0.5f, v, 1e-6f);
+        }
+    }
+
+    @Test
+    public void crossfade_copiesNewAudioWhenOldDeviceHasNoData() {
+        float[] dst = filled(4, 0.9f);
+        float[] next = {0.1f, 0.2f, 0.3f, 0.4f};
+        int n = InputSwitch.crossfade(dst, 0, next, 4);
+
+        assertEquals(4, n);
+        assertArrayEquals(next, dst, 0f);
+    }
+
+    @Test
+    public void crossfade_copiesTailBeyondShortOldChunk() {
+        float[] dst = new float[6];
+        dst[0] = 1f;
+        dst[1] = 1f;
+        float[] next = filled(6, 0.25f);
+        int n = InputSwitch.crossfade(dst, 2, next, 6);
+
+        assertEquals(6, n);
+        for (int i = 2; i < 6; i++) {
+            assertEquals(0.25f, dst[i], 0f);
+        }
+        assertTrue(dst[0] > dst[1]);
+    }
+
+    private static float[] filled(int length, float value) {
+        float[] a = new float[length];
+        java.util.Arrays.fill(a, value);
+        return a;
+    }
+}
@@ -0,0 +1,269 @@
+package com.example.speechrec.sherpaonnx;
+
+import static org.junit.Assert.*;
+
+import com.example.speechrec.audio.FileAudioSource;
+import com.example.speechrec.audio.SyntheticAudioSource;
+import com.k2fsa.sherpa.onnx.KeywordSpotterResult;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.HashMap;
+import org.junit.Test;
+
+/**
+ * 文件回放单元测试：用合成的音频和本地 Backend 代替 AudioRecord 和模型，
+ * 验证回放走完整的 KwsPipeline（静音门限、时间换算、去抖）并报告样本位置和实时率
+ */
+public class KwsReplayTest {
+
+    private static final int SAMPLE_RATE = 16000;
+    private static final int CHUNK_MS = 100;
+
+    /**
+     * 本地 Backend：把一段持续 >= 200ms 的响声当作关键词，
+     * 响声结束 100ms 后报告结果，token 时间戳为流内时间（与 sherpa-onnx 相同）
+     */
+    private static final class BurstBackend implements KwsPipeline.Backend {
+        private long streamSamples = 0;
+        private long burstStart = -1;
+        private long lastLoud = -1;
+        private KeywordSpotterResult pending;
+        int resets = 0;
+
+        @Override
+        public void acceptWaveform(float[] samples, int sampleRate) {
+            for (float s : samples) {
+                if (Math.abs(s) > 0.1f) {
+                    if (burstStart < 0) {
+                        burstStart = streamSamples;
+                    }
+                    lastLoud = streamSamples;
+                } else if (burstStart >= 0 && streamSamples - lastLoud >= sampleRate / 10) {
+                    if (lastLoud - burstStart >= sampleRate / 5 && pending == null) {
+                        pending = new KeywordSpotterResult("hello", new String[]{"he", "llo"},
+                            new float[]{(float) burstStart / sampleRate, (float) lastLoud / sampleRate});
+                    }
+                    burstStart = -1;
+                }
+                streamSamples++;
+            }
+        }
+
+        @Override
+        public KeywordSpotterResult decode() {
+            KeywordSpotterResult result = pending;
+            pending = null;
+            return result;
+        }
+
+        @Override
+        public void reset() {
+            resets++;
+            burstStart = -1;
+            pending = null;
+        }
+    }
+
+    @Test
+    public void replay_reportsDetectionsAtCaptureSampleOffsets() throws Exception {
+        // 1s 静音，0.5s 响声，1.5s 静音，0.5s 响声，1s 静音
+        File wav = writeWav(1, silence(1000), tone(500), silence(1500), tone(500), silence(1000));
+
+        KwsPipeline pipeline = newPipeline(new DetectionFilter());
+        KwsReplay.Result result;
+        try (FileAudioSource source = FileAudioSource.open(wav, 0)) {
+            result = new KwsReplay(pipeline, CHUNK_MS, false).run(source, null);
+        }
+
+        assertEquals(SAMPLE_RATE * 9 / 2, result.samples);
+        assertEquals(4500, result.audioMs);
+        assertEquals(2, result.detections.size());
+        // 静音门限关闭期间的音频没有送入 Backend，位置仍按采集样本计算
+        KwsPipeline.Detection first = result.detections.get(0);
+        assertEquals("hello", first.keyword);
+        assertEquals(16000, first.startSample, 4);
+        assertEquals(24000, first.endSample, 4);
+        assertEquals(1000, first.audioStartMs, 1);
+        KwsPipeline.Detection second = result.detections.get(1);
+        assertEquals(48000, second.startSample, 4);
+        assertEquals(56000, second.endSample, 4);
+        assertEquals(3000, second.audioStartMs, 1);
+        assertTrue(result.getRealTimeFactor() >= 0);
+        assertFalse(result.cancelled);
+    }
+
+    @Test
+    public void replay_appliesRefractoryWindow() throws Exception {
+        File wav = writeWav(1, silence(500), tone(500), silence(500), tone(500), silence(500));
+        DetectionFilter filter = new DetectionFilter();
+        filter.configure(2000, new HashMap<>());
+
+        KwsReplay.Result result;
+        try (FileAudioSource source = FileAudioSource.open(wav, 0)) {
+            result = new KwsReplay(newPipeline(filter), CHUNK_MS, false).run(source, null);
+        }
+
+        assertEquals(1, result.detections.size());
+        assertEquals(1, result.suppressed);
+    }
+
+    @Test
+    public void replay_downmixesStereoWav() throws Exception {
+        File wav = writeWav(2, silence(500), tone(500), silence(500));
+        try (FileAudioSource source = FileAudioSource.open(wav, 0)) {
+            assertEquals(2, source.getChannels());
+            KwsReplay.Result result = new KwsReplay(newPipeline(new DetectionFilter()), CHUNK_MS, false)
+                .run(source, null);
+            assertEquals(SAMPLE_RATE * 3 / 2, result.samples);
+            assertEquals(1, result.detections.size());
+            assertEquals(8000, result.detections.get(0).startSample, 4);
+        }
+    }
+
+    @Test
+    public void replay_readsRawPcmWithGivenSampleRate() throws Exception {
+        short[] pcm = concat(silence(500), tone(500), silence(500));
+        File raw = File.createTempFile("kws-replay", ".pcm");
+        raw.deleteOnExit();
+        ByteBuffer data = ByteBuffer.allocate(pcm.length * 2).order(ByteOrder.LITTLE_ENDIAN);
+        for (short s : pcm) {
+            data.putShort(s);
+        }
+        try (FileOutputStream out = new FileOutputStream(raw)) {
+            out.write(data.array());
+        }
+
+        try (FileAudioSource source = FileAudioSource.open(raw, SAMPLE_RATE)) {
+            KwsReplay.Result result = new KwsReplay(newPipeline(new DetectionFilter()), CHUNK_MS, false)
+                .run(source, null);
+            assertEquals(pcm.length, result.samples);
+            assertEquals(1, result.detections.size());
+        }
+    }
+
+    @Test
+    public void replay_realtimeIsPacedByAudioDuration() throws Exception {
+        File wav = writeWav(1, silence(300));
+        try (FileAudioSource source = FileAudioSource.open(wav, 0)) {
+            KwsReplay.Result result = new KwsReplay(newPipeline(new DetectionFilter()), CHUNK_MS, true)
+                .run(source, null);
+            assertEquals(300, result.audioMs);
+            assertTrue("realtime replay finished too early: " + result.wallMs, result.wallMs >= 290);
+        }
+    }
+
+    @Test
+    public void replay_syntheticSourceRunsOffDevice() throws Exception {
+        // 10s 白噪声：门限一直打开，每块都会解码，可用于测量流程本身的开销
+        SyntheticAudioSource noise = SyntheticAudioSource.whiteNoise(SAMPLE_RATE, 0.05f, 10_000);
+        KwsReplay.Result result = new KwsReplay(newPipeline(new DetectionFilter()), CHUNK_MS, false)
+            .run(noise, null);
+        assertEquals(10_000, result.audioMs);
+        assertEquals(0, result.detections.size());
+        assertTrue("pipeline overhead too high: RTF " + result.getRealTimeFactor(), result.getRealTimeFactor() < 0.5);
+
+        SyntheticAudioSource tone = SyntheticAudioSource.sine(SAMPLE_RATE, 440, 0.5f, 1_000);
+        result = new KwsReplay(newPipeline(new DetectionFilter()), CHUNK_MS, false).run(tone, null);
+        // 响声一直持续到结束，没有结束后的静音，不会报告
+        assertEquals(0, result.detections.size());
+        assertEquals(SAMPLE_RATE, result.samples);
+    }
+
+    @Test
+    public void pipeline_resetForResumeKeepsSampleClock() {
+        BurstBackend backend = new BurstBackend();
+        KwsPipeline pipeline = new KwsPipeline(SAMPLE_RATE, null, new DetectionFilter());
+        pipeline.setBackend(backend);
+        short[] chunk = new short[1600];
+        pipeline.process(chunk, chunk.length);
+        pipeline.resetForResume();
+        pipeline.process(chunk, chunk.length);
+        assertEquals(1, backend.resets);
+        assertEquals(3200, pipeline.getCaptureSamples());
+    }
+
+    @Test
+    public void pipeline_skippedSamplesShiftDetectionPosition() {
+        KwsPipeline pipeline = new KwsPipeline(SAMPLE_RATE, null, new DetectionFilter());
+        pipeline.setBackend(new BurstBackend());
+        // 前 1s 的块被丢弃，没有送入 pipeline
+        pipeline.skip(SAMPLE_RATE);
+        KwsPipeline.Detection detection = null;
+        for (short[] chunk : new short[][]{tone(500), silence(500)}) {
+            KwsPipeline.Detection d = pipeline.process(chunk, chunk.length);
+            if (d != null) {
+                detection = d;
+            }
+        }
+        assertNotNull(detection);
+        assertEquals(SAMPLE_RATE, detection.startSample, 4);
+        assertEquals(SAMPLE_RATE * 2, pipeline.getCaptureSamples());
+    }
+
+    private static KwsPipeline newPipeline(DetectionFilter filter) {
+        EnergyGate gate = new EnergyGate(SAMPLE_RATE, EnergyGate.DEFAULT_THRESHOLD_DB,
+            EnergyGate.DEFAULT_HANGOVER_MS, EnergyGate.DEFAULT_PRE_ROLL_MS);
+        KwsPipeline pipeline = new KwsPipeline(SAMPLE_RATE, gate, filter);
+        pipeline.setBackend(new BurstBackend());
+        return pipeline;
+    }
+
+    private static short[] silence(int ms) {
+        return new short[SAMPLE_RATE * ms / 1000];
+    }
+
+    private static short[] tone(int ms) {
+        short[] out = new short[SAMPLE_RATE * ms / 1000];
+        for (int i = 0; i < out.length; i++) {
+            out[i] = (short) (16000 * Math.sin(2 * Math.PI * 440 * i / SAMPLE_RATE));
+        }
+        return out;
+    }
+
+    private static short[] concat(short[]... parts) {
+        int length = 0;
+        for (short[] p : parts) {
+            length += p.length;
+        }
+        short[] out = new short[length];
+        int pos = 0;
+        for (short[] p : parts) {
+            System.arraycopy(p, 0, out, pos, p.length);
+            pos += p.length;
+        }
+        return out;
+    }
+
+    private static File writeWav(int channels, short[]... parts) throws IOException {
+        short[] mono = concat(parts);
+        int dataBytes = mono.length * 2 * channels;
+        ByteBuffer data = ByteBuffer.allocate(44 + dataBytes).order(ByteOrder.LITTLE_ENDIAN);
+        data.put(new byte[]{'R', 'I', 'F', 'F'});
+        data.putInt(36 + dataBytes);
+        data.put(new byte[]{'W', 'A', 'V', 'E', 'f', 'm', 't', ' '});
+        data.putInt(16);
+        data.putShort((short) 1);
+        data.putShort((short) channels);
+        data.putInt(SAMPLE_RATE);
+        data.putInt(SAMPLE_RATE * 2 * channels);
+        data.putShort((short) (2 * channels));
+        data.putShort((short) 16);
+        data.put(new byte[]{'d', 'a', 't', 'a'});
+        data.putInt(dataBytes);
+        for (short s : mono) {
+            for (int c = 0; c < channels; c++) {
+                data.putShort(s);
+            }
+        }
+        File file = File.createTempFile("kws-replay", ".wav");
+        file.deleteOnExit();
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(data.array());
+        }
+        return file;
+    }
+}
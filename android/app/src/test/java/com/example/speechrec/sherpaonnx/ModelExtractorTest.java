@@ -0,0 +1,29 @@
+package com.example.speechrec.sherpaonnx;
+
+import static org.junit.Assert.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.Test;
+
+/**
+ * ModelExtractor 单元测试：验证只解压模型目录中的文件，跳过自带的子目录
+ */
+public class ModelExtractorTest {
+
+    @Test
+    public void listFiles_skipsNestedAssetDirectory() throws Exception {
+        Map<String, String[]> assets = new HashMap<>();
+        assets.put("model", new String[]{"encoder.onnx", "test_wavs", "tokens.txt"});
+        assets.put("model/test_wavs", new String[]{"0.wav", "1.wav"});
+
+        String[] files = ModelExtractor.listFiles(path -> assets.getOrDefault(path, new String[0]), "model");
+
+        assertArrayEquals(new String[]{"encoder.onnx", "tokens.txt"}, files);
+    }
+
+    @Test
+    public void listFiles_returnsEmptyForMissingDirectory() throws Exception {
+        assertEquals(0, ModelExtractor.listFiles(path -> null, "missing").length);
+    }
+}
@@ -0,0 +1,224 @@
+package com.example.speechrec.sherpaonnx;
+
+import static org.junit.Assert.*;
+
+import com.example.speechrec.audio.AudioSource;
+import com.k2fsa.sherpa.onnx.KeywordSpotterResult;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+/**
+ * PauseGate 单元测试：验证暂停期间阻塞，以及识别循环从恢复到首次解码的行为
+ */
+public class PauseGateTest {
+
+    @Test
+    public void awaitResumed_doesNotBlockWhenRunning() throws Exception {
+        PauseGate gate = new PauseGate();
+        assertFalse(gate.awaitResumed());
+        assertFalse(gate.isPaused());
+    }
+
+    @Test
+    public void awaitResumed_blocksWhilePaused() throws Exception {
+        PauseGate gate = new PauseGate();
+        gate.pause();
+
+        CountDownLatch woke = new CountDownLatch(1);
+        Thread t = new Thread(() -> {
+            try {
+                gate.awaitResumed();
+                woke.countDown();
+            } catch (InterruptedException ignored) {
+            }
+        });
+        t.start();
+
+        assertFalse("thread must stay parked while paused", woke.await(200, TimeUnit.MILLISECONDS));
+        gate.resume();
+        assertTrue(woke.await(1, TimeUnit.SECONDS));
+        t.join(1000);
+    }
+
+    @Test
+    public void reset_wakesWaitersWithoutResumeTimestamp() throws Exception {
+        PauseGate gate = new PauseGate();
+        gate.pause();
+        gate.reset();
+        assertFalse(gate.isPaused());
+        assertEquals(0, gate.consumeResumeTimestamp());
+    }
+
+    /**
+     * 通过 AudioSource 驱动 SherpaOnnxManager 的识别循环：
+     * 暂停时停止音频源且不再解码，恢复后先重置解码状态，首个送入识别器的块是恢复后采集的新音频
+     */
+    @Test
+    public void recognitionLoop_pauseStopsSourceAndResumeDecodesFreshAudio() throws Exception {
+        SherpaOnnxManager manager = new SherpaOnnxManager(null, (event, data) -> { });
+        manager.configureEnergyGate(false, 0f, 0, 0);
+        manager.configureAudioHistory(0, false);
+        RecordingBackend backend = new RecordingBackend();
+        manager.useBackendForTest(backend);
+        EpochSource source = new EpochSource(16000);
+
+        assertTrue(manager.startWithSource(source));
+        try {
+            assertTrue("no audio decoded before pause", backend.awaitChunks(3, 1000));
+            assertEquals(1, source.starts.get());
+
+            manager.pause();
+            assertEquals("pause must stop the audio source", 1, source.stops.get());
+            Thread.sleep(100);
+            int chunksWhilePaused = backend.chunkCount();
+            Thread.sleep(100);
+            assertEquals("nothing may be decoded while paused", chunksWhilePaused, backend.chunkCount());
+            assertEquals("the loop must not read a stopped source", 0, source.readsWhileStopped.get());
+
+            int resetsBefore = backend.resets.get();
+            manager.resume();
+            assertTrue("no audio decoded after resume", backend.awaitChunks(chunksWhilePaused + 1, 1000));
+            assertEquals("resume must restart the audio source", 2, source.starts.get());
+
+            RecordingBackend.Chunk first = backend.chunk(chunksWhilePaused);
+            assertEquals("first chunk after resume must come from the restarted capture",
+                2f, first.value, 0f);
+            assertTrue("decoder state must be reset before the first chunk after resume",
+                backend.resets.get() > resetsBefore && first.resetsBefore > resetsBefore);
+            // 恢复后第一次读到的块就是第一个送入识别器的块，中间没有被跳过或积压的音频
+            assertEquals("first decode after resume must be the first read of the restarted capture",
+                0f, first.readInEpoch, 0f);
+        } finally {
+            manager.stop();
+        }
+        assertTrue(source.closed);
+    }
+
+    /**
+     * 测试音频源：每次 start() 开始一个新的 epoch，读到的首个样本值等于 epoch，
+     * 第二个样本值为本 epoch 内的读取序号；
+     * 停止期间读取抛出 IOException（与 AudioRecord 一样不缓冲停止期间的音频）
+     */
+    private static final class EpochSource implements AudioSource {
+        private final int sampleRate;
+        final AtomicInteger starts = new AtomicInteger();
+        final AtomicInteger stops = new AtomicInteger();
+        final AtomicInteger readsWhileStopped = new AtomicInteger();
+        private final AtomicInteger readsInEpoch = new AtomicInteger();
+        private volatile boolean recording = false;
+        volatile boolean closed = false;
+
+        EpochSource(int sampleRate) {
+            this.sampleRate = sampleRate;
+        }
+
+        @Override
+        public int getSampleRate() {
+            return sampleRate;
+        }
+
+        @Override
+        public synchronized void start() {
+            starts.incrementAndGet();
+            readsInEpoch.set(0);
+            recording = true;
+        }
+
+        @Override
+        public int read(float[] dst, int offset, int length) throws IOException {
+            if (!recording) {
+                readsWhileStopped.incrementAndGet();
+                throw new IOException("stopped");
+            }
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+            if (!recording) {
+                throw new IOException("stopped during read");
+            }
+            Arrays.fill(dst, offset, offset + length, starts.get());
+            if (length > 1) {
+                dst[offset + 1] = readsInEpoch.getAndIncrement();
+            }
+            return length;
+        }
+
+        @Override
+        public synchronized void stop() {
+            if (recording) {
+                stops.incrementAndGet();
+            }
+            recording = false;
+        }
+
+        @Override
+        public void close() {
+            stop();
+            closed = true;
+        }
+    }
+
+    /**
+     * 记录送入的音频块（epoch、epoch 内读取序号）和 reset() 次数的解码后端，不产生检测结果
+     */
+    private static final class RecordingBackend implements KwsPipeline.Backend {
+        static final class Chunk {
+            final float value;
+            final float readInEpoch;
+            final int resetsBefore;
+
+            Chunk(float value, float readInEpoch, int resetsBefore) {
+                this.value = value;
+                this.readInEpoch = readInEpoch;
+                this.resetsBefore = resetsBefore;
+            }
+        }
+
+        private final List<Chunk> chunks = new ArrayList<>();
+        final AtomicInteger resets = new AtomicInteger();
+
+        @Override
+        public synchronized void acceptWaveform(float[] samples, int sampleRate) {
+            chunks.add(new Chunk(samples[0], samples.length > 1 ? samples[1] : -1f, resets.get()));
+            notifyAll();
+        }
+
+        @Override
+        public KeywordSpotterResult decode() {
+            return null;
+        }
+
+        @Override
+        public void reset() {
+            resets.incrementAndGet();
+        }
+
+        synchronized int chunkCount() {
+            return chunks.size();
+        }
+
+        synchronized Chunk chunk(int index) {
+            return chunks.get(index);
+        }
+
+        synchronized boolean awaitChunks(int count, long timeoutMs) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + timeoutMs;
+            while (chunks.size() < count) {
+                long left = deadline - System.currentTimeMillis();
+                if (left <= 0) {
+                    return false;
+                }
+                wait(left);
+            }
+            return true;
+        }
+    }
+}
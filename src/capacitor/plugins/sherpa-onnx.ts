@@ -13,6 +13,19 @@ export interface SherpaOnnxPlugin {
    *   - sampleRate: 采样率（默认16000）
    *   - numThreads: 线程数（默认1）
    *   - threshold: 检测阈值 0.0-1.0（默认0.5）
+   *   - chunkMs: 每次读取的音频块时长 10-100ms（默认40），越小检测延迟越低
+   *   - energyGate: 是否启用静音门限，静音期间跳过解码（默认true）
+   *   - energyGateThresholdDb: 门限打开阈值，dBFS（默认-50）
+   *   - energyGateHangoverMs: 能量下降后保持打开的时长（默认400）
+   *   - energyGatePreRollMs: 预录缓冲时长，避免关键词开头被截断（默认300）
+   *   - refractoryMs: 同一关键词两次上报之间的最短间隔（默认1000）
+   *   - keywordRefractoryMs: 按关键词单独设置的间隔
+   *   - detectionStats: 是否统计每个关键词的检测数据，供 getDetectionStats 使用（默认false）
+   *   - pcmHistoryMs: 保留的采集音频历史时长，0 表示关闭（默认5000）；检测到关键词后，
+   *     随后以 inputMode=stream 启动的百度 ASR 从关键词结束处读取这段历史音频
+   *   - exportAudioOnDetection: 检测到关键词时导出音频为 WAV，通过 onDetectionAudio 通知（默认false）
+   *   - captureBackend: 采集方式（默认audioRecord）；
+   *     shared 读取百度 ASR inputMode=stream 打开的共享采集流，没有时回退到 audioRecord
    */
   init(options?: {
     modelPath?: string
@@ -20,6 +33,17 @@ export interface SherpaOnnxPlugin {
     sampleRate?: number
     numThreads?: number
     threshold?: number
+    chunkMs?: number
+    energyGate?: boolean
+    energyGateThresholdDb?: number
+    energyGateHangoverMs?: number
+    energyGatePreRollMs?: number
+    refractoryMs?: number
+    keywordRefractoryMs?: Record<string, number>
+    detectionStats?: boolean
+    pcmHistoryMs?: number
+    exportAudioOnDetection?: boolean
+    captureBackend?: 'audioRecord' | 'shared'
   }): Promise<{ ok: boolean; message?: string }>
 
   /**
@@ -27,6 +51,13 @@ export interface SherpaOnnxPlugin {
    */
   start(): Promise<{ ok: boolean }>
 
+  /**
+   * 多麦克风模式：同时在多个输入设备上识别关键词，共用一个模型
+   * 检测事件中带 deviceId / deviceName 标明来源设备
+   * @param options 包含 listInputs 返回的 stableId 列表
+   */
+  startMulti(options: { stableIds: string[] }): Promise<{ ok: boolean; sources: number }>
+
   /**
    * 停止识别
    */
@@ -38,6 +69,17 @@ export interface SherpaOnnxPlugin {
    */
   updateKeywords(options: { keywords: string[] }): Promise<{ ok: boolean }>
 
+  /**
+   * 配置原生命令表（与百度 ASR 共用），关键词到命令的映射和原生动作在原生层完成，
+   * 命中时只发送一个 onCommand 事件
+   * @param options commands: 命令列表，空数组清空命令表; suppressKeywordEvents: 命中命令的关键词
+   *   不再发送 onKeywordDetected（默认true）
+   */
+  setCommands(options: {
+    commands: NativeCommand[]
+    suppressKeywordEvents?: boolean
+  }): Promise<{ ok: boolean; commands: number }>
+
   /**
    * 设置检测阈值
    * @param options 包含 threshold (0.0-1.0)
@@ -50,11 +92,70 @@ export interface SherpaOnnxPlugin {
   getStatus(): Promise<{
     isRunning: boolean
     isPaused: boolean
+    /** 最近一次恢复到首个音频块送达识别线程的耗时（毫秒） */
+    resumeLatencyMs: number
     keywordsCount: number
     threshold: number
     sampleRate: number
+    chunkMs: number
+    /** 关键词结束到检测的延迟统计（同 onKeywordDetected.latencyMs） */
+    latency: {
+      detections: number
+      lastMs: number
+      avgMs: number
+      maxMs: number
+    }
+    energyGate: {
+      enabled: boolean
+      open: boolean
+      totalChunks: number
+      decodedChunks: number
+      /** 实际送入识别器的音频块比例 */
+      decodeDutyCycle: number
+    }
+    /** 在不应期内被丢弃的重复检测次数 */
+    suppressedDetections: number
+    modelLoad: {
+      lastMode?: string
+      /** 各读取方式最近一次从开始加载到就绪的耗时（毫秒） */
+      readyMs: Record<string, number>
+    }
+    /** 进程级模型缓存：共用当前模型的管理器数量和已加载的模型数量 */
+    sharedModel: {
+      refs: number
+      loadedModels: number
+    }
+    /** AudioRecord 配置探测：最近一次构造的 AudioRecord 数量和耗时、是否命中按设备缓存的配置 */
+    audioProbe: {
+      lastAttempts: number
+      lastMs: number
+      lastFromCache: boolean
+      cacheHits: number
+      fullProbes: number
+      cachedDevices: number
+    }
+    /** 识别中切换输入设备（switchInput）：次数、最近一次从请求到接入的耗时（毫秒） */
+    inputSwitch: {
+      count: number
+      lastMs: number
+      inProgress: boolean
+    }
+    /** 多麦克风模式下各音频源的状态 */
+    sources?: Array<{
+      deviceId: number
+      deviceName: string
+      sampleRate: number
+      chunks: number
+      droppedChunks: number
+      detections: number
+    }>
   }>
 
+  /**
+   * 清空按设备缓存的 AudioRecord 配置，下次 start 重新完整探测
+   */
+  clearAudioConfigCache(): Promise<{ ok: boolean }>
+
   /**
    * 获取支持的关键词列表
    */
@@ -63,17 +164,15 @@ export interface SherpaOnnxPlugin {
   }>
 
   /**
-   * 枚举可用的音频输入设备
+   * 枚举可用的音频输入设备（从原生设备表返回，设备变化通过 onDevicesChanged 推送）
+   * 相同型号的设备以 stableId 后缀 #2、#3 区分，设备保持连接期间不变；
+   * 两者都重新插入或应用重启后，哪个物理设备带后缀取决于连接顺序
+   * @param options refresh: 重新读取系统设备列表
    */
-  listInputs(): Promise<{
-    inputs: Array<{
-      stableId: string
-      type: number
-      label?: string
-      address?: string
-      id?: number
-      isSource?: boolean
-    }>
+  listInputs(options?: { refresh?: boolean }): Promise<{
+    inputs: InputDevice[]
+    /** 设备表最后更新时间（ms） */
+    updatedAt: number
   }>
 
   /**
@@ -88,13 +187,51 @@ export interface SherpaOnnxPlugin {
     deviceId?: number
   }>
 
+  /**
+   * 识别中切换输入设备，识别不中断；未运行时只记录选择（switched: false）
+   * @param options 包含 stableId
+   */
+  switchInput(options: { stableId: string }): Promise<{
+    ok: boolean
+    switched: boolean
+    deviceId?: number
+    deviceName?: string
+    /** 从请求到新设备接入识别流的耗时（毫秒） */
+    switchMs?: number
+  }>
+
+  /**
+   * 获取按关键词统计的检测数据，用于根据现场数据校准阈值
+   * @param options reset: 读取后清空统计
+   */
+  getDetectionStats(options?: { reset?: boolean }): Promise<DetectionStats>
+
+  /**
+   * 把最近的采集音频导出为 WAV 文件
+   * @param options lastMs: 导出的时长（默认3000，受 pcmHistoryMs 限制）
+   */
+  exportAudio(options?: { lastMs?: number }): Promise<{ ok: boolean; file?: string }>
+
+  /**
+   * 离线回放音频文件（与实时识别相同的处理流程），完成后返回检测结果和解码实时率
+   * 每次检测同时发送 onReplayDetection 事件
+   * @param options path: WAV（16-bit PCM）或裸 PCM 文件路径; realtime: 按音频时长节奏回放（默认false）;
+   *   sampleRate: 裸 PCM 文件的采样率（默认16000）
+   */
+  replayFile(options: { path: string; realtime?: boolean; sampleRate?: number }): Promise<ReplayResult>
+
+  /**
+   * 停止正在进行的文件回放
+   */
+  stopReplay(): Promise<void>
+
   /**
    * 添加事件监听器
    * @param eventName 事件名称
    * @param listenerFunc 监听函数
    */
   addListener(
-    eventName: 'onKeywordDetected' | 'onError' | 'onReady',
+    eventName: 'onKeywordDetected' | 'onCommand' | 'onDevicesChanged' | 'onError' | 'onReady' | 'onModelReady' | 'onModelProgress' | 'onDetectionAudio' | 'onReplayDetection',
     listenerFunc: (data: any) => void
   ): { remove: () => void }
 }
@@ -104,8 +241,156 @@ export interface SherpaOnnxPlugin {
  */
 export interface KeywordDetectedEvent {
   keyword: string
+  /** sherpa-onnx 不提供检测分数，固定为 1.0（见 scoreAvailable） */
   confidence: number
+  scoreAvailable?: boolean
+  /** 检测时生效的阈值 */
+  threshold?: number
+  tokens?: string[]
+  /** 每个 token 的时间（秒，音频流内时间） */
+  tokenTimestamps?: number[]
+  /** 关键词起止位置（采集样本序号） */
+  startSample?: number
+  endSample?: number
+  sampleRate?: number
+  /** 关键词结束时间（由采样计数推算的系统时间，毫秒） */
   timestamp: number
+  /** 关键词起止时间（系统时间，毫秒） */
+  startTime?: number
+  endTime?: number
+  /** 关键词起止位置（从开始录音起的音频时间，毫秒） */
+  audioStartMs?: number
+  audioEndMs?: number
+  /** 关键词结束到检测的延迟（毫秒）：关键词之后已采集的音频时长（采样时钟）+ 处理耗时 */
+  latencyMs?: number
+  /** 多麦克风模式下的来源设备 */
+  deviceId?: number
+  deviceName?: string
+}
+
+/**
+ * 原生命令表中的命令
+ */
+export interface NativeCommand {
+  id: string
+  name?: string
+  keywords: string[]
+  /**
+   * 命中后在原生层执行的动作（不经过 JS）：
+   * media.playPause / media.play / media.pause / media.stop / media.next / media.previous
+   */
+  action?: string
+}
+
+/**
+ * 音频输入设备（listInputs / onDevicesChanged）
+ */
+export interface InputDevice {
+  /**
+   * 拔插后不变：USB 为 vendorId:productId，其他为地址或产品名；相同型号的设备带 #2、#3 后缀，
+   * 后缀只在设备保持连接期间稳定（见 listInputs）
+   */
+  stableId: string
+  type: number
+  label?: string
+  address?: string
+  id?: number
+  isSource?: boolean
+}
+
+/**
+ * 输入设备变化事件数据（onDevicesChanged）
+ */
+export interface DevicesChangedEvent {
+  added: InputDevice[]
+  removed: InputDevice[]
+  /** 变化后的全部输入设备 */
+  inputs: InputDevice[]
+  /** 已选择设备（selectInput）的 stableId 及其当前是否已连接；重新连接后识别会自动切换到该设备 */
+  selectedStableId?: string
+  selectedAvailable?: boolean
+}
+
+/**
+ * 命令事件数据（onCommand）
+ */
+export interface CommandEvent {
+  /** 命令 id */
+  id: string
+  keyword: string
+  /** kws: sherpa-onnx 关键词识别; asr: 百度语音识别 */
+  source: 'kws' | 'asr'
+  action?: string
+  /** 原生动作是否已执行 */
+  handled: boolean
+  timestamp: number
+  latencyMs?: number
+  deviceId?: number
+  /** 百度语音识别：识别文本及是否为最终结果 */
+  text?: string
+  final?: boolean
+}
+
+/**
+ * 按关键词统计的检测数据
+ */
+export interface DetectionStats {
+  enabled: boolean
+  scoreAvailable: boolean
+  /** durationHistogram 每个桶的宽度（毫秒），最后一个桶包含更长的检测 */
+  durationBucketMs: number
+  keywords: Record<string, {
+    detections: number
+    suppressed: number
+    durationHistogram: number[]
+    detectionsByThreshold: Record<string, number>
+  }>
+}
+
+/**
+ * 检测音频导出事件数据（关键词开始前 200ms 到检测时刻的音频）
+ */
+export interface DetectionAudioEvent {
+  keyword: string
+  file: string
+  startSample: number
+  endSample: number
+  sampleRate: number
+  durationMs: number
+}
+
+/**
+ * 文件回放中的一次检测（onReplayDetection 事件数据，位置相对于文件开头）
+ */
+export interface ReplayDetection {
+  keyword: string
+  tokens: string[]
+  tokenTimestamps: number[]
+  startSample: number
+  endSample: number
+  sampleRate: number
+  audioStartMs: number
+  audioEndMs: number
+  file?: string
+}
+
+/**
+ * 文件回放结果
+ */
+export interface ReplayResult {
+  file: string
+  sampleRate: number
+  realtime: boolean
+  cancelled: boolean
+  audioMs: number
+  /** 送入识别流程的累计耗时（毫秒） */
+  processMs: number
+  wallMs: number
+  /** 解码实时率：processMs / audioMs */
+  rtf: number
+  /** 在不应期内被丢弃的检测数 */
+  suppressed: number
+  detections: ReplayDetection[]
 }
 
 /**
@@ -116,6 +401,33 @@ export interface ErrorEvent {
   message: string
 }
 
+/**
+ * 模型加载完成事件数据（初始化后在后台创建识别器）
+ */
+export interface ModelReadyEvent {
+  reason: 'init'
+  sampleRate: number
+  /** 模型读取方式：cached（缓存有效）/ fd（未压缩 asset）/ stream / mixed / path（外部路径） */
+  modelMode: 'cached' | 'fd' | 'stream' | 'mixed' | 'path'
+  prepareMs: number
+  buildMs: number
+  streamMs: number
+  totalMs: number
+  /** 共用该模型的管理器数量（> 1 表示复用了已加载的模型） */
+  modelRefs: number
+}
+
+/**
+ * 模型解压进度事件数据（仅在首次启动或 APK 更新后需要复制模型时发送）
+ */
+export interface ModelProgressEvent {
+  file: string
+  filesDone: number
+  filesTotal: number
+  /** 已写入的字节数，内容未变化的文件不计入 */
+  bytesCopied: number
+  elapsedMs: number
+}
+
 // 注册插件
 export const SherpaOnnx = registerPlugin<SherpaOnnxPlugin>('SherpaOnnx')
-
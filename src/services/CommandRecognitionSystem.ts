@@ -1,7 +1,7 @@
 /**
  * 完整的指令识别系统
  */
-import { SherpaOnnx, KeywordDetectedEvent, ErrorEvent } from '../capacitor/plugins'
+import { SherpaOnnx, KeywordDetectedEvent, CommandEvent, ErrorEvent } from '../capacitor/plugins'
 
 /**
  * 命令类型定义
@@ -15,6 +15,8 @@ export interface CommandType {
   keywords: string[]
   /** 命令描述 */
   description?: string
+  /** 命中后在原生层直接执行的动作（如 media.playPause），不需要 JS 处理器 */
+  action?: string
 }
 
 /**
@@ -75,6 +77,7 @@ export class CommandRecognitionSystem {
     }
 
     console.log(`已注册 ${mapping.commands.length} 个命令类型，覆盖 ${this.keywordToCommandMap.size} 个关键词`)
+    this.syncNativeCommands()
   }
 
   /**
@@ -115,6 +118,12 @@ export class CommandRecognitionSystem {
   }
 
   private setupListeners() {
+    // 命令在原生层解析，命中时只收到 onCommand
+    SherpaOnnx.addListener('onCommand', (event: CommandEvent) => {
+      this.runCommand(event.id, event.keyword, event.handled)
+    })
+
+    // 不在原生命令表中的关键词仍通过 onKeywordDetected 到达
     SherpaOnnx.addListener('onKeywordDetected', (event: KeywordDetectedEvent) => {
       const commandId = this.keywordToCommandMap.get(event.keyword)
 
@@ -123,14 +132,7 @@ export class CommandRecognitionSystem {
         return
       }
 
-      const handler = this.commands.get(commandId)
-      if (handler) {
-        const commandInfo = this.commandConfigs.get(commandId)
-        console.log(`[${commandInfo?.name || commandId}] 检测到关键词: ${event.keyword} (置信度: ${(event.confidence * 100).toFixed(1)}%)`)
-        handler()
-      } else {
-        console.warn(`未注册的命令处理器: ${commandId}`)
-      }
+      this.runCommand(commandId, event.keyword, false)
     })
 
     SherpaOnnx.addListener('onError', (error: ErrorEvent) => {
@@ -138,6 +140,36 @@ export class CommandRecognitionSystem {
     })
   }
 
+  private runCommand(commandId: string, keyword: string, handledNatively: boolean) {
+    const commandInfo = this.commandConfigs.get(commandId)
+    const handler = this.commands.get(commandId)
+    if (handler) {
+      console.log(`[${commandInfo?.name || commandId}] 检测到关键词: ${keyword}`)
+      handler()
+    } else if (!handledNatively) {
+      console.warn(`未注册的命令处理器: ${commandId}`)
+    }
+  }
+
+  /**
+   * 把当前的关键词映射同步到原生命令表
+   */
+  private syncNativeCommands() {
+    const keywordsById = new Map<string, string[]>()
+    for (const [keyword, commandId] of this.keywordToCommandMap) {
+      const list = keywordsById.get(commandId) ?? []
+      list.push(keyword)
+      keywordsById.set(commandId, list)
+    }
+    const commands = Array.from(keywordsById, ([id, keywords]) => {
+      const config = this.commandConfigs.get(id)
+      return { id, name: config?.name, keywords, action: config?.action }
+    })
+    SherpaOnnx.setCommands({ commands }).catch((error) => {
+      console.warn('同步原生命令表失败，使用 onKeywordDetected 映射:', error)
+    })
+  }
+
   async updateCommands(keywords: string[]) {
     await SherpaOnnx.updateKeywords({ keywords })
 
@@ -156,6 +188,7 @@ export class CommandRecognitionSystem {
         this.commands.delete(commandId)
       }
     }
+    this.syncNativeCommands()
   }
 
   async adjustSensitivity(threshold: number) {